@@ -18,8 +18,6 @@
 package com.turkcell.curio;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -51,6 +49,8 @@ import com.google.android.gms.common.GooglePlayServicesRepairableException;
 import com.turkcell.curio.model.OfflineRequest;
 import com.turkcell.curio.model.OnlineRequest;
 import com.turkcell.curio.model.Screen;
+import com.turkcell.curio.transport.CurioTransportFactory;
+import com.turkcell.curio.transport.FormRequestBody;
 import com.turkcell.curio.utils.Constants;
 import com.turkcell.curio.utils.CurioClientSettings;
 import com.turkcell.curio.utils.CurioDBHelper;
@@ -74,8 +74,12 @@ public class CurioClient implements INetworkConnectivityChangeListener {
 
     private Context context;
     private String urlPrefix;
-    private String sessionCode;
+    /**
+     * Written by processor threads when session is renewed or offline cache response brings a new session code, read by dispatcher threads.
+     */
+    private volatile String sessionCode;
     private boolean isPeriodicDispatchEnabled;
+    private boolean isOnlineBatchingEnabled;
     private int dispatchPeriod;
     private Map<String, Screen> contextHitcodeMap = new HashMap<String, Screen>();
     private Map<String, String> contextEventcodeMap = new HashMap<String, String>();
@@ -86,15 +90,13 @@ public class CurioClient implements INetworkConnectivityChangeListener {
     private boolean isOfflineCachingOn;
     private Boolean initialConnectionState;
     private StaticFeatureSet staticFeatureSet;
-    private boolean offlineReqExists = true;
+    private volatile boolean offlineReqExists = true;
     private Boolean isAdIdAvailable = null;
     private String pushMessageId = null;
     private String customId = null;
     private boolean isTriggeredByUnregisterRequest = false;
 
-    protected int unauthCount = 0;
     protected boolean isParamLoadingFinished = false;
-    protected boolean isSessionStartSent;
     private String tmpTrackingCode;
     private String tmpApiKey;
     private String tmpGcmSenderId;
@@ -199,9 +201,31 @@ public class CurioClient implements INetworkConnectivityChangeListener {
         CurioLogger.d(TAG, "Initial network connection state is: " + initialConnectionState);
 
         CurioDBHelper.createInstance(this);
+
+        if (isOfflineCachingOn) {
+            // Periodic dispatch requests stored in a previous run will be sent as offline requests.
+            DBRequestProcessor.onOfflineTransition();
+        }
+
+        CurioTransportFactory.createSharedTransport(context);
         CurioLogger.d(TAG, "Finished creating Curio Client on " + System.currentTimeMillis());
     }
 
+    /**
+     * Creates a client with given codes only. Does not load parameters, read device features or create any other component,
+     * so that a request processor can be run on it without Android, as unit tests do.
+     *
+     * @param context
+     * @param trackingCode
+     * @param visitorCode
+     * @param sessionTimeout
+     */
+    CurioClient(Context context, String trackingCode, String visitorCode, int sessionTimeout) {
+        this.setContext(context);
+        this.staticFeatureSet = new StaticFeatureSet(trackingCode, visitorCode, sessionTimeout);
+        setParamLoadingFinished(true);
+    }
+
     /**
      * Loads all parameters from curio.xml of parent application.
      */
@@ -242,6 +266,9 @@ public class CurioClient implements INetworkConnectivityChangeListener {
                     }
                 }
 
+                // Online batching is read from resource in any case, since request processor always does so.
+                isOnlineBatchingEnabled = !CurioClientSettings.getInstance(context).isPeriodicDispatchEnabled() && CurioClientSettings.getInstance(context).isOnlineBatchingEnabled();
+
                 if (Build.VERSION.SDK_INT >= Constants.GINGERBREAD_2_3_3_SDK_INT) {
                     Info adInfo = null;
                     try {
@@ -334,8 +361,6 @@ public class CurioClient implements INetworkConnectivityChangeListener {
         ICurioResultListener callback = new ICurioResultListener() {
             @Override
             public void handleResult(int statusCode, JSONObject result) {
-                isSessionStartSent = false; // Reset "session start sent" flag.
-                curioRequestProcessor.setLowerPriorityQueueProcessingStatus(true);
                 if (statusCode == HttpStatus.SC_PRECONDITION_FAILED) {
                     CurioLogger.e(TAG, "Failed to start session on server due to wrong account parameters");
                 } else if (statusCode == HttpStatus.SC_OK) {
@@ -361,6 +386,29 @@ public class CurioClient implements INetworkConnectivityChangeListener {
         this.pushRequestToQueue(Constants.SERVER_URL_SUFFIX_SESSION_START, params, callback, CurioRequestProcessor.FIRST_PRIORITY);
     }
 
+    /**
+     * Starts a new session in place of the one which is timed out on server.
+     * <p/>
+     * Called by request processor once for all requests rejected with 401, second and third priority queues are held until new session is started.
+     *
+     * @return true if session start is queued to be sent online, false if it is stored to offline cache since there is no connection.
+     */
+    protected boolean renewSession() {
+        startSession(true);
+        return NetworkUtil.getInstance().isConnected();
+    }
+
+    /**
+     * Called when an unregister request waits for session renewal.
+     * <p/>
+     * This flag prevents re-registration at push server when session started again.
+     * To enable push server registration again, setCustomId() or sendCustomId() methods should be called,
+     * or application instance should be killed.
+     */
+    protected void setTriggeredByUnregisterRequest() {
+        isTriggeredByUnregisterRequest = true;
+    }
+
     /**
      * Starts a screen at server.
      * <p/>
@@ -399,24 +447,17 @@ public class CurioClient implements INetworkConnectivityChangeListener {
             return;
         }
 
-        String urlEncodedTitle = "";
-        String urlEncodedPath = "";
-
-        try {
-            urlEncodedTitle = URLEncoder.encode(title, Constants.UTF8_ENCODING).replace("\\+", " ");
-            urlEncodedPath = URLEncoder.encode(path, Constants.UTF8_ENCODING).replace("\\+", " ");
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
-
         Map<String, Object> params = new HashMap<String, Object>();
         params.put(Constants.HTTP_PARAM_SESSION_CODE, this.getSessionCode(false));
-        params.put(Constants.HTTP_PARAM_PAGE_TITLE, urlEncodedTitle);
-        params.put(Constants.HTTP_PARAM_PATH, urlEncodedPath);
+        params.put(Constants.HTTP_PARAM_PAGE_TITLE, title);
+        params.put(Constants.HTTP_PARAM_PATH, path);
 
         ICurioResultListener callback = null;
 
-        if (isPeriodicDispatchEnabled || isOfflineCachingOn) {
+        /**
+         * Batched and stored requests do not get a response of their own, so hit code is generated here.
+         */
+        if (isPeriodicDispatchEnabled || isOfflineCachingOn || isOnlineBatchingEnabled) {
             String generatedHitcode = CurioUtil.generateRandomUUID();
             contextHitcodeMap.put(className, new Screen(generatedHitcode, title, path));
             params.put(Constants.HTTP_PARAM_HIT_CODE, generatedHitcode);
@@ -426,22 +467,7 @@ public class CurioClient implements INetworkConnectivityChangeListener {
             callback = new ICurioResultListener() {
                 @Override
                 public void handleResult(int statusCode, JSONObject result) {
-                    if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
-                        if (unauthCount <= 5) {
-                            unauthCount++;
-                            CurioLogger.d(TAG, "StartScreen - Try count: " + unauthCount);
-                            /**
-                             * If sessionStart request not already sent, 1-Stop second and third priority request queue processing. 2-Send sessionStart request. 3-Set sessionStartsent flag.
-                             */
-                            if (!isSessionStartSent) {
-                                curioRequestProcessor.setLowerPriorityQueueProcessingStatus(false);
-                                startSession(true);
-                                isSessionStartSent = true;
-                            }
-                            startScreen(className, title, path);
-                        }
-                    } else if (statusCode == HttpStatus.SC_OK) {
-                        unauthCount = 0;
+                    if (statusCode == HttpStatus.SC_OK) {
                         if (result != null) {
                             try {
                                 String returnedHitCode = result.getString(Constants.JSON_NODE_HIT_CODE);
@@ -496,8 +522,8 @@ public class CurioClient implements INetworkConnectivityChangeListener {
             return;
         }
 
-        String urlEncodedTitle = "";
-        String urlEncodedPath = "";
+        String title = "";
+        String path = "";
         String hitCode = "";
 
         CurioLogger.d(TAG, "Class name is " + className);
@@ -506,13 +532,8 @@ public class CurioClient implements INetworkConnectivityChangeListener {
 
         if (screen != null) {
             hitCode = screen.getHitCode();
-
-            try {
-                urlEncodedTitle = URLEncoder.encode(screen.getTitle(), Constants.UTF8_ENCODING).replace("\\+", " ");
-                urlEncodedPath = URLEncoder.encode(screen.getPath(), Constants.UTF8_ENCODING).replace("\\+", " ");
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-            }
+            title = screen.getTitle();
+            path = screen.getPath();
         } else {
             // Means an invalid call
             CurioLogger.d(TAG, "Screen info is null, so ignoring call to end screen.");
@@ -523,28 +544,13 @@ public class CurioClient implements INetworkConnectivityChangeListener {
 
         params.put(Constants.HTTP_PARAM_SESSION_CODE, this.getSessionCode(false));
         params.put(Constants.HTTP_PARAM_HIT_CODE, hitCode);
-        params.put(Constants.HTTP_PARAM_PAGE_TITLE, urlEncodedTitle);
-        params.put(Constants.HTTP_PARAM_PATH, urlEncodedPath);
+        params.put(Constants.HTTP_PARAM_PAGE_TITLE, title);
+        params.put(Constants.HTTP_PARAM_PATH, path);
 
         ICurioResultListener callback = new ICurioResultListener() {
             @Override
             public void handleResult(int statusCode, JSONObject result) {
-                if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
-                    if (unauthCount <= 5) {
-                        unauthCount++;
-                        CurioLogger.d(TAG, "End Screen - Try count: " + unauthCount);
-
-                        /**
-                         * If sessionStart request not already sent, 1-Stop second and third priority request queue processing. 2-Send sessionStart request. 3-Set sessionStartsent flag.
-                         */
-                        if (!isSessionStartSent) {
-                            curioRequestProcessor.setLowerPriorityQueueProcessingStatus(false);
-                            startSession(true);
-                            isSessionStartSent = true;
-                        }
-                        endScreen(className);
-                    }
-                } else if (statusCode == HttpStatus.SC_OK) {
+                if (statusCode == HttpStatus.SC_OK) {
                     CurioLogger.d(TAG, "Server responded OK. Screen ended.");
                 } else {
                     CurioLogger.d(TAG, "Failed to end screen. Server responded with status code: " + statusCode);
@@ -619,25 +625,15 @@ public class CurioClient implements INetworkConnectivityChangeListener {
             return;
         }
 
-        String urlEncodedKey = "";
-        String urlEncodedValue = "";
-
-        try {
-            urlEncodedKey = URLEncoder.encode(key, Constants.UTF8_ENCODING).replace("\\+", " ");
-            urlEncodedValue = URLEncoder.encode(value, Constants.UTF8_ENCODING).replace("\\+", " ");
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
-
         Map<String, Object> params = new HashMap<String, Object>();
 
         params.put(Constants.HTTP_PARAM_SESSION_CODE, this.getSessionCode(false));
-        params.put(Constants.HTTP_PARAM_EVENT_KEY, urlEncodedKey);
-        params.put(Constants.HTTP_PARAM_EVENT_VALUE, urlEncodedValue);
+        params.put(Constants.HTTP_PARAM_EVENT_KEY, key);
+        params.put(Constants.HTTP_PARAM_EVENT_VALUE, value);
 
         ICurioResultListener callback = null;
 
-        if (isPeriodicDispatchEnabled || isOfflineCachingOn) {
+        if (isPeriodicDispatchEnabled || isOfflineCachingOn || isOnlineBatchingEnabled) {
             String generatedEventcode = CurioUtil.generateRandomUUID();
             contextEventcodeMap.put(key + value, generatedEventcode);
             params.put(Constants.HTTP_PARAM_EVENT_CODE, generatedEventcode);
@@ -647,23 +643,7 @@ public class CurioClient implements INetworkConnectivityChangeListener {
             callback = new ICurioResultListener() {
                 @Override
                 public void handleResult(int statusCode, JSONObject result) {
-                    if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
-                        if (unauthCount <= 5) {
-                            unauthCount++;
-                            CurioLogger.d(TAG, "Send Event - Try count: " + unauthCount);
-
-                            /**
-                             * If sessionStart request not already sent, 1-Stop second and third priority request queue processing. 2-Send sessionStart request. 3-Set sessionStartsent flag.
-                             */
-                            if (!isSessionStartSent) {
-                                curioRequestProcessor.setLowerPriorityQueueProcessingStatus(false);
-                                startSession(true);
-                                isSessionStartSent = true;
-                            }
-                            sendEvent(key, value);
-                        }
-                    } else if (statusCode == HttpStatus.SC_OK) {
-                        unauthCount = 0;
+                    if (statusCode == HttpStatus.SC_OK) {
                         if (result != null) {
                             try {
                                 String returnedEventCode = result.getString(Constants.JSON_NODE_EVENT_CODE);
@@ -709,43 +689,18 @@ public class CurioClient implements INetworkConnectivityChangeListener {
 
         String eventCode = contextEventcodeMap.get(key + value);
 
-        String urlEncodedKey = "";
-        String urlEncodedValue = "";
-
-        try {
-            urlEncodedKey = URLEncoder.encode(key, Constants.UTF8_ENCODING).replace("\\+", " ");
-            urlEncodedValue = URLEncoder.encode(value, Constants.UTF8_ENCODING).replace("\\+", " ");
-        } catch (UnsupportedEncodingException e) {
-            e.printStackTrace();
-        }
-
         Map<String, Object> params = new HashMap<String, Object>();
 
         params.put(Constants.HTTP_PARAM_SESSION_CODE, this.getSessionCode(false));
         params.put(Constants.HTTP_PARAM_EVENT_CODE, eventCode);
-        params.put(Constants.HTTP_PARAM_EVENT_KEY, urlEncodedKey);
-        params.put(Constants.HTTP_PARAM_EVENT_VALUE, urlEncodedValue);
+        params.put(Constants.HTTP_PARAM_EVENT_KEY, key);
+        params.put(Constants.HTTP_PARAM_EVENT_VALUE, value);
         params.put(Constants.HTTP_PARAM_EVENT_DURATION, duration);
 
         ICurioResultListener callback = new ICurioResultListener() {
             @Override
             public void handleResult(int statusCode, JSONObject result) {
-                if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
-                    if (unauthCount <= 5) {
-                        unauthCount++;
-                        CurioLogger.d(TAG, "End Event - Try count: " + unauthCount);
-
-                        /**
-                         * If sessionStart request not already sent, 1-Stop second and third priority request queue processing. 2-Send sessionStart request. 3-Set sessionStartsent flag.
-                         */
-                        if (!isSessionStartSent) {
-                            curioRequestProcessor.setLowerPriorityQueueProcessingStatus(false);
-                            startSession(true);
-                            isSessionStartSent = true;
-                        }
-                        endEvent(key, value, duration);
-                    }
-                } else if (statusCode == HttpStatus.SC_OK) {
+                if (statusCode == HttpStatus.SC_OK) {
                     CurioLogger.d(TAG, "Server responded OK. Event ended.");
                 } else {
                     CurioLogger.d(TAG, "Failed to end event. Server responded with status code: " + statusCode);
@@ -786,6 +741,11 @@ public class CurioClient implements INetworkConnectivityChangeListener {
                 DBRequestProcessor.pushToPeriodicDispatchDBQueue(offlineRequest);
             } else {
                 OnlineRequest onlineRequest = new OnlineRequest(url, params, callback, priority);
+
+                if (path.equals(Constants.SERVER_URL_SUFFIX_SESSION_START)) {
+                    curioRequestProcessor.onSessionStartQueued((String) params.get(Constants.HTTP_PARAM_SESSION_CODE));
+                }
+
                 CurioLogger.d(TAG, "[ONLINE REQ] added to queue. URL:" + url + ", SC: " + onlineRequest.getParams().get(Constants.HTTP_PARAM_SESSION_CODE) + ", HC:"
                         + onlineRequest.getParams().get(Constants.HTTP_PARAM_HIT_CODE));
                 CurioRequestProcessor.pushToOnlineQueue(onlineRequest);
@@ -816,6 +776,9 @@ public class CurioClient implements INetworkConnectivityChangeListener {
     public void networkConnectivityChanged(boolean isConnected) {
         CurioLogger.d(TAG, "NETWORK CONNECTIVITY CHANGED, CONNECTION STATE: " + isConnected);
 
+        // Request processor waits for connectivity to dispatch queued and stored requests.
+        CurioRequestProcessor.wakeUp();
+
         if (initialConnectionState != null && initialConnectionState.booleanValue() == isConnected) {
             initialConnectionState = null;
             return;
@@ -824,6 +787,7 @@ public class CurioClient implements INetworkConnectivityChangeListener {
         if (isConnected) {
             isOfflineCachingOn = false;
             CurioLogger.i(TAG, "Offline cache is DISABLED.");
+            CurioTransportFactory.getCircuitBreaker(context).onConnectivityRestored();
             if (getSessionCode(false) == null) {
                 startSession(true);
             } else if (getSessionCode(false) != null && !isOfflineRequestDispatchInProgress) {
@@ -832,6 +796,7 @@ public class CurioClient implements INetworkConnectivityChangeListener {
         } else {
             isOfflineCachingOn = true;
             CurioLogger.i(TAG, "Offline cache is ENABLED.");
+            DBRequestProcessor.onOfflineTransition();
         }
     }
 
@@ -896,27 +861,7 @@ public class CurioClient implements INetworkConnectivityChangeListener {
         ICurioResultListener callback = new ICurioResultListener() {
             @Override
             public void handleResult(int statusCode, JSONObject result) {
-                if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
-                    if (unauthCount <= 5) {
-                        unauthCount++;
-                        CurioLogger.d(TAG, "SendRegistrationId - Try count: " + unauthCount);
-                        /**
-                         * If sessionStart request not already sent, 1-Stop second and third priority request queue processing. 2-Send sessionStart request. 3-Set sessionStartsent flag.
-                         */
-                        if (!isSessionStartSent) {
-                            curioRequestProcessor.setLowerPriorityQueueProcessingStatus(false);
-                            startSession(true);
-                            isSessionStartSent = true;
-                        }
-                        sendRegistrationId(getContext(), registrationId);
-                    } else {
-                        if (customIdRegisterListener != null) {
-                            customIdRegisterListener.onCustomIdRegisterResponse(false, statusCode);
-                        }
-                        CurioLogger.e(TAG, "Failed to send registration id. Server responded with status code: " + statusCode);
-                    }
-                } else if (statusCode == HttpStatus.SC_OK) {
-                    unauthCount = 0;
+                if (statusCode == HttpStatus.SC_OK) {
                     if (customIdRegisterListener != null) {
                         customIdRegisterListener.onCustomIdRegisterResponse(true, statusCode);
                     }
@@ -1062,32 +1007,7 @@ public class CurioClient implements INetworkConnectivityChangeListener {
             ICurioResultListener callback = new ICurioResultListener() {
                 @Override
                 public void handleResult(int statusCode, JSONObject result) {
-                    if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
-                        if (unauthCount <= 5) {
-                            unauthCount++;
-                            CurioLogger.d(TAG, "Unregister - Try count: " + unauthCount);
-                            /**
-                             * If sessionStart request not already sent, 1-Stop second and third priority request queue processing. 2-Send sessionStart request. 3-Set sessionStartsent flag.
-                             */
-                            if (!isSessionStartSent) {
-                                curioRequestProcessor.setLowerPriorityQueueProcessingStatus(false);
-
-                                // This flag prevents re-registration at push server when session started again.
-                                // To enable push server registration again, setCustomId() or sendCustomId() methods should be called,
-                                // or application instance should be killed.
-                                isTriggeredByUnregisterRequest = true;
-                                startSession(true);
-                                isSessionStartSent = true;
-                            }
-                            unregisterFromNotificationServer();
-                        } else {
-                            if (unregisterListener != null) {
-                                unregisterListener.onUnregisterResponse(false, statusCode);
-                            }
-                            CurioLogger.e(TAG, "Failed to unregister. Server responded with status code: " + statusCode);
-                        }
-                    } else if (statusCode == HttpStatus.SC_OK) {
-                        unauthCount = 0;
+                    if (statusCode == HttpStatus.SC_OK) {
                         PushUtil.deleteRegistrationId(context);
                         if (unregisterListener != null) {
                             unregisterListener.onUnregisterResponse(true, statusCode);
@@ -1140,25 +1060,7 @@ public class CurioClient implements INetworkConnectivityChangeListener {
         ICurioResultListener callback = new ICurioResultListener() {
             @Override
             public void handleResult(int statusCode, JSONObject result) {
-                if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
-                    if (unauthCount <= 5) {
-                        unauthCount++;
-                        CurioLogger.d(TAG, "sendUserTags - Try count: " + unauthCount);
-                        /**
-                         * If sessionStart request not already sent, 1-Stop second and third priority request queue processing. 2-Send sessionStart request. 3-Set sessionStartsent flag.
-                         */
-                        if (!isSessionStartSent) {
-                            curioRequestProcessor.setLowerPriorityQueueProcessingStatus(false);
-                            startSession(true);
-                            isSessionStartSent = true;
-                        }
-                        sendUserTags(userTagValueMap, userTagsResponseListener);
-                    } else {
-                        CurioClient.this.userTagsResponseListener.onSendUserTagsResponse(false, statusCode);
-                        CurioLogger.e(TAG, "Failed to send user tags. Server responded with status code: " + statusCode);
-                    }
-                } else if (statusCode == HttpStatus.SC_OK) {
-                    unauthCount = 0;
+                if (statusCode == HttpStatus.SC_OK) {
                     CurioClient.this.userTagsResponseListener.onSendUserTagsResponse(true, statusCode);
                     CurioLogger.d(TAG, "User tags has been successfully sent to server.");
                 } else {
@@ -1202,25 +1104,7 @@ public class CurioClient implements INetworkConnectivityChangeListener {
         ICurioResultListener callback = new ICurioResultListener() {
             @Override
             public void handleResult(int statusCode, JSONObject result) {
-                if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
-                    if (unauthCount <= 5) {
-                        unauthCount++;
-                        CurioLogger.d(TAG, "getUserTags - Try count: " + unauthCount);
-                        /**
-                         * If sessionStart request not already sent, 1-Stop second and third priority request queue processing. 2-Send sessionStart request. 3-Set sessionStartsent flag.
-                         */
-                        if (!isSessionStartSent) {
-                            curioRequestProcessor.setLowerPriorityQueueProcessingStatus(false);
-                            startSession(true);
-                            isSessionStartSent = true;
-                        }
-                        getUserTags(CurioClient.this.userTagsResponseListener);
-                    } else {
-                        CurioClient.this.userTagsResponseListener.onGetUserTagsResponse(null, statusCode);
-                        CurioLogger.e(TAG, "Failed to get user tags. Server responded with status code: " + statusCode);
-                    }
-                } else if (statusCode == HttpStatus.SC_OK) {
-                    unauthCount = 0;
+                if (statusCode == HttpStatus.SC_OK) {
                     CurioClient.this.userTagsResponseListener.onGetUserTagsResponse(CurioUtil.getMapFromJson(result), statusCode);
                     CurioLogger.d(TAG, "User tags has been successfully requested from server.");
                 } else {
@@ -1374,6 +1258,11 @@ public class CurioClient implements INetworkConnectivityChangeListener {
 
         private boolean autoPushRegistration;
 
+        /**
+         * Static fields sent with session start and offline cache requests, URL encoded once and reused until one of them changes.
+         */
+        private byte[] encodedStaticParams;
+
         public StaticFeatureSet(String apiKey, String trackingCode, String visitorCode, int sessionTimeout, String gcmSenderId, boolean autoPushRegistration) {
             // Get screen sizes
             WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
@@ -1485,20 +1374,35 @@ public class CurioClient implements INetworkConnectivityChangeListener {
             this.availableStorage = Long.toString(StorageUtil.getTotalAvailableMemory());
         }
 
+        /**
+         * Creates a feature set with given codes, device features are left out.
+         *
+         * @param trackingCode
+         * @param visitorCode
+         * @param sessionTimeout
+         */
+        StaticFeatureSet(String trackingCode, String visitorCode, int sessionTimeout) {
+            this.trackingCode = trackingCode;
+            this.visitorCode = visitorCode;
+            this.sessionTimeout = sessionTimeout;
+        }
+
         public String getApiKey() {
             return apiKey;
         }
 
-        public void setApiKey(String apiKey) {
+        public synchronized void setApiKey(String apiKey) {
             this.apiKey = apiKey;
+            encodedStaticParams = null;
         }
 
         public String getTrackingCode() {
             return trackingCode;
         }
 
-        public void setTrackingCode(String trackingCode) {
+        public synchronized void setTrackingCode(String trackingCode) {
             this.trackingCode = trackingCode;
+            encodedStaticParams = null;
         }
 
         public String getVisitorCode() {
@@ -1513,8 +1417,9 @@ public class CurioClient implements INetworkConnectivityChangeListener {
             return sessionTimeout;
         }
 
-        public void setSessionTimeout(int sessionTimeout) {
+        public synchronized void setSessionTimeout(int sessionTimeout) {
             this.sessionTimeout = sessionTimeout;
+            encodedStaticParams = null;
         }
 
         public String getDeviceScreenWidth() {
@@ -1605,6 +1510,53 @@ public class CurioClient implements INetworkConnectivityChangeListener {
             this.autoPushRegistration = autoPushRegistration;
         }
 
+        /**
+         * Gets URL encoded static parameter block. It is encoded on first call and after a static field changes. Fields with null value are left out.
+         *
+         * @return
+         */
+        public synchronized byte[] getEncodedStaticParams() {
+            if (encodedStaticParams == null) {
+                FormRequestBody params = new FormRequestBody();
+
+                addIfNotNull(params, Constants.HTTP_PARAM_API_KEY, apiKey);
+                addIfNotNull(params, Constants.HTTP_PARAM_TRACKING_CODE, trackingCode);
+                addIfNotNull(params, Constants.HTTP_PARAM_VISITOR_CODE, visitorCode);
+                addIfNotNull(params, Constants.HTTP_PARAM_SESSION_TIMEOUT, Integer.toString(sessionTimeout));
+                addIfNotNull(params, Constants.HTTP_PARAM_SCREEN_WIDTH, deviceScreenWidth);
+                addIfNotNull(params, Constants.HTTP_PARAM_SCREEN_HEIGHT, deviceScreenHeight);
+                addIfNotNull(params, Constants.HTTP_PARAM_ACTIVITY_WIDTH, activityWidth);
+                addIfNotNull(params, Constants.HTTP_PARAM_ACTIVITY_HEIGHT, activityHeight);
+                addIfNotNull(params, Constants.HTTP_PARAM_LANG, language);
+                addIfNotNull(params, Constants.HTTP_PARAM_SIM_OPERATOR, simOperator);
+                addIfNotNull(params, Constants.HTTP_PARAM_SIM_COUNTRY_ISO, simCountryIso);
+                addIfNotNull(params, Constants.HTTP_PARAM_NETWORK_OPERATOR_NAME, networkOperatorName);
+                addIfNotNull(params, Constants.HTTP_PARAM_INTERNET_CONN_TYPE, connType);
+                addIfNotNull(params, Constants.HTTP_PARAM_BRAND, brand);
+                addIfNotNull(params, Constants.HTTP_PARAM_MODEL, model);
+                addIfNotNull(params, Constants.HTTP_PARAM_OS_TYPE, os);
+                addIfNotNull(params, Constants.HTTP_PARAM_OS_VERSION, osVersion);
+                addIfNotNull(params, Constants.HTTP_PARAM_CURIO_SDK_VERSION, sdkVersion);
+                addIfNotNull(params, Constants.HTTP_PARAM_APP_VERSION, appVersionName);
+                addIfNotNull(params, Constants.HTTP_PARAM_BT_STATE, btStatus);
+                addIfNotNull(params, Constants.HTTP_PARAM_AVAILABLE_STORAGE, availableStorage);
+                addIfNotNull(params, Constants.HTTP_PARAM_BATTERY_LEVEL, battLevel);
+
+                for (int i = 0; i < params.size(); i++) {
+                    CurioLogger.d(TAG, "STATIC PARAM --> " + params.getName(i) + " : " + params.getValue(i));
+                }
+
+                encodedStaticParams = params.toByteArray();
+            }
+            return encodedStaticParams;
+        }
+
+        private void addIfNotNull(FormRequestBody params, String name, String value) {
+            if (value != null) {
+                params.add(name, value);
+            }
+        }
+
     }
 
     private boolean checkIfBTPermissionIsGranted() {
@@ -1618,6 +1570,10 @@ public class CurioClient implements INetworkConnectivityChangeListener {
 
     protected void setOfflineRequestExist(boolean exist) {
         offlineReqExists = exist;
+
+        if (exist) {
+            CurioRequestProcessor.wakeUp();
+        }
     }
 
     protected boolean isParamLoadingFinished() {
@@ -1626,5 +1582,9 @@ public class CurioClient implements INetworkConnectivityChangeListener {
 
     protected void setParamLoadingFinished(boolean isParamLoadingFinished) {
         this.isParamLoadingFinished = isParamLoadingFinished;
+
+        if (isParamLoadingFinished) {
+            CurioRequestProcessor.wakeUp();
+        }
     }
 }
@@ -18,39 +18,47 @@
 package com.turkcell.curio;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
-import org.apache.http.NameValuePair;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
-import org.apache.http.client.ResponseHandler;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.impl.client.BasicResponseHandler;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.message.BasicNameValuePair;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import android.content.Context;
-
 import com.turkcell.curio.model.OfflineRequest;
 import com.turkcell.curio.model.OnlineRequest;
+import com.turkcell.curio.transport.CircuitOpenException;
+import com.turkcell.curio.transport.CurioHttpResponse;
+import com.turkcell.curio.transport.CurioRequestBody;
+import com.turkcell.curio.transport.CurioTransportFactory;
+import com.turkcell.curio.transport.FormRequestBody;
+import com.turkcell.curio.transport.GzipRequestBody;
+import com.turkcell.curio.transport.ICurioTransport;
+import com.turkcell.curio.transport.StoredRequestsBody;
+import com.turkcell.curio.utils.CircuitBreaker;
 import com.turkcell.curio.utils.Constants;
 import com.turkcell.curio.utils.CurioClientSettings;
-import com.turkcell.curio.utils.CurioDBContract.CurioOfflineCacheEntry;
-import com.turkcell.curio.utils.CurioDBContract.CurioPeriodicDispatchEntry;
 import com.turkcell.curio.utils.CurioDBHelper;
 import com.turkcell.curio.utils.CurioLogger;
 import com.turkcell.curio.utils.CurioUtil;
+import com.turkcell.curio.utils.JsonFieldReader;
 import com.turkcell.curio.utils.NetworkUtil;
+import com.turkcell.curio.utils.RetryBudget;
+import com.turkcell.curio.utils.RetryScheduler;
+import com.turkcell.curio.utils.SessionGate;
+import com.turkcell.curio.utils.WeightedFairScheduler;
 
 /**
  * Processor thread for all requests (periodic/offline/online). Requests pushed to queues and then polled and processed from those queues.
@@ -60,34 +68,168 @@ import com.turkcell.curio.utils.NetworkUtil;
  */
 public class CurioRequestProcessor implements Runnable {
 	private static final String TAG = "CurioRequestProcessor";
-	private static final BlockingQueue<OnlineRequest> firstPriorityQueue = new LinkedBlockingQueue<OnlineRequest>(Constants.REQUEST_QUEUE_CAPACITY);
-	private static final BlockingQueue<OnlineRequest> secondPriorityQueue = new LinkedBlockingQueue<OnlineRequest>(Constants.REQUEST_QUEUE_CAPACITY);
-	private static final BlockingQueue<OnlineRequest> thirdPriorityQueue = new LinkedBlockingQueue<OnlineRequest>(Constants.REQUEST_QUEUE_CAPACITY);
+	private static final String[] NO_RESULT_FIELDS = new String[0];
+	private static final BlockingQueue<OnlineRequest> firstPriorityQueue = new LinkedBlockingQueue<OnlineRequest>();
+	private static final BlockingQueue<OnlineRequest> secondPriorityQueue = new LinkedBlockingQueue<OnlineRequest>();
+	private static final BlockingQueue<OnlineRequest> thirdPriorityQueue = new LinkedBlockingQueue<OnlineRequest>();
 
 	public static final int FIRST_PRIORITY = 1;
 	public static final int SECOND_PRIORITY = 2;
 	public static final int THIRD_PRIORITY = 3;
 
+	/**
+	 * Monitor that processor thread waits on when there is nothing to do. Notified on every enqueue, connectivity change and state change that may create work.
+	 */
+	private static final Object workLock = new Object();
+	private static boolean workSignaled = false;
+
+	/**
+	 * Stored offline cache and periodic dispatch requests (backlog) are uploaded by a separate thread with its own transport,
+	 * so that a large upload on a slow link does not hold back online requests.
+	 */
+	private static final Object backlogLock = new Object();
+	private static boolean backlogSignaled = false;
+
+	/**
+	 * Memory queues hold at most queueCapacity requests each. Requests pushed to a full queue are spilled to online overflow table, and moved back
+	 * in order when there is room. While a queue has spilled requests, new requests of that queue are spilled too, so that order is kept.
+	 * Callbacks of spilled requests can not be stored, they wait in memory. Overflow state below is guarded by overflowLock.
+	 */
+	private static final Object overflowLock = new Object();
+	private static int queueCapacity = Constants.REQUEST_QUEUE_CAPACITY;
+	private static final int[] spilledRequestCounts = new int[THIRD_PRIORITY + 1];
+	private static final Map<Long, ICurioResultListener> spilledCallbacks = new HashMap<Long, ICurioResultListener>();
+	private static long nextSpillSequence = 1;
+
 	private boolean isPeriodicDispatchEnabled;
 
 	private long dispatchPeriod;
 
-	private boolean release = false;
+	private volatile boolean release = false;
 
 	private CurioClient clientInstance;
-	private Context context;
+	private final CurioClientSettings settings;
 	private long lastPeriodicDispatchCheckTime;
 	private int offlineTryCount = 0;
-	private boolean lowerPriorityQueueProcessing = true;
+
+	/**
+	 * Backoff of failed offline cache and periodic dispatch attempts. Both share a single retry budget.
+	 */
+	private final RetryScheduler offlineRetryScheduler;
+	private final RetryScheduler periodicRetryScheduler;
+	private final ICurioTransport onlineTransport;
+	private final ICurioTransport backlogTransport;
+	private final CircuitBreaker circuitBreaker;
+
+	/**
+	 * Second and third priority requests wait for session start of their session, see continueProcessing.
+	 */
+	private final SessionGate sessionGate;
+
+	/**
+	 * Online requests are sent by a bounded pool of dispatcher threads. In flight state below is guarded by dispatchLock.
+	 */
+	private final ExecutorService dispatchExecutor;
+	private final int maxConcurrentRequests;
+	private final WeightedFairScheduler onlineQueueScheduler;
+	private final Object dispatchLock = new Object();
+	private final Set<String> inFlightOrderingKeys = new HashSet<String>();
+	private int inFlightCount = 0;
+	private boolean barrierRequestInFlight = false;
+
+	/**
+	 * Online batching settings. If enabled, screen and event requests waiting in queues are sent together as a single batch request.
+	 */
+	private final boolean isOnlineBatchingEnabled;
+	private final int onlineBatchSize;
+	private final long onlineBatchMaxDelay;
+	private long nextOnlineBatchDispatchTime = 0;
+
+	/**
+	 * Batch request bodies larger than this many bytes are sent gzip compressed.
+	 */
+	private final int compressionThreshold;
+
+	/**
+	 * Max. number of rows and max. size in bytes of a page of stored requests sent in a single request.
+	 */
+	private final int flushPageSize;
+	private final int flushPageMaxBytes;
+
+	/**
+	 * Callbacks are run one at a time, since they share client state and were written for a single processor thread.
+	 */
+	private final Object callbackLock = new Object();
+
+	/**
+	 * Requests rejected with 401 (session timed out on server) are parked here while a single session start renews the session,
+	 * then they are all replayed with the new session code. Guarded by sessionRenewalLock.
+	 */
+	private final Object sessionRenewalLock = new Object();
+	private final List<OnlineRequest> parkedRequests = new ArrayList<OnlineRequest>();
+	private boolean sessionRenewalInProgress = false;
 
 	public CurioRequestProcessor(CurioClient clientInstance) {
+		this(clientInstance, CurioClientSettings.getInstance(clientInstance.getContext()), CurioTransportFactory.getSharedTransport(),
+				CurioTransportFactory.createTransport(clientInstance.getContext()), CurioTransportFactory.getCircuitBreaker(clientInstance.getContext()));
+	}
+
+	/**
+	 * Creates a processor with given settings and transports instead of shared ones.
+	 * 
+	 * @param clientInstance
+	 * @param settings
+	 * @param onlineTransport transport of online requests.
+	 * @param backlogTransport transport of stored offline cache and periodic dispatch requests.
+	 * @param circuitBreaker circuit breaker that transports share.
+	 */
+	CurioRequestProcessor(CurioClient clientInstance, CurioClientSettings settings, ICurioTransport onlineTransport, ICurioTransport backlogTransport, CircuitBreaker circuitBreaker) {
 		this.clientInstance = clientInstance;
-		this.context = clientInstance.getContext();
-		isPeriodicDispatchEnabled = CurioClientSettings.getInstance(clientInstance.getContext()).isPeriodicDispatchEnabled();
+		this.settings = settings;
+		this.onlineTransport = onlineTransport;
+		this.backlogTransport = backlogTransport;
+		this.circuitBreaker = circuitBreaker;
+		isPeriodicDispatchEnabled = settings.isPeriodicDispatchEnabled();
 
 		if (isPeriodicDispatchEnabled) {
-			dispatchPeriod = CurioClientSettings.getInstance(clientInstance.getContext()).getDispatchPeriod();
+			dispatchPeriod = settings.getDispatchPeriod();
+		}
+
+		isOnlineBatchingEnabled = !isPeriodicDispatchEnabled && settings.isOnlineBatchingEnabled();
+		onlineBatchSize = settings.getOnlineBatchSize();
+		compressionThreshold = settings.getCompressionThreshold();
+		flushPageSize = settings.getFlushPageSize();
+		flushPageMaxBytes = settings.getFlushPageMaxBytes();
+		onlineBatchMaxDelay = settings.getOnlineBatchMaxDelay();
+		sessionGate = new SessionGate(settings.getSessionStartTimeout());
+
+		RetryBudget retryBudget = new RetryBudget(settings.getMaxRetriesPerHour());
+		offlineRetryScheduler = new RetryScheduler("Offline cache dispatch", Constants.RETRY_BASE_DELAY_IN_MS, Constants.RETRY_MAX_DELAY_IN_MS, retryBudget);
+
+		/**
+		 * A failed periodic dispatch is never retried later than the next regular dispatch.
+		 */
+		long periodicMaxRetryDelay = isPeriodicDispatchEnabled ? Math.min(Constants.RETRY_MAX_DELAY_IN_MS, dispatchPeriod * 60 * 1000) : Constants.RETRY_MAX_DELAY_IN_MS;
+		periodicRetryScheduler = new RetryScheduler("Periodic dispatch", Constants.RETRY_BASE_DELAY_IN_MS, periodicMaxRetryDelay, retryBudget);
+
+		synchronized (overflowLock) {
+			queueCapacity = settings.getOnlineQueueCapacity();
 		}
+
+		int[] priorityWeights = new int[THIRD_PRIORITY + 1];
+		priorityWeights[SECOND_PRIORITY] = settings.getSecondPriorityWeight();
+		priorityWeights[THIRD_PRIORITY] = settings.getThirdPriorityWeight();
+		onlineQueueScheduler = new WeightedFairScheduler(priorityWeights, settings.getPriorityAgingInterval());
+
+		maxConcurrentRequests = settings.getMaxConcurrentRequests();
+		dispatchExecutor = Executors.newFixedThreadPool(maxConcurrentRequests, new ThreadFactory() {
+			private final AtomicInteger threadCount = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				return new Thread(runnable, Constants.THREAD_NAME_CURIO_DISPATCHER + " " + threadCount.incrementAndGet());
+			}
+		});
 	}
 
 	/**
@@ -96,21 +238,120 @@ public class CurioRequestProcessor implements Runnable {
 	 * @param onlineRequest
 	 */
 	public static void pushToOnlineQueue(OnlineRequest onlineRequest) {
-		BlockingQueue<OnlineRequest> queue = null;
+		int priority = onlineRequest.getPriority();
+		BlockingQueue<OnlineRequest> queue = getOnlineQueue(priority);
+
+		synchronized (overflowLock) {
+			if (spilledRequestCounts[priority] > 0 || queue.size() >= queueCapacity) {
+				/**
+				 * Storing is done by DB processor thread, so that caller (possibly UI thread) does not wait for DB.
+				 */
+				onlineRequest.setSequence(nextSpillSequence++);
+
+				if (onlineRequest.getCallback() != null) {
+					spilledCallbacks.put(onlineRequest.getSequence(), onlineRequest.getCallback());
+				}
+
+				spilledRequestCounts[priority]++;
+				DBRequestProcessor.pushToOnlineOverflowDBQueue(onlineRequest);
+
+				CurioLogger.d(TAG, "Online queue of priority " + priority + " is full. Request is spilled to DB. URL: " + onlineRequest.getUrl());
+				return;
+			}
+
+			queue.add(onlineRequest);
+		}
+
+		wakeUp();
+	}
 
-		switch (onlineRequest.getPriority()) {
+	/**
+	 * Gets memory queue of given priority.
+	 * 
+	 * @param priority
+	 * @return
+	 */
+	private static BlockingQueue<OnlineRequest> getOnlineQueue(int priority) {
+		switch (priority) {
 		case FIRST_PRIORITY:
-			queue = firstPriorityQueue;
-			break;
+			return firstPriorityQueue;
 		case SECOND_PRIORITY:
-			queue = secondPriorityQueue;
-			break;
-		case THIRD_PRIORITY:
-			queue = thirdPriorityQueue;
-			break;
+			return secondPriorityQueue;
+		default:
+			return thirdPriorityQueue;
+		}
+	}
+
+	/**
+	 * Called by DB processor if a spilled request could not be stored, so that its queue does not wait for it forever.
+	 * 
+	 * @param onlineRequest
+	 */
+	static void onOverflowRequestLost(OnlineRequest onlineRequest) {
+		synchronized (overflowLock) {
+			spilledRequestCounts[onlineRequest.getPriority()]--;
+			spilledCallbacks.remove(onlineRequest.getSequence());
+		}
+
+		CurioLogger.e(TAG, "Spilled online request is lost. URL: " + onlineRequest.getUrl());
+		wakeUp();
+	}
+
+	/**
+	 * Moves spilled requests of given priority back to memory queue, oldest first, as far as there is room in queue.
+	 * 
+	 * @param priority
+	 */
+	private void refillFromOverflow(int priority) {
+		BlockingQueue<OnlineRequest> queue = getOnlineQueue(priority);
+		int room;
+
+		synchronized (overflowLock) {
+			if (spilledRequestCounts[priority] == 0) {
+				return;
+			}
+			room = queueCapacity - queue.size();
+		}
+
+		if (room <= 0) {
+			return;
+		}
+
+		/**
+		 * Only processor thread refills, and new requests of this priority keep going to DB until the count drops to 0, so DB can be read out of the lock.
+		 * Requests which are still waiting in DB processor queue are not fetched yet, they will be moved back on a later call.
+		 */
+		List<OnlineRequest> requests = CurioDBHelper.getInstance().fetchOnlineOverflowRequests(priority, room);
+
+		if (requests.isEmpty()) {
+			return;
+		}
+
+		synchronized (overflowLock) {
+			for (OnlineRequest onlineRequest : requests) {
+				onlineRequest.setCallback(spilledCallbacks.remove(onlineRequest.getSequence()));
+				queue.add(onlineRequest);
+				spilledRequestCounts[priority]--;
+			}
+		}
+
+		CurioDBHelper.getInstance().deleteOnlineOverflowRequests(priority, requests.get(requests.size() - 1).getSequence());
+		CurioLogger.d(TAG, requests.size() + " spilled requests of priority " + priority + " moved back to memory queue.");
+	}
+
+	/**
+	 * Wakes up processor and backlog uploader threads if they are waiting for work.
+	 */
+	public static void wakeUp() {
+		synchronized (workLock) {
+			workSignaled = true;
+			workLock.notifyAll();
 		}
 
-		queue.add(onlineRequest);
+		synchronized (backlogLock) {
+			backlogSignaled = true;
+			backlogLock.notifyAll();
+		}
 	}
 
 	public void run() {
@@ -120,21 +361,22 @@ public class CurioRequestProcessor implements Runnable {
 			 * Do not start processing requests until parameter loading completely finishes, since we need those params for processing.
 			 */
 			while (!clientInstance.isParamLoadingFinished()) {
-				Thread.sleep(100);
+				waitForWork(0);
 			}
 
+			/**
+			 * Overflow table should not be read while spilled requests of a previous run are still in it.
+			 */
+			DBRequestProcessor.awaitOverflowCleanup();
+
+			new Thread(new BacklogUploader(), Constants.THREAD_NAME_CURIO_BACKLOG_UPLOADER).start();
+
 			while (true) {
 				if (NetworkUtil.getInstance().isConnected()) {
-					processStoredOfflineRequests();
-					if (isPeriodicDispatchEnabled) {
-						processStoredPeriodicDispatchRequests();
-					}
-					processOnlineQueue(firstPriorityQueue, FIRST_PRIORITY);
-					processOnlineQueue(secondPriorityQueue, SECOND_PRIORITY);
-					processOnlineQueue(thirdPriorityQueue, THIRD_PRIORITY);
+					processOnlineQueues();
 				}
 
-				Thread.sleep(100);
+				waitForWork(calculateWaitTime());
 			}
 		} catch (InterruptedException e) {
 			CurioLogger.e(TAG, e.getMessage());
@@ -142,73 +384,261 @@ public class CurioRequestProcessor implements Runnable {
 	}
 
 	/**
-	 * Processes stored periodic dispatch requests.
+	 * Hands over online requests that can be sent now to dispatcher threads. Called by processor thread while device is connected.
+	 */
+	void processOnlineQueues() {
+		refillFromOverflow(FIRST_PRIORITY);
+		refillFromOverflow(SECOND_PRIORITY);
+		refillFromOverflow(THIRD_PRIORITY);
+		openSessionGateIfTimedOut();
+
+		/**
+		 * Session start should be sent before anything else, so lower priority queues are not processed until first priority queue is drained.
+		 */
+		if (processOnlineQueue(firstPriorityQueue, FIRST_PRIORITY)) {
+			if (isOnlineBatchingEnabled) {
+				processOnlineBatch();
+			}
+			processLowerPriorityQueues();
+		}
+	}
+
+	/**
+	 * Blocks until processor is woken up or given timeout elapses. Returns immediately if a wake up signal arrived while processing.
+	 * 
+	 * @param timeout in milliseconds, 0 means wait until woken up.
+	 * @throws InterruptedException
+	 */
+	private void waitForWork(long timeout) throws InterruptedException {
+		synchronized (workLock) {
+			if (!workSignaled) {
+				workLock.wait(timeout);
+			}
+			workSignaled = false;
+		}
+	}
+
+	/**
+	 * Calculates how long processor can wait until the next scheduled work (dispatch of a waiting online batch or session start timeout).
+	 * 
+	 * @return wait time in milliseconds, 0 if there is no scheduled work.
+	 */
+	private long calculateWaitTime() {
+		if (!NetworkUtil.getInstance().isConnected()) {
+			// Connectivity change or a new request will wake processor up.
+			return 0;
+		}
+
+		long nextWorkTime = nextOnlineBatchDispatchTime;
+		long sessionGateDeadline = sessionGate.getDeadline();
+
+		if (sessionGateDeadline != 0 && (nextWorkTime == 0 || sessionGateDeadline < nextWorkTime)) {
+			nextWorkTime = sessionGateDeadline;
+		}
+
+		if (nextWorkTime == 0) {
+			return 0;
+		}
+
+		// Never return 0 for a due deadline, since 0 means waiting forever.
+		return Math.max(1, nextWorkTime - System.currentTimeMillis());
+	}
+
+	/**
+	 * Uploads stored offline cache and periodic dispatch requests page by page. Before each page, waits until live first priority
+	 * requests (session start) are sent, so that backlog never delays them.
+	 */
+	private class BacklogUploader implements Runnable {
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					/**
+					 * While circuit is open backlog waits on DB, it is not worth trying.
+					 */
+					if (NetworkUtil.getInstance().isConnected() && !circuitBreaker.isOpen(System.currentTimeMillis())) {
+						yieldToLiveRequests();
+
+						if (processStoredOfflineRequests()) {
+							// A page is done, go on with next page without waiting.
+							continue;
+						}
+
+						if (isPeriodicDispatchEnabled) {
+							processStoredPeriodicDispatchRequests();
+						}
+					}
+
+					waitForBacklogWork(calculateBacklogWaitTime());
+				}
+			} catch (InterruptedException e) {
+				CurioLogger.e(TAG, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Blocks backlog uploader until processor is woken up or given timeout elapses.
+	 * 
+	 * @param timeout in milliseconds, 0 means wait until woken up.
+	 * @throws InterruptedException
+	 */
+	private void waitForBacklogWork(long timeout) throws InterruptedException {
+		synchronized (backlogLock) {
+			if (!backlogSignaled) {
+				backlogLock.wait(timeout);
+			}
+			backlogSignaled = false;
+		}
+	}
+
+	/**
+	 * Blocks backlog uploader while there are first priority requests waiting or a session start/end request is in flight.
+	 * Both queue changes and request completions wake backlog uploader up.
+	 * 
+	 * @throws InterruptedException
+	 */
+	private void yieldToLiveRequests() throws InterruptedException {
+		while (isLiveRequestPending()) {
+			CurioLogger.v(TAG, "Backlog upload waits for live first priority requests.");
+			waitForBacklogWork(0);
+		}
+	}
+
+	private boolean isLiveRequestPending() {
+		synchronized (dispatchLock) {
+			if (barrierRequestInFlight) {
+				return true;
+			}
+		}
+		return !firstPriorityQueue.isEmpty();
+	}
+
+	/**
+	 * Calculates how long backlog uploader may wait until next offline cache retry or periodic dispatch.
+	 * 
+	 * @return wait time in milliseconds, 0 means waiting until woken up.
+	 */
+	private long calculateBacklogWaitTime() {
+		if (!NetworkUtil.getInstance().isConnected()) {
+			// Connectivity change will wake backlog uploader up.
+			return 0;
+		}
+
+		long nextDeadline = Long.MAX_VALUE;
+
+		if (clientInstance.offlineRequestExist()) {
+			nextDeadline = offlineRetryScheduler.getNextAttemptTime();
+		}
+
+		if (isPeriodicDispatchEnabled) {
+			long periodicRetryTime = periodicRetryScheduler.getNextAttemptTime();
+			nextDeadline = Math.min(nextDeadline, periodicRetryTime > 0 ? periodicRetryTime : lastPeriodicDispatchCheckTime + (dispatchPeriod * 60 * 1000));
+		}
+
+		if (nextDeadline == Long.MAX_VALUE) {
+			return 0;
+		}
+
+		// Nothing can be sent before circuit lets a probe out.
+		nextDeadline = Math.max(nextDeadline, circuitBreaker.getOpenUntil());
+
+		// Never return 0 for a due deadline, since 0 means waiting forever.
+		return Math.max(1, nextDeadline - System.currentTimeMillis());
+	}
+
+	/**
+	 * Processes stored periodic dispatch requests. Runs on backlog uploader thread.
+	 * 
+	 * @throws InterruptedException
 	 */
-	private void processStoredPeriodicDispatchRequests() {
+	private void processStoredPeriodicDispatchRequests() throws InterruptedException {
 		if (NetworkUtil.getInstance().isConnected()) {
 			
 			/**
 			 * If release true, send periodic dispatch data immediately or,
 			 * wait for the dispatch period.
 			 */
-			if (!release && !checkPeriodicDispatchTime()) {
+			if (!release && !isPeriodicDispatchDue()) {
 				return;
 			}
 
 			CurioLogger.d(TAG, "Time for periodic dispatch! Preparing to dispatch stored activities...");
 
-			String jsonData = CurioDBHelper.getInstance().fetchStoredRequestsFromTable(CurioPeriodicDispatchEntry.TABLE_NAME);
+			String url = settings.getServerUrl() + Constants.SERVER_URL_SUFFIX_PERIODIC_BATCH;
 
-			if (jsonData == null) {
-				return;
-			}
+			CurioLogger.d(TAG, "URL : " + url);
+
+			ICurioTransport transport = backlogTransport;
 
 			/**
-			 * Send fetched requests
+			 * Stored requests are sent page by page, oldest first. Each page is deleted as soon as it is sent, so a failure only affects the page being sent.
+			 * If a page could not be sent, it is kept on DB as not in process and the rest waits for next dispatch with it.
 			 */
-			String url = CurioClientSettings.getInstance(context).getServerUrl() + Constants.SERVER_URL_SUFFIX_PERIODIC_BATCH;
+			while (true) {
+				yieldToLiveRequests();
 
-			CurioLogger.d(TAG, "URL : " + url);
+				long pageDataLength = CurioDBHelper.getInstance().markNextPageAsInProcess(Constants.LANE_PERIODIC_DISPATCH, flushPageSize, flushPageMaxBytes);
+
+				if (pageDataLength == 0) {
+					break;
+				}
+
+				if (!periodicRetryScheduler.acquireAttempt(System.currentTimeMillis())) {
+					CurioDBHelper.getInstance().setInProcessPeriodicRequestsAsNotInProcess();
+					break;
+				}
 
-			HttpClient client = new DefaultHttpClient();
-			HttpPost post = new HttpPost(url);
+				CurioHttpResponse httpResponse = null;
 
-			boolean isRequestSuccessful = false;
+				boolean isRequestSuccessful = false;
+				long retryAfter = 0;
 
-			try {
-				post.setEntity(new UrlEncodedFormEntity(generatePairsForPeriodicDispatch(jsonData)));
-				HttpResponse httpResponse = client.execute(post);
+				try {
+					httpResponse = transport.post(url, compressIfLarge(new StoredRequestsBody(generatePairsForPeriodicDispatch(), Constants.LANE_PERIODIC_DISPATCH, pageDataLength)));
 
-				int statusCode = httpResponse.getStatusLine().getStatusCode();
+					int statusCode = httpResponse.getStatusCode();
 
-				CurioLogger.d(TAG, "Periodic batch request sent, and response status code is " + statusCode);
+					CurioLogger.d(TAG, "Periodic batch request sent, and response status code is " + statusCode);
 
-				if (statusCode == HttpStatus.SC_OK) {
-					isRequestSuccessful = true;
-				} else if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
-					/**
-					 * If http status code is 401, this means session has been timed out, so start a new session By setting sessionCode to null, we can ensure to generate a new session code.
-					 */
-					clientInstance.setSessionCode(null);
-					clientInstance.startSession(true);
-				}
+					if (statusCode == HttpStatus.SC_OK) {
+						isRequestSuccessful = true;
+					} else {
+						retryAfter = RetryScheduler.parseRetryAfter(httpResponse.getHeader(Constants.HTTP_HEADER_RETRY_AFTER));
+					}
 
-			} catch (Exception e) {
-				CurioLogger.e(TAG, e.getMessage(), e);
-				isRequestSuccessful = false;
-			}
+					if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
+						/**
+						 * If http status code is 401, this means session has been timed out, so start a new session unless one is already being started.
+						 */
+						requestSessionRenewal();
+					}
 
-			client.getConnectionManager().closeExpiredConnections();
+				} catch (CircuitOpenException e) {
+					CurioLogger.d(TAG, e.getMessage());
+					periodicRetryScheduler.onAttemptNotSent();
+					retryAfter = Math.max(0, circuitBreaker.getOpenUntil() - System.currentTimeMillis());
+				} catch (Exception e) {
+					CurioLogger.e(TAG, e.getMessage(), e);
+					isRequestSuccessful = false;
+				} finally {
+					if (httpResponse != null) {
+						httpResponse.close();
+					}
+				}
 
-			/**
-			 * If dispatching successful, delete sent request records from DB. If not, keep them on DB as not in process, so they can be sent on next dispatch.
-			 */
-			if (isRequestSuccessful) {
-				CurioDBHelper.getInstance().deleteInProcessPeriodicRequests();
-			} else {
-				CurioDBHelper.getInstance().setInProcessPeriodicRequestsAsNotInProcess();
+				if (isRequestSuccessful) {
+					periodicRetryScheduler.onSuccess();
+					CurioDBHelper.getInstance().deleteInProcessPeriodicRequests();
+				} else {
+					periodicRetryScheduler.onFailure(retryAfter);
+					CurioDBHelper.getInstance().setInProcessPeriodicRequestsAsNotInProcess();
+					break;
+				}
 			}
 
+			transport.evictIdleConnections();
+
 			/**
 			 * If exiting from application and release command sent, end session.
 			 */
@@ -225,6 +655,18 @@ public class CurioRequestProcessor implements Runnable {
 		}
 	}
 
+	/**
+	 * Checks if periodic dispatch should run now. If last dispatch failed, it runs when its retry is due, otherwise when dispatch period has passed.
+	 * 
+	 * @return
+	 */
+	private boolean isPeriodicDispatchDue() {
+		if (periodicRetryScheduler.getNextAttemptTime() > 0) {
+			return periodicRetryScheduler.isReady(System.currentTimeMillis());
+		}
+		return checkPeriodicDispatchTime();
+	}
+
 	/**
 	 * Checks if periodic dispatch time has come.
 	 * 
@@ -240,210 +682,754 @@ public class CurioRequestProcessor implements Runnable {
 	}
 
 	/**
-	 * Processes stored offline cache requests
+	 * Processes stored offline cache requests. Runs on backlog uploader thread.
+	 * 
+	 * @return true if a page is sent (or discarded) and next page can be sent right away.
 	 */
-	private void processStoredOfflineRequests() {
-		if (!clientInstance.offlineRequestExist()) {
-			return;
+	private boolean processStoredOfflineRequests() {
+		if (!clientInstance.offlineRequestExist() || !offlineRetryScheduler.isReady(System.currentTimeMillis())) {
+			return false;
 		}
 
-		String jsonData = CurioDBHelper.getInstance().fetchStoredRequestsFromTable(CurioOfflineCacheEntry.TABLE_NAME);
+		/**
+		 * Stored requests are sent page by page, oldest first, one page on each call so that live requests can go before the next page.
+		 * Each page is deleted as soon as it is sent, so a failure only affects the page being sent.
+		 */
+		long pageDataLength = CurioDBHelper.getInstance().markNextPageAsInProcess(Constants.LANE_OFFLINE_CACHE, flushPageSize, flushPageMaxBytes);
 
-		if (jsonData == null) {
+		if (pageDataLength == 0) {
 			CurioLogger.d(TAG, "There are no stored offline requests. Aborting offline request dispatch.");
 			clientInstance.setOfflineRequestExist(false);
-			return;
+			clientInstance.setOfflineRequestDispatchAsFinished();
+			return false;
+		}
+
+		if (!offlineRetryScheduler.acquireAttempt(System.currentTimeMillis())) {
+			CurioDBHelper.getInstance().setInProcessOfflineRequestsAsNotInProcess();
+			clientInstance.setOfflineRequestDispatchAsFinished();
+			return false;
 		}
 
 		/**
 		 * Send fetched requests
 		 */
-		String url = CurioClientSettings.getInstance(context).getServerUrl() + Constants.SERVER_URL_SUFFIX_OFFLINE_CACHE;
+		String url = settings.getServerUrl() + Constants.SERVER_URL_SUFFIX_OFFLINE_CACHE;
 
 		CurioLogger.d(TAG, "URL : " + url);
 
-		HttpClient client = new DefaultHttpClient();
-		HttpPost post = new HttpPost(url);
+		ICurioTransport transport = backlogTransport;
+		CurioHttpResponse httpResponse = null;
 
-		boolean isRequestSuccessful = true;
+		boolean isRequestSuccessful = false;
+		boolean isPageRejected = false;
+		long retryAfter = 0;
 
 		try {
-			post.setEntity(new UrlEncodedFormEntity(generatePairsForOfflineRequest(jsonData)));
-			HttpResponse httpResponse = client.execute(post);
+			httpResponse = transport.post(url, compressIfLarge(new StoredRequestsBody(generatePairsForOfflineRequest(), Constants.LANE_OFFLINE_CACHE, pageDataLength)));
 
-			int statusCode = httpResponse.getStatusLine().getStatusCode();
+			int statusCode = httpResponse.getStatusCode();
 			CurioLogger.d(TAG, "Offline cache request sent, and response status code is " + statusCode);
 
-			String response = null;
-
 			if (statusCode == HttpStatus.SC_OK) {
+				isRequestSuccessful = true;
 				offlineTryCount = 0;
 				release = false;
-				ResponseHandler<String> responseHandler = new BasicResponseHandler();
-				response = responseHandler.handleResponse(httpResponse);
 
-				CurioLogger.d(TAG, "OFFLINE REQ RESPONSE: " + response);
-
-				JSONObject jsonResult = null;
+				/**
+				 * Only session code is needed from response, rest of the body is not parsed.
+				 */
+				try {
+					JSONObject jsonResult = JsonFieldReader.readFields(httpResponse.getBody(), Constants.JSON_NODE_SESSION_CODE);
+					String sessionCode = jsonResult != null ? jsonResult.optString(Constants.JSON_NODE_SESSION_CODE, null) : null;
 
-				if (response != null && !(response.trim().length() == 0)) {
-					try {
-						jsonResult = new JSONObject(response);
-						String sessionCode = jsonResult.getString(Constants.JSON_NODE_SESSION_CODE);
+					CurioLogger.d(TAG, "OFFLINE REQ RESPONSE session code: " + sessionCode);
 
-						if (sessionCode != null && !(response.trim().length() == 0)) {
-							clientInstance.setSessionCode(sessionCode);
-						}
-					} catch (JSONException e) {
-						e.printStackTrace();
+					if (sessionCode != null && !(sessionCode.trim().length() == 0)) {
+						clientInstance.setSessionCode(sessionCode);
 					}
+				} catch (JSONException e) {
+					e.printStackTrace();
 				}
+			} else if (RetryScheduler.isRetryableStatus(statusCode)) {
+				/**
+				 * Server is temporarily failing or throttling, this says nothing about page content. Just retry later.
+				 */
+				retryAfter = RetryScheduler.parseRetryAfter(httpResponse.getHeader(Constants.HTTP_HEADER_RETRY_AFTER));
+				CurioLogger.d(TAG, "Offline request page could not be processed by server. Will try again.");
 			} else {
+				/**
+				 * Server did not accept this page. Only these rejections count, since a connection or server failure says nothing about page content.
+				 */
 				offlineTryCount++;
-				CurioLogger.d(TAG, "Offline request has been unsuccessful. Try count is " + offlineTryCount);
+				CurioLogger.d(TAG, "Offline request page has been rejected. Try count is " + offlineTryCount);
 
-				if (offlineTryCount > 4) {
-					isRequestSuccessful = true; // Do not try anymore.
-				} else {
-					isRequestSuccessful = false;
-				}
+				isPageRejected = offlineTryCount >= Constants.OFFLINE_PAGE_MAX_TRY_COUNT;
 			}
+		} catch (CircuitOpenException e) {
+			CurioLogger.d(TAG, e.getMessage());
+			offlineRetryScheduler.onAttemptNotSent();
+			retryAfter = Math.max(0, circuitBreaker.getOpenUntil() - System.currentTimeMillis());
 		} catch (Exception e) {
 			CurioLogger.e(TAG, e.getMessage(), e);
-			
-			offlineTryCount++;
-			CurioLogger.e(TAG, "Offline request has been unsuccessful. Try count is " + offlineTryCount);
-			
-			if (offlineTryCount > 4) {
-				isRequestSuccessful = true; // Do not try anymore.
-			} else {
-				isRequestSuccessful = false;
+			CurioLogger.e(TAG, "Offline request page could not be sent. Will try again.");
+		} finally {
+			if (httpResponse != null) {
+				httpResponse.close();
 			}
 		}
 
-		client.getConnectionManager().closeExpiredConnections();
+		transport.evictIdleConnections();
 
 		/**
-		 * If dispatching successful, delete sent request records from DB.
+		 * If dispatching successful, delete sent request records from DB. If server keeps rejecting the page, give up only on this page and go on with the next one.
 		 */
 		if (isRequestSuccessful) {
+			offlineRetryScheduler.onSuccess();
+			CurioDBHelper.getInstance().deleteInProcessOfflineRequests();
+		} else if (isPageRejected) {
+			CurioLogger.w(TAG, "Offline request page has been rejected " + offlineTryCount + " times. Discarding this page only.");
+			offlineTryCount = 0;
+			offlineRetryScheduler.onSuccess();
 			CurioDBHelper.getInstance().deleteInProcessOfflineRequests();
 		} else {
 			CurioDBHelper.getInstance().setInProcessOfflineRequestsAsNotInProcess();
+			offlineRetryScheduler.onFailure(retryAfter);
 		}
 
 		clientInstance.setOfflineRequestDispatchAsFinished();
+		return isRequestSuccessful || isPageRejected;
 	}
 
 	/**
-	 * Generates name value pair list from given json data for offline requests.
-	 *
-	 * @param jsonData
+	 * Wraps given batch request body to be sent gzip compressed if it is larger than compression threshold. Small bodies are sent
+	 * as they are, since compressing them saves less than it costs.
+	 * 
+	 * @param body
 	 * @return
 	 */
-	private List<? extends NameValuePair> generatePairsForOfflineRequest(String jsonData) {
-		List<NameValuePair> paramList = new ArrayList<NameValuePair>();
-
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_API_KEY, clientInstance.getStaticFeatureSet().getApiKey()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_SESSION_TIMEOUT, Integer.toString(clientInstance.getStaticFeatureSet().getSessionTimeout())));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_VISITOR_CODE, clientInstance.getStaticFeatureSet().getVisitorCode()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_TRACKING_CODE, clientInstance.getStaticFeatureSet().getTrackingCode()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_SCREEN_WIDTH, clientInstance.getStaticFeatureSet().getDeviceScreenWidth()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_SCREEN_HEIGHT, clientInstance.getStaticFeatureSet().getDeviceScreenHeight()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_ACTIVITY_WIDTH, clientInstance.getStaticFeatureSet().getActivityWidth()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_ACTIVITY_HEIGHT, clientInstance.getStaticFeatureSet().getActivityHeight()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_LANG, clientInstance.getStaticFeatureSet().getLanguage()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_SIM_OPERATOR, clientInstance.getStaticFeatureSet().getSimOperator()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_SIM_COUNTRY_ISO, clientInstance.getStaticFeatureSet().getSimCountryIso()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_NETWORK_OPERATOR_NAME, clientInstance.getStaticFeatureSet().getNetworkOperatorName()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_INTERNET_CONN_TYPE, clientInstance.getStaticFeatureSet().getConnType()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_BRAND, clientInstance.getStaticFeatureSet().getBrand()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_MODEL, clientInstance.getStaticFeatureSet().getModel()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_OS_TYPE, clientInstance.getStaticFeatureSet().getOs()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_OS_VERSION, clientInstance.getStaticFeatureSet().getOsVersion()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_CURIO_SDK_VERSION, clientInstance.getStaticFeatureSet().getSdkVersion()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_APP_VERSION, clientInstance.getStaticFeatureSet().getAppVersionName()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_BT_STATE, clientInstance.getStaticFeatureSet().getBtStatus()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_AVAILABLE_STORAGE, clientInstance.getStaticFeatureSet().getAvailableStorage()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_BATTERY_LEVEL, clientInstance.getStaticFeatureSet().getBattLevel()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_JSON_DATA, jsonData));
-
-		for (NameValuePair pair : paramList) {
-			CurioLogger.d(TAG, "PARAM --> " + pair.getName() + " : " + pair.getValue());
+	private CurioRequestBody compressIfLarge(CurioRequestBody body) {
+		long contentLength = body.getEstimatedLength();
+
+		if (compressionThreshold > 0 && (contentLength < 0 || contentLength >= compressionThreshold)) {
+			CurioLogger.d(TAG, "Batch request body of about " + contentLength + " bytes will be sent gzip compressed.");
+			return new GzipRequestBody(body);
 		}
-		return paramList;
+		return body;
 	}
 
 	/**
-	 * Generates name value pair list from given json data for periodic dispatch requests.
+	 * Generates form body for offline requests. Stored requests data is not included, it is streamed from DB while request is sent.
 	 *
-	 * @param jsonData
 	 * @return
 	 */
-	private List<? extends NameValuePair> generatePairsForPeriodicDispatch(String jsonData) {
-		List<NameValuePair> paramList = new ArrayList<NameValuePair>();
-
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_SESSION_CODE, clientInstance.getStaticFeatureSet().getSessionCode()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_SESSION_TIMEOUT, Integer.toString(clientInstance.getStaticFeatureSet().getSessionTimeout())));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_VISITOR_CODE, clientInstance.getStaticFeatureSet().getVisitorCode()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_TRACKING_CODE, clientInstance.getStaticFeatureSet().getTrackingCode()));
-		paramList.add(new BasicNameValuePair(Constants.HTTP_PARAM_JSON_DATA, jsonData));
-
-		for (NameValuePair pair : paramList) {
-			CurioLogger.d(TAG, "PARAM --> " + pair.getName() + " : " + pair.getValue());
-		}
-		return paramList;
+	private FormRequestBody generatePairsForOfflineRequest() {
+		return new FormRequestBody(clientInstance.getStaticFeatureSet().getEncodedStaticParams());
 	}
 
 	/**
-	 * Processes online request queue.
-	 * 
+	 * Generates form body for periodic dispatch requests. Requests data is not included, caller adds it or streams it.
+	 *
+	 * @return
+	 */
+	private FormRequestBody generatePairsForPeriodicDispatch() {
+		FormRequestBody paramList = new FormRequestBody();
+
+		paramList.add(Constants.HTTP_PARAM_SESSION_CODE, clientInstance.getStaticFeatureSet().getSessionCode());
+		paramList.add(Constants.HTTP_PARAM_SESSION_TIMEOUT, Integer.toString(clientInstance.getStaticFeatureSet().getSessionTimeout()));
+		paramList.add(Constants.HTTP_PARAM_VISITOR_CODE, clientInstance.getStaticFeatureSet().getVisitorCode());
+		paramList.add(Constants.HTTP_PARAM_TRACKING_CODE, clientInstance.getStaticFeatureSet().getTrackingCode());
+
+		for (int i = 0; i < paramList.size(); i++) {
+			CurioLogger.d(TAG, "PARAM --> " + paramList.getName(i) + " : " + paramList.getValue(i));
+		}
+		return paramList;
+	}
+
+	/**
+	 * Processes online request queue. Requests are handed over to dispatcher threads in queue order, until the queue is empty
+	 * or head of the queue has to wait for an in flight request.
+	 * 
 	 * @param queue
 	 * @param priority 
+	 * @return true if queue is drained.
 	 */
-	private void processOnlineQueue(BlockingQueue<OnlineRequest> queue, int priority) {
+	private boolean processOnlineQueue(BlockingQueue<OnlineRequest> queue, int priority) {
 		OnlineRequest onlineRequest = null;
 
 		if (queue.size() > 0) {
 			while (continueProcessing(priority)) {
-				onlineRequest = queue.poll();
+				onlineRequest = queue.peek();
 
 				if (onlineRequest == null) {
 					break;
 				}
 
+				if (isOnlineBatchingEnabled && isBatchableRequest(onlineRequest)) {
+					// Will be sent with the next online batch.
+					return false;
+				}
+
+				if (!tryMarkAsInFlight(onlineRequest)) {
+					CurioLogger.v(TAG, "Head of queue with priority " + priority + " waits for in flight requests. Queue size is " + queue.size());
+					return false;
+				}
+
+				queue.poll();
+				onlineQueueScheduler.recordDispatch(priority, System.currentTimeMillis() - onlineRequest.getTimestamp());
+				dispatchOnlineRequest(onlineRequest);
+			}
+			CurioLogger.v(TAG, "Processing of queue with priority " + priority + " is finished. Queue size is " + queue.size());
+		}
+
+		return queue.isEmpty();
+	}
+
+	/**
+	 * Processes second and third priority queues together. Each dispatch slot goes to the queue selected by weighted fair scheduler,
+	 * so that a busy second priority queue can not starve third priority queue. Processing ends when no queue can send now.
+	 */
+	private void processLowerPriorityQueues() {
+		long[] headTimestamps = new long[THIRD_PRIORITY + 1];
+		boolean[] blocked = new boolean[THIRD_PRIORITY + 1];
+
+		while (true) {
+			long now = System.currentTimeMillis();
+
+			for (int priority = SECOND_PRIORITY; priority <= THIRD_PRIORITY; priority++) {
+				headTimestamps[priority] = blocked[priority] ? 0 : getSchedulableHeadTimestamp(priority);
+			}
+
+			int priority = onlineQueueScheduler.select(headTimestamps, now);
+
+			if (priority < 0) {
+				break;
+			}
+
+			BlockingQueue<OnlineRequest> queue = getOnlineQueue(priority);
+			OnlineRequest onlineRequest = queue.peek();
+
+			if (!tryMarkAsInFlight(onlineRequest)) {
+				CurioLogger.v(TAG, "Head of queue with priority " + priority + " waits for in flight requests. Queue size is " + queue.size());
+				blocked[priority] = true;
+				continue;
+			}
+
+			queue.poll();
+			onlineQueueScheduler.onDispatched(priority, headTimestamps, now);
+			dispatchOnlineRequest(onlineRequest);
+		}
+	}
+
+	/**
+	 * Gets creation time of head request of given queue if it can be scheduled now.
+	 * 
+	 * @param priority
+	 * @return timestamp of head request, or 0 if queue is empty, is stopped or its head waits for next online batch.
+	 */
+	private long getSchedulableHeadTimestamp(int priority) {
+		if (!continueProcessing(priority)) {
+			return 0;
+		}
+
+		OnlineRequest onlineRequest = getOnlineQueue(priority).peek();
+
+		if (onlineRequest == null || (isOnlineBatchingEnabled && isBatchableRequest(onlineRequest))) {
+			return 0;
+		}
+
+		return onlineRequest.getTimestamp();
+	}
+
+	/**
+	 * Gets scheduler of online request queues, which also keeps queue wait time metrics of each priority.
+	 * 
+	 * @return
+	 */
+	public WeightedFairScheduler getOnlineQueueScheduler() {
+		return onlineQueueScheduler;
+	}
+
+	/**
+	 * Sends online request on a dispatcher thread.
+	 * 
+	 * @param onlineRequest
+	 */
+	private void dispatchOnlineRequest(final OnlineRequest onlineRequest) {
+		dispatchExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				boolean isSent = false;
+
 				try {
 					sendRequest(onlineRequest);
+					isSent = true;
+				} catch (CircuitOpenException e) {
+					CurioLogger.d(TAG, e.getMessage());
+					addFailedOnlineRequestToOfflineCache(onlineRequest);
 				} catch (Exception e) {
 					CurioLogger.e(TAG, "" + e.getMessage(), e);
 					if (e instanceof IOException) {
 						addFailedOnlineRequestToOfflineCache(onlineRequest);
 					}
+				} finally {
+					/**
+					 * Requests waiting for a session start which could not be sent should not wait for another one.
+					 */
+					if (!isSent && isSessionStartRequest(onlineRequest)) {
+						onSessionStartCompleted(onlineRequest.getParams().get(Constants.HTTP_PARAM_SESSION_CODE), 0);
+					}
+
+					markAsCompleted(onlineRequest);
 				}
+			}
+		});
+	}
+
+	/**
+	 * Collects screen and event requests from heads of second and third priority queues and sends them as batch requests.
+	 * A batch is sent when it reaches batch size or its oldest request waits longer than max. batch delay.
+	 */
+	private void processOnlineBatch() {
+		nextOnlineBatchDispatchTime = 0;
+
+		while (continueProcessing(SECOND_PRIORITY)) {
+			List<OnlineRequest> batch = new ArrayList<OnlineRequest>();
+			int countFromSecondQueue = collectBatchableRequests(secondPriorityQueue, batch);
+			int countFromThirdQueue = collectBatchableRequests(thirdPriorityQueue, batch);
 
+			if (batch.isEmpty()) {
+				return;
+			}
+
+			long oldestTimestamp = Long.MAX_VALUE;
+
+			for (OnlineRequest onlineRequest : batch) {
+				oldestTimestamp = Math.min(oldestTimestamp, onlineRequest.getTimestamp());
+			}
+
+			if (batch.size() < onlineBatchSize && System.currentTimeMillis() - oldestTimestamp < onlineBatchMaxDelay) {
+				nextOnlineBatchDispatchTime = oldestTimestamp + onlineBatchMaxDelay;
+				return;
+			}
+
+			if (!tryMarkBatchAsInFlight(batch)) {
+				CurioLogger.v(TAG, "Online batch of " + batch.size() + " requests waits for in flight requests.");
+				return;
+			}
+
+			for (int i = 0; i < countFromSecondQueue; i++) {
+				secondPriorityQueue.poll();
+			}
+
+			for (int i = 0; i < countFromThirdQueue; i++) {
+				thirdPriorityQueue.poll();
+			}
+
+			long now = System.currentTimeMillis();
+
+			for (int i = 0; i < batch.size(); i++) {
+				onlineQueueScheduler.recordDispatch(i < countFromSecondQueue ? SECOND_PRIORITY : THIRD_PRIORITY, now - batch.get(i).getTimestamp());
+			}
+
+			dispatchOnlineBatch(batch);
+		}
+	}
+
+	/**
+	 * Adds batchable requests at the head of given queue to batch, without removing them from queue.
+	 * 
+	 * @param queue
+	 * @param batch
+	 * @return number of requests added from this queue.
+	 */
+	private int collectBatchableRequests(BlockingQueue<OnlineRequest> queue, List<OnlineRequest> batch) {
+		int count = 0;
+
+		for (OnlineRequest onlineRequest : queue) {
+			if (batch.size() >= onlineBatchSize || !isBatchableRequest(onlineRequest)) {
+				break;
+			}
+
+			batch.add(onlineRequest);
+			count++;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Only screen start/end and event start/end requests can be sent in a batch.
+	 * 
+	 * @param onlineRequest
+	 * @return
+	 */
+	private boolean isBatchableRequest(OnlineRequest onlineRequest) {
+		String url = onlineRequest.getUrl();
+		return url.endsWith(Constants.SERVER_URL_SUFFIX_SCREEN_START) || url.endsWith(Constants.SERVER_URL_SUFFIX_SCREEN_END) || url.endsWith(Constants.SERVER_URL_SUFFIX_SEND_EVENT)
+				|| url.endsWith(Constants.SERVER_URL_SUFFIX_EVENT_END);
+	}
+
+	/**
+	 * Sends online batch on a dispatcher thread.
+	 * 
+	 * @param batch
+	 */
+	private void dispatchOnlineBatch(final List<OnlineRequest> batch) {
+		dispatchExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sendBatchRequest(batch);
+				} catch (CircuitOpenException e) {
+					CurioLogger.d(TAG, e.getMessage());
+					for (OnlineRequest onlineRequest : batch) {
+						addFailedOnlineRequestToOfflineCache(onlineRequest);
+					}
+				} catch (Exception e) {
+					CurioLogger.e(TAG, "" + e.getMessage(), e);
+					if (e instanceof IOException) {
+						for (OnlineRequest onlineRequest : batch) {
+							addFailedOnlineRequestToOfflineCache(onlineRequest);
+						}
+					}
+				} finally {
+					markBatchAsCompleted(batch);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Marks all requests of the batch as in flight, if none of them has to wait for an in flight request. Batch uses a single dispatch slot.
+	 * 
+	 * @param batch
+	 * @return true if batch can be sent now.
+	 */
+	private boolean tryMarkBatchAsInFlight(List<OnlineRequest> batch) {
+		synchronized (dispatchLock) {
+			if (barrierRequestInFlight || inFlightCount >= maxConcurrentRequests) {
+				return false;
+			}
+
+			for (OnlineRequest onlineRequest : batch) {
+				String orderingKey = getOrderingKey(onlineRequest);
+
+				if (orderingKey != null && inFlightOrderingKeys.contains(orderingKey)) {
+					return false;
+				}
+			}
+
+			for (OnlineRequest onlineRequest : batch) {
+				String orderingKey = getOrderingKey(onlineRequest);
+
+				if (orderingKey != null) {
+					inFlightOrderingKeys.add(orderingKey);
+				}
+			}
+
+			inFlightCount++;
+			return true;
+		}
+	}
+
+	/**
+	 * Removes all requests of the batch from in flight state and wakes processor up.
+	 * 
+	 * @param batch
+	 */
+	private void markBatchAsCompleted(List<OnlineRequest> batch) {
+		synchronized (dispatchLock) {
+			inFlightCount--;
+
+			for (OnlineRequest onlineRequest : batch) {
+				String orderingKey = getOrderingKey(onlineRequest);
+
+				if (orderingKey != null) {
+					inFlightOrderingKeys.remove(orderingKey);
+				}
+			}
+		}
+
+		wakeUp();
+	}
+
+	/**
+	 * Checks ordering rules and marks request as in flight if it can be sent now.
+	 * 
+	 * Session start and end requests are barriers: they are sent only when nothing else is in flight, and nothing else is sent until they complete.
+	 * Requests of the same screen or event (same hit code or event code) are sent one after another.
+	 * 
+	 * @param onlineRequest
+	 * @return true if request can be sent now.
+	 */
+	private boolean tryMarkAsInFlight(OnlineRequest onlineRequest) {
+		boolean isBarrier = isBarrierRequest(onlineRequest);
+		String orderingKey = getOrderingKey(onlineRequest);
+
+		synchronized (dispatchLock) {
+			if (barrierRequestInFlight || inFlightCount >= maxConcurrentRequests) {
+				return false;
+			}
+
+			if (isBarrier && inFlightCount > 0) {
+				return false;
+			}
+
+			if (orderingKey != null && !inFlightOrderingKeys.add(orderingKey)) {
+				return false;
+			}
+
+			inFlightCount++;
+			barrierRequestInFlight = isBarrier;
+			return true;
+		}
+	}
+
+	/**
+	 * Removes request from in flight state and wakes processor up, since a waiting request may be sent now.
+	 * 
+	 * @param onlineRequest
+	 */
+	private void markAsCompleted(OnlineRequest onlineRequest) {
+		String orderingKey = getOrderingKey(onlineRequest);
+
+		synchronized (dispatchLock) {
+			inFlightCount--;
+
+			if (orderingKey != null) {
+				inFlightOrderingKeys.remove(orderingKey);
+			}
+
+			if (isBarrierRequest(onlineRequest)) {
+				barrierRequestInFlight = false;
+			}
+		}
+
+		wakeUp();
+	}
+
+	private boolean isSessionStartRequest(OnlineRequest onlineRequest) {
+		return onlineRequest.getUrl().endsWith(Constants.SERVER_URL_SUFFIX_SESSION_START);
+	}
+
+	/**
+	 * Parks given request rejected with 401 until session is renewed. Only one session start is sent for all parked requests.
+	 * If session is already renewed after the request was sent, it is replayed right away.
+	 * 
+	 * @param onlineRequest
+	 * @param sentSessionCode session code request was sent with.
+	 * @return false if request is already replayed too many times, so 401 should be delivered to its callback.
+	 */
+	private boolean parkForSessionRenewal(OnlineRequest onlineRequest, Object sentSessionCode) {
+		if (onlineRequest.getReplayCount() >= Constants.SESSION_RENEWAL_MAX_REPLAY_COUNT) {
+			return false;
+		}
+
+		onlineRequest.setReplayCount(onlineRequest.getReplayCount() + 1);
+
+		boolean isAlreadyRenewed;
+
+		synchronized (sessionRenewalLock) {
+			isAlreadyRenewed = !sessionRenewalInProgress && sentSessionCode != null && !sentSessionCode.equals(clientInstance.getSessionCode(false));
+
+			if (!isAlreadyRenewed) {
+				parkedRequests.add(onlineRequest);
 			}
-			CurioLogger.v(TAG, "Processing of queue with priority " + priority + " is finished. Queue size is " + queue.size());
 		}
+
+		if (isAlreadyRenewed) {
+			CurioLogger.d(TAG, "Session is already renewed, replaying request. URL: " + onlineRequest.getUrl());
+			pushToOnlineQueue(onlineRequest);
+			return true;
+		}
+
+		CurioLogger.d(TAG, "Session is timed out on server, request is parked until session is renewed. URL: " + onlineRequest.getUrl());
+
+		if (onlineRequest.getUrl().endsWith(Constants.SERVER_URL_SUFFIX_UNREGISTER)) {
+			clientInstance.setTriggeredByUnregisterRequest();
+		}
+
+		requestSessionRenewal();
+		return true;
+	}
+
+	/**
+	 * Starts a new session unless one is already being started.
+	 */
+	private void requestSessionRenewal() {
+		synchronized (sessionRenewalLock) {
+			if (sessionRenewalInProgress) {
+				return;
+			}
+
+			sessionRenewalInProgress = true;
+		}
+
+		CurioLogger.d(TAG, "Renewing session.");
+
+		/**
+		 * Session start is stored to offline cache if there is no connection, so parked requests go there too.
+		 */
+		if (!clientInstance.renewSession()) {
+			completeSessionRenewal(0);
+		}
+	}
+
+	/**
+	 * Called when a session start request is completed. Parked requests are pushed back to their queues at once to be sent with the new session code,
+	 * stored to offline cache if session start could not be sent, or get 401 if server rejected session start.
+	 * 
+	 * @param statusCode status code of session start, 0 if it could not be sent.
+	 */
+	private void completeSessionRenewal(int statusCode) {
+		List<OnlineRequest> requests;
+
+		synchronized (sessionRenewalLock) {
+			sessionRenewalInProgress = false;
+			requests = new ArrayList<OnlineRequest>(parkedRequests);
+			parkedRequests.clear();
+		}
+
+		if (requests.isEmpty()) {
+			return;
+		}
+
+		CurioLogger.d(TAG, "Session renewal is completed with status " + statusCode + " for " + requests.size() + " parked requests.");
+
+		for (OnlineRequest onlineRequest : requests) {
+			if (statusCode == HttpStatus.SC_OK) {
+				pushToOnlineQueue(onlineRequest);
+			} else if (statusCode == 0) {
+				addFailedOnlineRequestToOfflineCache(onlineRequest);
+			} else if (onlineRequest.getCallback() != null) {
+				synchronized (callbackLock) {
+					onlineRequest.getCallback().handleResult(HttpStatus.SC_UNAUTHORIZED, null);
+				}
+			}
+		}
+	}
+
+	private boolean isBarrierRequest(OnlineRequest onlineRequest) {
+		String url = onlineRequest.getUrl();
+		return url.endsWith(Constants.SERVER_URL_SUFFIX_SESSION_START) || url.endsWith(Constants.SERVER_URL_SUFFIX_SESSION_END);
+	}
+
+	/**
+	 * Gets key of the screen or event that request belongs to.
+	 * 
+	 * @param onlineRequest
+	 * @return hit code or event code, null if request does not belong to a screen or event.
+	 */
+	private String getOrderingKey(OnlineRequest onlineRequest) {
+		Object code = onlineRequest.getParams().get(Constants.HTTP_PARAM_HIT_CODE);
+
+		if (code == null) {
+			code = onlineRequest.getParams().get(Constants.HTTP_PARAM_EVENT_CODE);
+		}
+
+		return code != null ? code.toString() : null;
 	}
 
 	/**
 	 * Decides wheter to continue processing second and third priority queues.
-	 * Stops processing until session start is successful.
+	 * Stops processing while session start of a new session is waited for.
 	 */
 	private boolean continueProcessing(int priority) {
-		if(!shouldLowerPriorityQueuesBeProcessed() && priority > FIRST_PRIORITY){
+		if(!sessionGate.isOpen() && priority > FIRST_PRIORITY){
 			return false;
 		}
 		return true;
 	}
 
-	public boolean shouldLowerPriorityQueuesBeProcessed() {
-		return lowerPriorityQueueProcessing;
+	/**
+	 * Called when a session start request is queued. Second and third priority requests are held until it completes,
+	 * unless server already accepted given session code.
+	 * 
+	 * @param sessionCode
+	 */
+	public void onSessionStartQueued(String sessionCode) {
+		sessionGate.onSessionStartQueued(sessionCode);
+		CurioLogger.d(TAG, "Session start is queued, second and third priority queues are " + (sessionGate.isOpen() ? "not held." : "held."));
 	}
-	
-	public void setLowerPriorityQueueProcessingStatus(boolean status){
-		lowerPriorityQueueProcessing = status;
-		CurioLogger.d(TAG, "Second and Third priority queue processing status changed to " + status);
+
+	/**
+	 * Called when a session start request is completed or could not be sent. Releases held and parked requests.
+	 * 
+	 * @param sessionCode
+	 * @param statusCode status code of session start, 0 if it could not be sent.
+	 */
+	private void onSessionStartCompleted(Object sessionCode, int statusCode) {
+		sessionGate.onSessionStartCompleted(sessionCode != null ? sessionCode.toString() : null, statusCode == HttpStatus.SC_OK);
+		CurioLogger.d(TAG, "Session start is completed with status " + statusCode + ", second and third priority queues are released.");
+
+		completeSessionRenewal(statusCode);
+		wakeUp();
+	}
+
+	/**
+	 * If session start is not completed in time, queues are released so that screens and events never wait for a session start forever.
+	 * Held screen and event requests which do not wait for a response are stored to offline cache to be sent by backlog uploader,
+	 * the others stay in their queues to be sent online.
+	 */
+	private void openSessionGateIfTimedOut() {
+		if (!sessionGate.openIfTimedOut()) {
+			return;
+		}
+
+		CurioLogger.d(TAG, "Session start is not completed in " + settings.getSessionStartTimeout() + " ms. Held requests are released.");
+
+		for (int priority = SECOND_PRIORITY; priority <= THIRD_PRIORITY; priority++) {
+			for (OnlineRequest onlineRequest : removeStorableRequests(priority)) {
+				addFailedOnlineRequestToOfflineCache(onlineRequest);
+			}
+		}
+
+		completeSessionRenewal(0);
+	}
+
+	/**
+	 * Removes requests of given priority which can be sent with offline cache instead of online: screen and event requests of screens and events
+	 * none of whose queued requests has a callback, since callbacks need response of an online request and requests of a screen or event should
+	 * not be split. Nothing is removed while the queue has spilled requests in online overflow table, since they would be sent online before
+	 * stored requests.
+	 * 
+	 * @param priority
+	 * @return removed requests in queue order.
+	 */
+	private List<OnlineRequest> removeStorableRequests(int priority) {
+		BlockingQueue<OnlineRequest> queue = getOnlineQueue(priority);
+		List<OnlineRequest> requests = new ArrayList<OnlineRequest>();
+
+		/**
+		 * Queue does not change while overflow lock is held, requests are pushed to queues under it.
+		 */
+		synchronized (overflowLock) {
+			if (spilledRequestCounts[priority] > 0) {
+				return requests;
+			}
+
+			Set<String> onlineOrderingKeys = new HashSet<String>();
+
+			for (OnlineRequest onlineRequest : queue) {
+				String orderingKey = getOrderingKey(onlineRequest);
+
+				if (orderingKey != null && (!isBatchableRequest(onlineRequest) || onlineRequest.getCallback() != null)) {
+					onlineOrderingKeys.add(orderingKey);
+				}
+			}
+
+			for (Iterator<OnlineRequest> iterator = queue.iterator(); iterator.hasNext();) {
+				OnlineRequest onlineRequest = iterator.next();
+				String orderingKey = getOrderingKey(onlineRequest);
+
+				if (isBatchableRequest(onlineRequest) && onlineRequest.getCallback() == null && (orderingKey == null || !onlineOrderingKeys.contains(orderingKey))) {
+					iterator.remove();
+					requests.add(onlineRequest);
+				}
+			}
+		}
+
+		return requests;
 	}
 
 	/**
@@ -461,84 +1447,244 @@ public class CurioRequestProcessor implements Runnable {
 	 * Sends online request to the server as HTTP Post request. Uses URLEncoded Form, media type: application/x-www-form-urlencoded
 	 * 
 	 * @param onlineRequest
-	 * @throws ClientProtocolException
 	 * @throws IOException
-	 * @throws UnsupportedEncodingException
 	 */
-	private void sendRequest(OnlineRequest onlineRequest) throws ClientProtocolException, IOException, UnsupportedEncodingException {
+	private void sendRequest(OnlineRequest onlineRequest) throws IOException {
 		String url = onlineRequest.getUrl();
-		List<NameValuePair> pairs = generatePairsForOnlineRequest(onlineRequest.getParams(), url);
+		FormRequestBody pairs = generatePairsForOnlineRequest(onlineRequest.getParams(), url);
+		Object sentSessionCode = onlineRequest.getParams().get(Constants.HTTP_PARAM_SESSION_CODE);
 		ICurioResultListener callback = onlineRequest.getCallback();
 
 		CurioLogger.d(TAG, "POST REQUEST for URL: " + url);
 
-		HttpClient client = new DefaultHttpClient();
-		HttpPost post = new HttpPost(url);
-		post.setEntity(new UrlEncodedFormEntity(pairs));
-
-		HttpResponse httpResponse = client.execute(post);
-
-		int statusCode = httpResponse.getStatusLine().getStatusCode();
+		ICurioTransport transport = onlineTransport;
+		CurioHttpResponse httpResponse = null;
+		int statusCode;
 
-		String response = null;
 		JSONObject jsonResult = null;
 
-		if (statusCode == HttpStatus.SC_OK) {
-			ResponseHandler<String> responseHandler = new BasicResponseHandler();
-			response = responseHandler.handleResponse(httpResponse);
+		try {
+			httpResponse = transport.post(url, pairs);
+
+			statusCode = httpResponse.getStatusCode();
 
-			CurioLogger.d(TAG, "RESPONSE: " + response + " for URL:" + url);
+			if (statusCode == HttpStatus.SC_OK) {
+				/**
+				 * Body is read only as far as callback needs it. If there is no callback, it is dropped unread when response is closed.
+				 */
+				String[] resultFields = callback != null ? getResultFields(url) : NO_RESULT_FIELDS;
 
-			if (response != null && !(response.trim().length() == 0)) {
 				try {
-					jsonResult = new JSONObject(response);
+					if (resultFields == null) {
+						String response = httpResponse.getBodyAsString();
+
+						if (response != null && !(response.trim().length() == 0)) {
+							jsonResult = new JSONObject(response);
+						}
+					} else if (resultFields.length > 0) {
+						jsonResult = JsonFieldReader.readFields(httpResponse.getBody(), resultFields);
+					}
 				} catch (JSONException e) {
 					e.printStackTrace();
 				}
+
+				CurioLogger.d(TAG, "RESPONSE: " + jsonResult + " for URL:" + url);
+			} else {
+				CurioLogger.d(TAG, "Status code from server: " + statusCode);
 			}
-		} else {
-			CurioLogger.d(TAG, "Status code from server: " + statusCode);
+		} finally {
+			if (httpResponse != null) {
+				httpResponse.close();
+			}
+		}
+
+		/**
+		 * Temporary server failures are handled like connection failures, request is stored to be retried by offline cache dispatch with backoff.
+		 */
+		if (RetryScheduler.isRetryableStatus(statusCode)) {
+			throw new IOException("Server responded with temporary failure status " + statusCode + " for URL: " + url);
+		}
+
+		if (statusCode == HttpStatus.SC_UNAUTHORIZED && !isBarrierRequest(onlineRequest) && parkForSessionRenewal(onlineRequest, sentSessionCode)) {
+			transport.evictIdleConnections();
+			return;
 		}
 
 		if (callback != null) {
-			callback.handleResult(statusCode, jsonResult);
+			synchronized (callbackLock) {
+				callback.handleResult(statusCode, jsonResult);
+			}
+		}
+
+		if (isSessionStartRequest(onlineRequest)) {
+			onSessionStartCompleted(sentSessionCode, statusCode);
+		}
+
+		transport.evictIdleConnections();
+
+		CurioLogger.d(TAG, "-----------------------------------------");
+	}
+
+	/**
+	 * Gets response fields which callbacks of requests sent to given URL use.
+	 * 
+	 * @param url
+	 * @return field names, empty if callback does not use response body, or null if callback needs whole response.
+	 */
+	private String[] getResultFields(String url) {
+		if (url.endsWith(Constants.SERVER_URL_SUFFIX_SCREEN_START)) {
+			return new String[] { Constants.JSON_NODE_HIT_CODE };
+		} else if (url.endsWith(Constants.SERVER_URL_SUFFIX_SEND_EVENT)) {
+			return new String[] { Constants.JSON_NODE_EVENT_CODE };
+		} else if (url.endsWith(Constants.SERVER_URL_SUFFIX_GET_USER_TAGS)) {
+			// User tags are passed to app as a map of the whole response.
+			return null;
+		}
+		return NO_RESULT_FIELDS;
+	}
+
+	/**
+	 * Sends given online requests to the server as a single batch request, and passes result of each request to its own callback.
+	 * 
+	 * If server responds with per request results as a JSON array in data node, each callback gets its own result. Otherwise
+	 * each callback gets a result containing its own hit code and event code.
+	 * 
+	 * @param batch
+	 * @throws IOException
+	 */
+	private void sendBatchRequest(List<OnlineRequest> batch) throws IOException {
+		JSONArray jsonArray = new JSONArray();
+
+		for (OnlineRequest onlineRequest : batch) {
+			jsonArray.put(generateJSONForBatchItem(onlineRequest));
+		}
+
+		String url = settings.getServerUrl() + Constants.SERVER_URL_SUFFIX_PERIODIC_BATCH;
+
+		CurioLogger.d(TAG, "POST BATCH REQUEST of " + batch.size() + " requests for URL: " + url);
+
+		ICurioTransport transport = onlineTransport;
+		CurioHttpResponse httpResponse = null;
+		int statusCode;
+
+		JSONArray itemResults = null;
+
+		try {
+			httpResponse = transport.post(url, compressIfLarge(generatePairsForPeriodicDispatch().add(Constants.HTTP_PARAM_JSON_DATA, jsonArray.toString())));
+
+			statusCode = httpResponse.getStatusCode();
+
+			if (statusCode == HttpStatus.SC_OK) {
+				String response = httpResponse.getBodyAsString();
+
+				CurioLogger.d(TAG, "BATCH RESPONSE: " + response);
+
+				if (response != null && !(response.trim().length() == 0)) {
+					try {
+						Object data = new JSONObject(response).opt(Constants.JSON_NODE_DATA);
+
+						if (data instanceof JSONArray && ((JSONArray) data).length() == batch.size()) {
+							itemResults = (JSONArray) data;
+						}
+					} catch (JSONException e) {
+						CurioLogger.e(TAG, "Could not parse batch response. " + e.getMessage());
+					}
+				}
+			} else {
+				CurioLogger.d(TAG, "Status code from server for batch request: " + statusCode);
+			}
+		} finally {
+			if (httpResponse != null) {
+				httpResponse.close();
+			}
+		}
+
+		/**
+		 * Temporary server failures are handled like connection failures, requests are stored to be retried by offline cache dispatch with backoff.
+		 */
+		if (RetryScheduler.isRetryableStatus(statusCode)) {
+			throw new IOException("Server responded with temporary failure status " + statusCode + " for batch request.");
+		}
+
+		for (int i = 0; i < batch.size(); i++) {
+			OnlineRequest onlineRequest = batch.get(i);
+			ICurioResultListener callback = onlineRequest.getCallback();
+
+			if (statusCode == HttpStatus.SC_UNAUTHORIZED && parkForSessionRenewal(onlineRequest, onlineRequest.getParams().get(Constants.HTTP_PARAM_SESSION_CODE))) {
+				continue;
+			}
+
+			if (callback == null) {
+				/**
+				 * Session is timed out and request is already replayed, so store it to send later instead of losing it.
+				 */
+				if (statusCode == HttpStatus.SC_UNAUTHORIZED) {
+					addFailedOnlineRequestToOfflineCache(onlineRequest);
+				}
+				continue;
+			}
+
+			JSONObject itemResult = itemResults != null ? itemResults.optJSONObject(i) : null;
+
+			if (itemResult == null && statusCode == HttpStatus.SC_OK) {
+				itemResult = new JSONObject();
+				try {
+					itemResult.put(Constants.JSON_NODE_HIT_CODE, onlineRequest.getParams().get(Constants.HTTP_PARAM_HIT_CODE));
+					itemResult.put(Constants.JSON_NODE_EVENT_CODE, onlineRequest.getParams().get(Constants.HTTP_PARAM_EVENT_CODE));
+				} catch (JSONException e) {
+					CurioLogger.e(TAG, e.getMessage(), e);
+				}
+			}
+
+			synchronized (callbackLock) {
+				callback.handleResult(statusCode, itemResult);
+			}
 		}
 
-		client.getConnectionManager().closeExpiredConnections();
+		transport.evictIdleConnections();
 
 		CurioLogger.d(TAG, "-----------------------------------------");
 	}
 
 	/**
-	 * Generates name value pairs from given params and URL for online requests.
+	 * Generates JSON node of an online request for batch data, in the same format with stored periodic dispatch requests.
+	 * Request is sent with current session code, since session may be renewed after request is queued or parked.
+	 * 
+	 * @param onlineRequest
+	 * @return
+	 */
+	private JSONObject generateJSONForBatchItem(OnlineRequest onlineRequest) {
+		JSONObject json = new JSONObject();
+		onlineRequest.getParams().put(Constants.HTTP_PARAM_SESSION_CODE, clientInstance.getSessionCode(false));
+
+		try {
+			for (Map.Entry<String, Object> entry : onlineRequest.getParams().entrySet()) {
+				json.put(entry.getKey(), entry.getValue());
+			}
+
+			json.put(Constants.JSON_NODE_TIMESTAMP, onlineRequest.getTimestamp());
+			json.put(Constants.JSON_NODE_TYPE, CurioUtil.getRequestType(onlineRequest.getUrl()));
+		} catch (JSONException e) {
+			CurioLogger.e(TAG, e.getMessage(), e);
+		}
+
+		return json;
+	}
+
+	/**
+	 * Generates form body from given params and URL for online requests.
 	 * 
 	 * @param params
 	 * @return
 	 */
-	private List<NameValuePair> generatePairsForOnlineRequest(Map<String, Object> params, String url) {
+	private FormRequestBody generatePairsForOnlineRequest(Map<String, Object> params, String url) {
+		FormRequestBody newPairs;
+
 		if (url.endsWith(Constants.SERVER_URL_SUFFIX_SESSION_START)) {
-			params.put(Constants.HTTP_PARAM_API_KEY, clientInstance.getStaticFeatureSet().getApiKey());
-			params.put(Constants.HTTP_PARAM_TRACKING_CODE, clientInstance.getStaticFeatureSet().getTrackingCode());
-			params.put(Constants.HTTP_PARAM_VISITOR_CODE, clientInstance.getStaticFeatureSet().getVisitorCode());
-			params.put(Constants.HTTP_PARAM_SESSION_TIMEOUT, clientInstance.getStaticFeatureSet().getSessionTimeout());
-			params.put(Constants.HTTP_PARAM_SCREEN_WIDTH, clientInstance.getStaticFeatureSet().getDeviceScreenWidth());
-			params.put(Constants.HTTP_PARAM_SCREEN_HEIGHT, clientInstance.getStaticFeatureSet().getDeviceScreenHeight());
-			params.put(Constants.HTTP_PARAM_ACTIVITY_WIDTH, clientInstance.getStaticFeatureSet().getActivityWidth());
-			params.put(Constants.HTTP_PARAM_ACTIVITY_HEIGHT, clientInstance.getStaticFeatureSet().getActivityHeight());
-			params.put(Constants.HTTP_PARAM_LANG, clientInstance.getStaticFeatureSet().getLanguage());
-			params.put(Constants.HTTP_PARAM_SIM_OPERATOR, clientInstance.getStaticFeatureSet().getSimOperator());
-			params.put(Constants.HTTP_PARAM_SIM_COUNTRY_ISO, clientInstance.getStaticFeatureSet().getSimCountryIso());
-			params.put(Constants.HTTP_PARAM_NETWORK_OPERATOR_NAME, clientInstance.getStaticFeatureSet().getNetworkOperatorName());
-			params.put(Constants.HTTP_PARAM_INTERNET_CONN_TYPE, clientInstance.getStaticFeatureSet().getConnType());
-			params.put(Constants.HTTP_PARAM_BRAND, clientInstance.getStaticFeatureSet().getBrand());
-			params.put(Constants.HTTP_PARAM_MODEL, clientInstance.getStaticFeatureSet().getModel());
-			params.put(Constants.HTTP_PARAM_OS_TYPE, clientInstance.getStaticFeatureSet().getOs());
-			params.put(Constants.HTTP_PARAM_OS_VERSION, clientInstance.getStaticFeatureSet().getOsVersion());
-			params.put(Constants.HTTP_PARAM_CURIO_SDK_VERSION, clientInstance.getStaticFeatureSet().getSdkVersion());
-			params.put(Constants.HTTP_PARAM_APP_VERSION, clientInstance.getStaticFeatureSet().getAppVersionName());
-			params.put(Constants.HTTP_PARAM_BT_STATE, clientInstance.getStaticFeatureSet().getBtStatus());
-			params.put(Constants.HTTP_PARAM_AVAILABLE_STORAGE, clientInstance.getStaticFeatureSet().getAvailableStorage());
-			params.put(Constants.HTTP_PARAM_BATTERY_LEVEL, clientInstance.getStaticFeatureSet().getBattLevel());
+			/**
+			 * Static fields are not put into params, they are sent as a block which is encoded once.
+			 */
+			newPairs = new FormRequestBody(clientInstance.getStaticFeatureSet().getEncodedStaticParams());
 
 //			if(CurioUtil.isFirstTimeUse(context)){
 //				params.put(Constants.HTTP_PARAM_INSTALLED_APPS, CurioUtil.getInstalledApps(context));
@@ -550,17 +1696,15 @@ public class CurioRequestProcessor implements Runnable {
 			params.put(Constants.HTTP_PARAM_TRACKING_CODE, clientInstance.getStaticFeatureSet().getTrackingCode());
 			params.put(Constants.HTTP_PARAM_VISITOR_CODE, clientInstance.getStaticFeatureSet().getVisitorCode());
 			params.put(Constants.HTTP_PARAM_SESSION_TIMEOUT, clientInstance.getStaticFeatureSet().getSessionTimeout());
-		}
 
-		List<NameValuePair> newPairs = new ArrayList<NameValuePair>();
+			newPairs = new FormRequestBody();
+		}
 
 		for (Map.Entry<String, Object> entry : params.entrySet()) {
 			if(entry.getValue() != null){
-				NameValuePair newPair = new BasicNameValuePair(entry.getKey(), entry.getValue().toString());
-
-				CurioLogger.d(TAG, "PARAM --> " + newPair.getName() + " : " + newPair.getValue());
+				CurioLogger.d(TAG, "PARAM --> " + entry.getKey() + " : " + entry.getValue());
 
-				newPairs.add(newPair);
+				newPairs.add(entry.getKey(), entry.getValue().toString());
 			}
 		}
 
@@ -584,6 +1728,7 @@ public class CurioRequestProcessor implements Runnable {
 	 */
 	public void releaseStoredRequests() {
 		release = true;
+		wakeUp();
 	}
 	
 	public void cancelReleaseStoredRequestFlag(){
@@ -17,10 +17,14 @@
  */
 package com.turkcell.curio;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import com.turkcell.curio.model.OfflineRequest;
+import com.turkcell.curio.model.OnlineRequest;
 import com.turkcell.curio.utils.CurioDBHelper;
 import com.turkcell.curio.utils.CurioLogger;
 
@@ -36,6 +40,22 @@ public class DBRequestProcessor implements Runnable {
 
 	private static final BlockingQueue<OfflineRequest> offlineQueue = new LinkedBlockingQueue<OfflineRequest>();
 	private static final BlockingQueue<OfflineRequest> periodicDispatchQueue = new LinkedBlockingQueue<OfflineRequest>();
+	private static final BlockingQueue<OnlineRequest> onlineOverflowQueue = new LinkedBlockingQueue<OnlineRequest>();
+
+	/**
+	 * Monitor that DB processor thread waits on while both queues are empty.
+	 */
+	private static final Object workLock = new Object();
+
+	/**
+	 * Released once online overflow requests left from a previous run are moved to offline cache. No overflow request of this run is stored before that.
+	 */
+	private static final CountDownLatch overflowCleanupLatch = new CountDownLatch(1);
+
+	/**
+	 * Set when device goes offline, so that stored periodic dispatch requests are moved to offline request table once.
+	 */
+	private static volatile boolean offlineTransitionPending = false;
 	
 	/**
 	 * Pushes request to offline cache DB queue.
@@ -44,6 +64,7 @@ public class DBRequestProcessor implements Runnable {
 	 */
 	public static void pushToOfflineDBQueue(OfflineRequest offlineRequest) {
 		offlineQueue.add(offlineRequest);
+		wakeUp();
 	}
 	
 	/**
@@ -53,14 +74,81 @@ public class DBRequestProcessor implements Runnable {
 	 */
 	public static void pushToPeriodicDispatchDBQueue(OfflineRequest offlineRequest) {
 		periodicDispatchQueue.add(offlineRequest);
+		wakeUp();
+	}
+
+	/**
+	 * Pushes online request which does not fit in its memory queue to online overflow DB queue.
+	 * 
+	 * @param onlineRequest
+	 */
+	public static void pushToOnlineOverflowDBQueue(OnlineRequest onlineRequest) {
+		onlineOverflowQueue.add(onlineRequest);
+		wakeUp();
+	}
+
+	/**
+	 * Lets DB processor know that device has gone offline. All periodic dispatch requests stored until then
+	 * will be moved to offline request table before any following offline request is stored,
+	 * to guarantee ordered dispatch of all requests.
+	 */
+	public static void onOfflineTransition() {
+		offlineTransitionPending = true;
+		wakeUp();
+	}
+
+	/**
+	 * Waits until online overflow requests left from a previous run are moved to offline cache, so that overflow table holds only requests spilled in this run.
+	 * 
+	 * @throws InterruptedException
+	 */
+	public static void awaitOverflowCleanup() throws InterruptedException {
+		overflowCleanupLatch.await();
+	}
+
+	/**
+	 * Wakes up DB processor thread if it is waiting for requests.
+	 */
+	private static void wakeUp() {
+		synchronized (workLock) {
+			workLock.notifyAll();
+		}
 	}
 
 	public void run() {
 		try {
+			/**
+			 * Spilled requests of a previous run can not go back to online queues without their callbacks. Send them with offline cache instead.
+			 * This runs before any online overflow request of this run is stored, since only this thread writes overflow table.
+			 */
+			try {
+				if (CurioDBHelper.getInstance().moveOnlineOverflowRequestsToOfflineTable() > 0) {
+					CurioClient.getInstance().setOfflineRequestExist(true);
+				}
+			} finally {
+				overflowCleanupLatch.countDown();
+			}
+
 			while (true) {
+				synchronized (workLock) {
+					while (!offlineTransitionPending && offlineQueue.isEmpty() && periodicDispatchQueue.isEmpty() && onlineOverflowQueue.isEmpty()) {
+						workLock.wait();
+					}
+				}
+
+				if (offlineTransitionPending) {
+					offlineTransitionPending = false;
+					
+					/**
+					 * Store periodic dispatch requests queued before going offline first, so they are moved too.
+					 */
+					processPeriodicDispatchQueue();
+					moveStoredPeriodicDispatchRequests();
+				}
+
 				processOfflineQueue();
 				processPeriodicDispatchQueue();
-				Thread.sleep(250);
+				processOnlineOverflowQueue();
 			}
 		} catch (InterruptedException e) {
 			CurioLogger.e(TAG, e.getMessage());
@@ -68,48 +156,92 @@ public class DBRequestProcessor implements Runnable {
 	}
 
 	/**
-	 * Stores offline request at DB.
+	 * Moves all stored periodic dispatch requests to offline request table.
+	 */
+	private void moveStoredPeriodicDispatchRequests() {
+		if (CurioDBHelper.getInstance().moveAllExistingPeriodicDispatchDataToOfflineTable() > 0) {
+			// Let request processor know that there is a stored offline request to dispatch.
+			CurioClient.getInstance().setOfflineRequestExist(true);
+		}
+	}
+
+	/**
+	 * Stores offline requests at DB.
 	 * 
-	 * @param offlineRequest
+	 * @param offlineRequests
 	 */
-	private void storeOfflineRequest(OfflineRequest offlineRequest) {
-		/**
-		 * Before storing any offline requests, move all periodic dispatch requests to offline request table
-		 * to guarantee ordered dispatch of all requests. 
-		 */
-		CurioDBHelper.getInstance().moveAllExistingPeriodicDispatchDataToOfflineTable();
-		
-		if (!CurioDBHelper.getInstance().persistOfflineRequestForCaching(offlineRequest)) {
-			CurioLogger.e(TAG, "Could not persist offline request.");
+	private void storeOfflineRequests(List<OfflineRequest> offlineRequests) {
+		int storedCount = CurioDBHelper.getInstance().persistOfflineRequestsForCaching(offlineRequests);
+
+		if (storedCount < offlineRequests.size()) {
+			CurioLogger.e(TAG, "Could not persist " + (offlineRequests.size() - storedCount) + " offline requests.");
+		}
+
+		if (storedCount > 0) {
+			// Let request processor know that there is a stored offline request to dispatch.
+			CurioClient.getInstance().setOfflineRequestExist(true);
 		}
 	}
 	
 	/**
-	 * Stores periodic dispatch request at DB.
+	 * Stores periodic dispatch requests at DB.
 	 * 
-	 * @param offlineRequest
+	 * @param offlineRequests
 	 */
-	private void storePeriodicDispatchRequest(OfflineRequest offlineRequest) {
-		if (!CurioDBHelper.getInstance().persistOfflineRequestForPeriodicDispatch(offlineRequest)) {
-			CurioLogger.e(TAG, "Could not persist periodic dispatch request.");
+	private void storePeriodicDispatchRequests(List<OfflineRequest> offlineRequests) {
+		if (!CurioDBHelper.getInstance().persistOfflineRequestsForPeriodicDispatch(offlineRequests)) {
+			CurioLogger.e(TAG, "Could not persist " + offlineRequests.size() + " periodic dispatch requests.");
 		}
 	}
 
 	/**
-	 * Processes offline queue.
+	 * Stores online overflow requests at DB.
+	 * 
+	 * @param onlineRequests
+	 */
+	private void storeOnlineOverflowRequests(List<OnlineRequest> onlineRequests) {
+		if (!CurioDBHelper.getInstance().persistOnlineOverflowRequests(onlineRequests)) {
+			CurioLogger.e(TAG, "Could not persist " + onlineRequests.size() + " online overflow requests.");
+
+			for (OnlineRequest onlineRequest : onlineRequests) {
+				CurioRequestProcessor.onOverflowRequestLost(onlineRequest);
+			}
+		} else {
+			// Let request processor know that overflow requests can be moved back to memory queue.
+			CurioRequestProcessor.wakeUp();
+		}
+	}
+
+	/**
+	 * Processes offline queue. All queued requests are stored in a single transaction.
 	 */
 	private void processOfflineQueue() {
-		if (offlineQueue.size() > 0) {
-			storeOfflineRequest(offlineQueue.poll());
+		List<OfflineRequest> offlineRequests = new ArrayList<OfflineRequest>();
+
+		if (offlineQueue.drainTo(offlineRequests) > 0) {
+			storeOfflineRequests(offlineRequests);
 		}
 	}
 	
 	/**
-	 * Processes offline queue.
+	 * Processes periodic dispatch queue. All queued requests are stored in a single transaction.
 	 */
 	private void processPeriodicDispatchQueue() {
-		if (periodicDispatchQueue.size() > 0) {
-			storePeriodicDispatchRequest(periodicDispatchQueue.poll());
+		List<OfflineRequest> offlineRequests = new ArrayList<OfflineRequest>();
+
+		if (periodicDispatchQueue.drainTo(offlineRequests) > 0) {
+			storePeriodicDispatchRequests(offlineRequests);
+		}
+	}
+
+	/**
+	 * Processes online overflow queue. All queued requests are stored in a single transaction.
+	 */
+	private void processOnlineOverflowQueue() {
+		List<OnlineRequest> onlineRequests = new ArrayList<OnlineRequest>();
+
+		if (onlineOverflowQueue.drainTo(onlineRequests) > 0) {
+			storeOnlineOverflowRequests(onlineRequests);
 		}
 	}
 }
@@ -32,12 +32,16 @@ public class OnlineRequest {
 	private Map<String, Object> params;
 	private ICurioResultListener callback;
 	private Integer priority;
+	private long timestamp;
+	private long sequence;
+	private int replayCount;
 	
 	public OnlineRequest(String url, Map<String, Object> params, ICurioResultListener callback, Integer priority) {
 		setUrl(url);
 		setParams(params);
 		setCallback(callback);
 		setPriority(priority);
+		setTimestamp(System.currentTimeMillis());
 	}
 
 	public String getUrl() {
@@ -64,6 +68,45 @@ public class OnlineRequest {
 		this.priority = priority;
 	}
 
+	/**
+	 * Gets creation time of the request.
+	 * 
+	 * @return
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * Gets sequence number of the request, given when it is stored in online overflow table.
+	 * 
+	 * @return
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Gets how many times the request is sent again after its session was renewed.
+	 * 
+	 * @return
+	 */
+	public int getReplayCount() {
+		return replayCount;
+	}
+
+	public void setReplayCount(int replayCount) {
+		this.replayCount = replayCount;
+	}
+
 	public Map<String, Object> getParams() {
 		return params;
 	}
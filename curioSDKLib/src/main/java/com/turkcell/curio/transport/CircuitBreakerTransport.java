@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+
+import com.turkcell.curio.utils.CircuitBreaker;
+import com.turkcell.curio.utils.Constants;
+import com.turkcell.curio.utils.RetryScheduler;
+
+/**
+ * Transport which sends requests through another transport only while circuit breaker lets them out, and reports each result to circuit breaker.
+ */
+public class CircuitBreakerTransport implements ICurioTransport {
+	private final ICurioTransport transport;
+	private final CircuitBreaker circuitBreaker;
+
+	public CircuitBreakerTransport(ICurioTransport transport, CircuitBreaker circuitBreaker) {
+		this.transport = transport;
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	@Override
+	public CurioHttpResponse post(String url, CurioRequestBody body) throws IOException {
+		if (!circuitBreaker.allowRequest(System.currentTimeMillis())) {
+			throw new CircuitOpenException("Circuit is open, request is not sent to URL: " + url);
+		}
+
+		CurioHttpResponse response;
+
+		try {
+			response = transport.post(url, body);
+		} catch (IOException e) {
+			/**
+			 * Timeouts and refused connections are the most common sign of an outage.
+			 */
+			circuitBreaker.onFailure(0);
+			throw e;
+		} catch (RuntimeException e) {
+			circuitBreaker.onProbeAborted();
+			throw e;
+		}
+
+		int statusCode = response.getStatusCode();
+
+		if (RetryScheduler.isRetryableStatus(statusCode)) {
+			circuitBreaker.onFailure(RetryScheduler.parseRetryAfter(response.getHeader(Constants.HTTP_HEADER_RETRY_AFTER)));
+		} else {
+			circuitBreaker.onSuccess();
+		}
+
+		return response;
+	}
+
+	@Override
+	public void evictIdleConnections() {
+		transport.evictIdleConnections();
+	}
+
+	@Override
+	public String getName() {
+		return transport.getName();
+	}
+}
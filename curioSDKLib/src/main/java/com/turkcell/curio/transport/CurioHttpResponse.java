@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.turkcell.curio.utils.Constants;
+
+/**
+ * Response returned by a transport. Should be closed after use so that its connection goes back to the pool.
+ */
+public abstract class CurioHttpResponse {
+	private static final int BUFFER_SIZE = 4096;
+
+	/**
+	 * Gets HTTP status code of response.
+	 * 
+	 * @return
+	 */
+	public abstract int getStatusCode();
+
+	/**
+	 * Gets value of given response header, or null if it does not exist.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public abstract String getHeader(String name);
+
+	/**
+	 * Gets response body stream, or null if response has no body.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public abstract InputStream getBody() throws IOException;
+
+	/**
+	 * Releases response. Remaining body is consumed so that connection can be reused.
+	 */
+	public abstract void close();
+
+	/**
+	 * Reads whole response body as UTF-8 string.
+	 * 
+	 * @return body string or null if response has no body.
+	 * @throws IOException
+	 */
+	public String getBodyAsString() throws IOException {
+		InputStream in = getBody();
+
+		if (in == null) {
+			return null;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int count;
+
+		while ((count = in.read(buffer)) != -1) {
+			out.write(buffer, 0, count);
+		}
+
+		return out.toString(Constants.UTF8_ENCODING);
+	}
+
+	/**
+	 * Reads and drops rest of given stream, then closes it.
+	 * 
+	 * @param in
+	 */
+	protected static void consumeAndClose(InputStream in) {
+		if (in == null) {
+			return;
+		}
+
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			while (in.read(buffer) != -1) {
+				// Drop remaining bytes.
+			}
+		} catch (IOException e) {
+			// Connection can not be reused, nothing else to do.
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// Ignore.
+			}
+		}
+	}
+}
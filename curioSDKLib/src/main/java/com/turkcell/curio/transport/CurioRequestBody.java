@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Body of a request sent by a transport. Written directly to the connection output stream, so that transports
+ * do not need to hold a second copy of it.
+ */
+public abstract class CurioRequestBody {
+
+	/**
+	 * Gets media type of body, like application/x-www-form-urlencoded.
+	 * 
+	 * @return
+	 */
+	public abstract String getContentType();
+
+	/**
+	 * Gets content encoding of body, like gzip, or null if body is not encoded.
+	 * 
+	 * @return
+	 */
+	public String getContentEncoding() {
+		return null;
+	}
+
+	/**
+	 * Gets length of body in bytes, or -1 if it is not known before writing. Bodies of unknown length are sent chunked.
+	 * 
+	 * @return
+	 */
+	public abstract long getContentLength();
+
+	/**
+	 * Gets approximate length of body in bytes, for bodies whose exact length is not known before writing.
+	 * 
+	 * @return
+	 */
+	public long getEstimatedLength() {
+		return getContentLength();
+	}
+
+	/**
+	 * Writes body to given stream. Should not close the stream.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public abstract void writeTo(OutputStream out) throws IOException;
+}
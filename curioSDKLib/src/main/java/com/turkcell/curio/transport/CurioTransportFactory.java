@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import android.content.Context;
+
+import com.turkcell.curio.utils.CircuitBreaker;
+import com.turkcell.curio.utils.Constants;
+import com.turkcell.curio.utils.CurioClientSettings;
+import com.turkcell.curio.utils.CurioLogger;
+
+/**
+ * Creates transport selected by transport setting, and holds the transport instance shared by all request paths.
+ * 
+ * If OkHttp is selected but it is not in the classpath of the application, falls back to HttpURLConnection transport.
+ */
+public class CurioTransportFactory {
+	private static final String TAG = "CurioTransportFactory";
+	private static final String OKHTTP_CLIENT_CLASS_NAME = "com.squareup.okhttp.OkHttpClient";
+
+	private static ICurioTransport sharedTransport;
+	private static CircuitBreaker circuitBreaker;
+
+	/**
+	 * Should be called first to create shared transport.
+	 */
+	public static synchronized ICurioTransport createSharedTransport(Context context) {
+		if (sharedTransport == null) {
+			sharedTransport = createTransport(context);
+		}
+		return sharedTransport;
+	}
+
+	/**
+	 * Be sure that createSharedTransport is called first.
+	 * 
+	 * @return
+	 */
+	public static synchronized ICurioTransport getSharedTransport() {
+		if (sharedTransport == null) {
+			throw new IllegalStateException("Curio transport is not created. You should call createSharedTransport method first.");
+		}
+		return sharedTransport;
+	}
+
+	/**
+	 * Gets circuit breaker shared by all transports, creates it if needed.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static synchronized CircuitBreaker getCircuitBreaker(Context context) {
+		if (circuitBreaker == null) {
+			circuitBreaker = new CircuitBreaker(CurioClientSettings.getInstance(context).getCircuitBreakerFailureThreshold(), Constants.CIRCUIT_BREAKER_BASE_OPEN_TIME_IN_MS,
+					Constants.CIRCUIT_BREAKER_MAX_OPEN_TIME_IN_MS);
+		}
+		return circuitBreaker;
+	}
+
+	/**
+	 * Creates a new transport instance of selected type. All transports share the same circuit breaker.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public static ICurioTransport createTransport(Context context) {
+		String transport = CurioClientSettings.getInstance(context).getTransport();
+		ICurioTransport instance;
+
+		if (Constants.TRANSPORT_OKHTTP.equals(transport)) {
+			if (isOkHttpAvailable()) {
+				instance = new OkHttpTransport(context);
+			} else {
+				CurioLogger.w(TAG, "OkHttp transport is selected but OkHttp is not in the classpath. Falling back to HttpURLConnection transport.");
+				instance = new HttpURLConnectionTransport(context);
+			}
+		} else {
+			instance = new HttpURLConnectionTransport(context);
+		}
+
+		CurioLogger.i(TAG, "Using " + instance.getName() + " transport.");
+		return new CircuitBreakerTransport(instance, getCircuitBreaker(context));
+	}
+
+	/**
+	 * Checks if OkHttp is in the classpath. Checked here by name, since OkHttpTransport class itself can not be loaded without OkHttp.
+	 * 
+	 * @return
+	 */
+	private static boolean isOkHttpAvailable() {
+		try {
+			Class.forName(OKHTTP_CLIENT_CLASS_NAME);
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes application/x-www-form-urlencoded content straight into a growable byte buffer, in a single pass over characters.
+ * 
+ * Output is the same with URLEncoder using UTF-8: letters, digits and ".-*_" are kept, space becomes '+', everything else is
+ * percent encoded as UTF-8 bytes. Unlike URLEncoder, no intermediate strings or byte arrays are created, and buffer is reused after reset.
+ * Instances are not thread safe.
+ */
+public class FormEncoder {
+	private static final int DEFAULT_CAPACITY = 256;
+	private static final byte[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F' };
+
+	private byte[] buffer;
+	private int count;
+
+	public FormEncoder() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public FormEncoder(int initialCapacity) {
+		buffer = new byte[Math.max(16, initialCapacity)];
+	}
+
+	/**
+	 * Empties buffer, keeping its capacity.
+	 */
+	public void reset() {
+		count = 0;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Appends a name=value pair, preceded by '&' if buffer is not empty. Null value is written as name only.
+	 * 
+	 * @param name
+	 * @param value
+	 */
+	public void appendParam(String name, String value) {
+		if (count > 0) {
+			appendRaw('&');
+		}
+
+		appendEncoded(name);
+
+		if (value != null) {
+			appendRaw('=');
+			appendEncoded(value);
+		}
+	}
+
+	/**
+	 * Appends given byte as it is.
+	 * 
+	 * @param b
+	 */
+	public void appendRaw(int b) {
+		ensureCapacity(count + 1);
+		buffer[count++] = (byte) b;
+	}
+
+	/**
+	 * Appends given bytes as they are.
+	 * 
+	 * @param bytes
+	 */
+	public void appendRaw(byte[] bytes) {
+		ensureCapacity(count + bytes.length);
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	/**
+	 * Appends URL encoded form of given characters.
+	 * 
+	 * @param s
+	 */
+	public void appendEncoded(CharSequence s) {
+		int length = s.length();
+
+		// Most values are plain ASCII, so reserve for the usual case and grow if needed.
+		ensureCapacity(count + length);
+
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '*' || c == '_') {
+				appendRaw(c);
+			} else if (c == ' ') {
+				appendRaw('+');
+			} else if (c < 0x80) {
+				appendPercentEncoded(c);
+			} else if (c < 0x800) {
+				appendPercentEncoded(0xC0 | (c >> 6));
+				appendPercentEncoded(0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				appendPercentEncoded(0xF0 | (codePoint >> 18));
+				appendPercentEncoded(0x80 | ((codePoint >> 12) & 0x3F));
+				appendPercentEncoded(0x80 | ((codePoint >> 6) & 0x3F));
+				appendPercentEncoded(0x80 | (codePoint & 0x3F));
+			} else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+				// Unpaired surrogate can not be encoded as UTF-8, replaced with '?' like String.getBytes does.
+				appendPercentEncoded('?');
+			} else {
+				appendPercentEncoded(0xE0 | (c >> 12));
+				appendPercentEncoded(0x80 | ((c >> 6) & 0x3F));
+				appendPercentEncoded(0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	/**
+	 * Gets length of URL encoded form of given characters, without encoding them.
+	 * 
+	 * @param s
+	 * @return
+	 */
+	public static int encodedLength(CharSequence s) {
+		int length = s.length();
+		int encodedLength = 0;
+
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '*' || c == '_' || c == ' ') {
+				encodedLength += 1;
+			} else if (c < 0x80) {
+				encodedLength += 3;
+			} else if (c < 0x800) {
+				encodedLength += 6;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				encodedLength += 12;
+				i++;
+			} else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+				encodedLength += 3;
+			} else {
+				encodedLength += 9;
+			}
+		}
+
+		return encodedLength;
+	}
+
+	/**
+	 * Writes buffer content to given stream.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(buffer, 0, count);
+	}
+
+	/**
+	 * Copies buffer content into a new array of exact size.
+	 * 
+	 * @return
+	 */
+	public byte[] toByteArray() {
+		byte[] bytes = new byte[count];
+		System.arraycopy(buffer, 0, bytes, 0, count);
+		return bytes;
+	}
+
+	private void appendPercentEncoded(int b) {
+		ensureCapacity(count + 3);
+		buffer[count++] = '%';
+		buffer[count++] = HEX_DIGITS[(b >> 4) & 0xF];
+		buffer[count++] = HEX_DIGITS[b & 0xF];
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > buffer.length) {
+			byte[] newBuffer = new byte[Math.max(capacity, buffer.length * 2)];
+			System.arraycopy(buffer, 0, newBuffer, 0, count);
+			buffer = newBuffer;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.turkcell.curio.utils.Constants;
+
+/**
+ * URL encoded form body, media type: application/x-www-form-urlencoded. Encoded the same way as URL encoded form entity of Apache HTTP client.
+ */
+public class FormRequestBody extends CurioRequestBody {
+	private static final String CONTENT_TYPE = "application/x-www-form-urlencoded; charset=" + Constants.UTF8_ENCODING;
+
+	private static final byte[] EMPTY = new byte[0];
+	private static final int MAX_REUSED_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Encoding buffer of each thread, reused by every body encoded on that thread.
+	 */
+	private static final ThreadLocal<FormEncoder> ENCODER = new ThreadLocal<FormEncoder>() {
+		@Override
+		protected FormEncoder initialValue() {
+			return new FormEncoder();
+		}
+	};
+
+	private final byte[] encodedPrefix;
+	private final List<String> names = new ArrayList<String>();
+	private final List<String> values = new ArrayList<String>();
+	private byte[] encoded;
+
+	public FormRequestBody() {
+		this(null);
+	}
+
+	/**
+	 * @param encodedPrefix parameters which are already encoded (e.g. static parameter block of client), sent before added parameters.
+	 * Array is not copied, so it should not be modified.
+	 */
+	public FormRequestBody(byte[] encodedPrefix) {
+		this.encodedPrefix = encodedPrefix != null ? encodedPrefix : EMPTY;
+	}
+
+	/**
+	 * Adds a form parameter. Parameters with null value are sent without value.
+	 * 
+	 * @param name
+	 * @param value
+	 * @return
+	 */
+	public FormRequestBody add(String name, String value) {
+		names.add(name);
+		values.add(value);
+		encoded = null;
+		return this;
+	}
+
+	/**
+	 * Gets number of added parameters. Parameters in encoded prefix are not counted.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	public String getName(int index) {
+		return names.get(index);
+	}
+
+	public String getValue(int index) {
+		return values.get(index);
+	}
+
+	@Override
+	public String getContentType() {
+		return CONTENT_TYPE;
+	}
+
+	@Override
+	public long getContentLength() {
+		byte[] params = getEncoded();
+		return encodedPrefix.length + (encodedPrefix.length > 0 && params.length > 0 ? 1 : 0) + params.length;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		byte[] params = getEncoded();
+
+		out.write(encodedPrefix);
+
+		if (encodedPrefix.length > 0 && params.length > 0) {
+			out.write('&');
+		}
+
+		out.write(params);
+	}
+
+	/**
+	 * Gets encoded form of whole body, so that it can be reused as prefix of other bodies.
+	 * 
+	 * @return
+	 */
+	public byte[] toByteArray() {
+		if (encodedPrefix.length == 0) {
+			return getEncoded();
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream((int) getContentLength());
+
+		try {
+			writeTo(out);
+		} catch (IOException e) {
+			// Not thrown by ByteArrayOutputStream.
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Encodes added parameters once and keeps result, since both content length and content are needed by transports.
+	 * 
+	 * @return
+	 */
+	private byte[] getEncoded() {
+		if (encoded == null) {
+			FormEncoder encoder = ENCODER.get();
+			encoder.reset();
+
+			for (int i = 0; i < names.size(); i++) {
+				encoder.appendParam(names.get(i), values.get(i));
+			}
+
+			encoded = encoder.toByteArray();
+
+			// Do not keep a large buffer of a one-off big body for the life of the thread.
+			if (encoder.size() > MAX_REUSED_BUFFER_SIZE) {
+				ENCODER.remove();
+			}
+		}
+		return encoded;
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip compressed version of a request body. Compressed while it is written, so its length is not known before and it is sent chunked.
+ */
+public class GzipRequestBody extends CurioRequestBody {
+	private static final String CONTENT_ENCODING_GZIP = "gzip";
+	private static final int BUFFER_SIZE = 8192;
+
+	private final CurioRequestBody body;
+
+	public GzipRequestBody(CurioRequestBody body) {
+		this.body = body;
+	}
+
+	@Override
+	public String getContentType() {
+		return body.getContentType();
+	}
+
+	@Override
+	public String getContentEncoding() {
+		return CONTENT_ENCODING_GZIP;
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		GZIPOutputStream gzipOut = new GZIPOutputStream(new NonClosingOutputStream(out), BUFFER_SIZE);
+		body.writeTo(gzipOut);
+		gzipOut.close();
+	}
+
+	/**
+	 * Lets gzip stream be finished and closed without closing the connection stream under it.
+	 */
+	private static class NonClosingOutputStream extends OutputStream {
+		private final OutputStream out;
+
+		NonClosingOutputStream(OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int count) throws IOException {
+			out.write(buffer, offset, count);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.flush();
+		}
+	}
+}
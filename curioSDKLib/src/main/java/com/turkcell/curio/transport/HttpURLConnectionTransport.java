@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import android.content.Context;
+import android.net.SSLCertificateSocketFactory;
+import android.net.SSLSessionCache;
+
+import com.turkcell.curio.utils.CurioClientSettings;
+import com.turkcell.curio.utils.CurioLogger;
+
+/**
+ * Transport built on platform HttpURLConnection. This is the default transport and needs no extra dependency.
+ * 
+ * Platform keeps connections alive and pools them by itself. A single SSL socket factory with a session cache is used for all
+ * HTTPS connections, so that pooled connections can be shared and reconnects can resume TLS sessions.
+ */
+public class HttpURLConnectionTransport implements ICurioTransport {
+	private static final String TAG = "HttpURLConnectionTransport";
+	private static final String NAME = "HttpURLConnection";
+
+	private final int connectTimeout;
+	private final int readTimeout;
+	private final SSLSocketFactory sslSocketFactory;
+
+	public HttpURLConnectionTransport(Context context) {
+		this(CurioClientSettings.getInstance(context).getConnectTimeout() * 1000, CurioClientSettings.getInstance(context).getReadTimeout() * 1000, context);
+	}
+
+	private HttpURLConnectionTransport(int connectTimeout, int readTimeout, Context context) {
+		this(connectTimeout, readTimeout, (SSLSocketFactory) SSLCertificateSocketFactory.getDefault(connectTimeout, new SSLSessionCache(context)));
+	}
+
+	/**
+	 * Creates transport with given timeouts in milliseconds. Does not need a context, so it is also used by transport benchmark.
+	 * 
+	 * @param connectTimeout
+	 * @param readTimeout
+	 * @param sslSocketFactory factory of HTTPS connections, may be null if only plain HTTP is used.
+	 */
+	HttpURLConnectionTransport(int connectTimeout, int readTimeout, SSLSocketFactory sslSocketFactory) {
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.sslSocketFactory = sslSocketFactory;
+
+		CurioLogger.d(TAG, "Transport created. Connect timeout: " + connectTimeout + " ms, read timeout: " + readTimeout + " ms.");
+	}
+
+	@Override
+	public CurioHttpResponse post(String url, CurioRequestBody body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+
+		try {
+			if (connection instanceof HttpsURLConnection && sslSocketFactory != null) {
+				((HttpsURLConnection) connection).setSSLSocketFactory(sslSocketFactory);
+			}
+
+			connection.setConnectTimeout(connectTimeout);
+			connection.setReadTimeout(readTimeout);
+			connection.setUseCaches(false);
+			connection.setDoOutput(true);
+			connection.setRequestMethod("POST");
+			connection.setRequestProperty("Content-Type", body.getContentType());
+
+			if (body.getContentEncoding() != null) {
+				connection.setRequestProperty("Content-Encoding", body.getContentEncoding());
+			}
+
+			/**
+			 * Stream body instead of letting connection buffer it. Use fixed length mode when length is known, chunked mode otherwise.
+			 */
+			long contentLength = body.getContentLength();
+
+			if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+				connection.setFixedLengthStreamingMode((int) contentLength);
+			} else {
+				connection.setChunkedStreamingMode(0);
+			}
+
+			OutputStream out = connection.getOutputStream();
+
+			try {
+				body.writeTo(out);
+				out.flush();
+			} finally {
+				out.close();
+			}
+
+			return new URLConnectionResponse(connection, connection.getResponseCode());
+		} catch (IOException e) {
+			connection.disconnect();
+			throw e;
+		} catch (RuntimeException e) {
+			connection.disconnect();
+			throw e;
+		}
+	}
+
+	@Override
+	public void evictIdleConnections() {
+		/**
+		 * Pool of platform HttpURLConnection evicts idle connections by itself.
+		 */
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * Response of an HttpURLConnection. Body of error responses is read from error stream.
+	 */
+	private static class URLConnectionResponse extends CurioHttpResponse {
+		private final HttpURLConnection connection;
+		private final int statusCode;
+		private InputStream body;
+		private boolean bodyOpened = false;
+
+		URLConnectionResponse(HttpURLConnection connection, int statusCode) {
+			this.connection = connection;
+			this.statusCode = statusCode;
+		}
+
+		@Override
+		public int getStatusCode() {
+			return statusCode;
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return connection.getHeaderField(name);
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (!bodyOpened) {
+				bodyOpened = true;
+
+				if (statusCode >= HttpURLConnection.HTTP_BAD_REQUEST) {
+					body = connection.getErrorStream();
+				} else {
+					body = connection.getInputStream();
+				}
+			}
+			return body;
+		}
+
+		@Override
+		public void close() {
+			/**
+			 * Connection is not disconnected, consuming the body is enough for the platform to return it to the pool.
+			 */
+			try {
+				consumeAndClose(getBody());
+			} catch (IOException e) {
+				connection.disconnect();
+			}
+		}
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+
+/**
+ * HTTP transport used by request processor to send requests to Curio server.
+ * 
+ * Implementations should be thread safe, since a single transport instance is shared by all dispatcher threads,
+ * and should keep connections alive and pooled between requests.
+ */
+public interface ICurioTransport {
+
+	/**
+	 * Sends given body to given URL as HTTP Post request. Returned response should always be closed by the caller, 
+	 * so that its connection can be reused.
+	 * 
+	 * @param url
+	 * @param body
+	 * @return
+	 * @throws IOException if request could not be sent or response could not be received.
+	 */
+	public CurioHttpResponse post(String url, CurioRequestBody body) throws IOException;
+
+	/**
+	 * Closes pooled connections which are idle longer than idle connection timeout, if transport allows it.
+	 */
+	public void evictIdleConnections();
+
+	/**
+	 * Gets transport name for logging.
+	 * 
+	 * @return
+	 */
+	public String getName();
+}
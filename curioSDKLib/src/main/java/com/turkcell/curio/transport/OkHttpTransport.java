@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import okio.BufferedSink;
+import android.content.Context;
+import android.net.SSLCertificateSocketFactory;
+import android.net.SSLSessionCache;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.MediaType;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import com.turkcell.curio.utils.CurioClientSettings;
+import com.turkcell.curio.utils.CurioLogger;
+
+/**
+ * Transport built on OkHttp. Used only if OkHttp is in the classpath of the application, since OkHttp is not a compile dependency of Curio.
+ * 
+ * OkHttp multiplexes concurrent requests over a single HTTP/2 connection when server supports it, and keeps a connection pool
+ * sized and timed by Curio settings otherwise.
+ */
+public class OkHttpTransport implements ICurioTransport {
+	private static final String TAG = "OkHttpTransport";
+	private static final String NAME = "OkHttp";
+
+	private final OkHttpClient client;
+
+	public OkHttpTransport(Context context) {
+		this(createClient(context));
+	}
+
+	/**
+	 * Creates transport on given client. Does not need a context, so it is also used by transport benchmark.
+	 * 
+	 * @param client
+	 */
+	OkHttpTransport(OkHttpClient client) {
+		this.client = client;
+
+		CurioLogger.d(TAG, "Transport created. Connect timeout: " + client.getConnectTimeout() + " ms, read timeout: " + client.getReadTimeout() + " ms.");
+	}
+
+	private static OkHttpClient createClient(Context context) {
+		CurioClientSettings settings = CurioClientSettings.getInstance(context);
+		int connectTimeout = settings.getConnectTimeout() * 1000;
+		int readTimeout = settings.getReadTimeout() * 1000;
+
+		OkHttpClient client = new OkHttpClient();
+		client.setConnectTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+		client.setReadTimeout(readTimeout, TimeUnit.MILLISECONDS);
+		client.setWriteTimeout(readTimeout, TimeUnit.MILLISECONDS);
+		client.setConnectionPool(new ConnectionPool(settings.getMaxConcurrentRequests() + 1, settings.getIdleConnectionTimeout() * 1000L));
+		client.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+		client.setSslSocketFactory((SSLSocketFactory) SSLCertificateSocketFactory.getDefault(connectTimeout, new SSLSessionCache(context)));
+		return client;
+	}
+
+	@Override
+	public CurioHttpResponse post(String url, final CurioRequestBody body) throws IOException {
+		final MediaType mediaType = MediaType.parse(body.getContentType());
+
+		RequestBody requestBody = new RequestBody() {
+			@Override
+			public MediaType contentType() {
+				return mediaType;
+			}
+
+			@Override
+			public long contentLength() {
+				return body.getContentLength();
+			}
+
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException {
+				body.writeTo(sink.outputStream());
+				sink.flush();
+			}
+		};
+
+		Request.Builder builder = new Request.Builder().url(url).post(requestBody);
+
+		if (body.getContentEncoding() != null) {
+			builder.header("Content-Encoding", body.getContentEncoding());
+		}
+
+		return new OkHttpResponse(client.newCall(builder.build()).execute());
+	}
+
+	@Override
+	public void evictIdleConnections() {
+		/**
+		 * OkHttp connection pool evicts connections idle longer than its keep alive duration by itself.
+		 */
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * Response of an OkHttp call.
+	 */
+	private static class OkHttpResponse extends CurioHttpResponse {
+		private final Response response;
+
+		OkHttpResponse(Response response) {
+			this.response = response;
+		}
+
+		@Override
+		public int getStatusCode() {
+			return response.code();
+		}
+
+		@Override
+		public String getHeader(String name) {
+			return response.header(name);
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			ResponseBody body = response.body();
+			return body != null ? body.byteStream() : null;
+		}
+
+		@Override
+		public void close() {
+			ResponseBody body = response.body();
+
+			if (body != null) {
+				try {
+					consumeAndClose(body.byteStream());
+					body.close();
+				} catch (IOException e) {
+					// Connection will not be reused.
+				}
+			}
+		}
+	}
+}
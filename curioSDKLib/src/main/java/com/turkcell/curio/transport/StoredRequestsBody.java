@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import android.database.Cursor;
+
+import com.turkcell.curio.utils.Constants;
+import com.turkcell.curio.utils.CurioDBHelper;
+import com.turkcell.curio.utils.CurioLogger;
+import com.turkcell.curio.utils.RequestRowCodec;
+
+/**
+ * Form body of a batch request whose data parameter is the JSON array of "in process" requests stored in given lane of event log.
+ * 
+ * Rows are streamed from DB cursor, joined with their session, tracking and visitor codes, decoded to JSON and URL encoded one by one while body is written, so memory used does not grow with the number of stored requests.
+ * Body can be written more than once, each write queries DB again.
+ */
+public class StoredRequestsBody extends CurioRequestBody {
+	private static final String TAG = "StoredRequestsBody";
+	private static final byte[] JSON_ARRAY_START = "%5B".getBytes();
+	private static final byte[] JSON_ARRAY_SEPARATOR = "%2C".getBytes();
+	private static final byte[] JSON_ARRAY_END = "%5D".getBytes();
+	private static final byte[] DATA_PARAM_START = (Constants.HTTP_PARAM_JSON_DATA + "=").getBytes();
+
+	private final FormRequestBody params;
+	private final int lane;
+	private final long estimatedDataLength;
+
+	/**
+	 * @param params other form parameters of request.
+	 * @param lane lane of stored requests, see {@link Constants#LANE_PERIODIC_DISPATCH}.
+	 * @param estimatedDataLength estimated size of URL encoded JSON array of stored requests, see {@link CurioDBHelper#markNextPageAsInProcess(int, int, long)}.
+	 */
+	public StoredRequestsBody(FormRequestBody params, int lane, long estimatedDataLength) {
+		this.params = params;
+		this.lane = lane;
+		this.estimatedDataLength = estimatedDataLength;
+	}
+
+	@Override
+	public String getContentType() {
+		return params.getContentType();
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public long getEstimatedLength() {
+		return params.getContentLength() + 1 + DATA_PARAM_START.length + estimatedDataLength;
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		params.writeTo(out);
+
+		if (params.getContentLength() > 0) {
+			out.write('&');
+		}
+
+		out.write(DATA_PARAM_START);
+		out.write(JSON_ARRAY_START);
+
+		FormEncoder encoder = new FormEncoder();
+		StringBuilder json = new StringBuilder();
+		String[] dimensionValues = new String[CurioDBHelper.DIMENSION_PARAM_NAMES.length];
+
+		Cursor cursor = CurioDBHelper.getInstance().queryInProcessRequests(lane);
+
+		try {
+			boolean first = true;
+
+			while (cursor.moveToNext()) {
+				byte[] row = cursor.getBlob(0);
+
+				if (row == null) {
+					continue;
+				}
+
+				for (int i = 0; i < dimensionValues.length; i++) {
+					dimensionValues[i] = cursor.getString(i + 1);
+				}
+
+				json.setLength(0);
+
+				try {
+					RequestRowCodec.appendJSON(row, CurioDBHelper.DIMENSION_PARAM_NAMES, dimensionValues, json);
+				} catch (IllegalArgumentException e) {
+					CurioLogger.e(TAG, "Skipping stored request which can not be decoded. " + e.getMessage());
+					continue;
+				}
+
+				if (!first) {
+					out.write(JSON_ARRAY_SEPARATOR);
+				}
+
+				encoder.reset();
+				encoder.appendEncoded(json);
+				encoder.writeTo(out);
+				first = false;
+			}
+		} finally {
+			cursor.close();
+			CurioDBHelper.getInstance().closeDatabase();
+		}
+
+		out.write(JSON_ARRAY_END);
+	}
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import java.util.Random;
+
+/**
+ * Circuit breaker for Curio server. Shared by all transports, so that every request path stops together during a backend incident.
+ * 
+ * Closed: requests go out. After a number of consecutive temporary failures (server error, timeout or throttling status, or connection failure),
+ * or as soon as server asks for a pause with Retry-After, circuit opens.
+ * Open: no request goes out until open period ends. Open period grows exponentially with each consecutive opening, is randomized
+ * so that devices do not come back at the same moment, and is never shorter than Retry-After.
+ * Half open: after open period a single probe request is allowed. Its success closes the circuit, its failure opens it again.
+ */
+public class CircuitBreaker {
+	private static final String TAG = "CircuitBreaker";
+	private static final int MAX_OPEN_EXPONENT = 20;
+
+	private static final int STATE_CLOSED = 0;
+	private static final int STATE_OPEN = 1;
+	private static final int STATE_HALF_OPEN = 2;
+
+	private final int failureThreshold;
+	private final long baseOpenTime;
+	private final long maxOpenTime;
+	private final Random random = new Random();
+
+	private int state = STATE_CLOSED;
+	private int consecutiveFailures = 0;
+	private int consecutiveOpenings = 0;
+	private long openUntil = 0;
+	private boolean probeInFlight = false;
+
+	/**
+	 * @param failureThreshold number of consecutive failures which opens circuit.
+	 * @param baseOpenTime open period after first opening in milliseconds.
+	 * @param maxOpenTime max. open period in milliseconds, unless server asks for longer.
+	 */
+	public CircuitBreaker(int failureThreshold, long baseOpenTime, long maxOpenTime) {
+		this.failureThreshold = failureThreshold;
+		this.baseOpenTime = baseOpenTime;
+		this.maxOpenTime = maxOpenTime;
+	}
+
+	/**
+	 * Checks if a request can be sent now. If open period is over, this request becomes the half open probe.
+	 * Every allowed request should be followed by onSuccess, onFailure or onProbeAborted call.
+	 * 
+	 * @param now
+	 * @return
+	 */
+	public synchronized boolean allowRequest(long now) {
+		switch (state) {
+		case STATE_OPEN:
+			if (now < openUntil) {
+				return false;
+			}
+			state = STATE_HALF_OPEN;
+			probeInFlight = true;
+			CurioLogger.d(TAG, "Circuit is half open, sending a probe request.");
+			return true;
+		case STATE_HALF_OPEN:
+			if (probeInFlight) {
+				return false;
+			}
+			probeInFlight = true;
+			return true;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Checks if requests would be rejected now, without taking the probe slot.
+	 * 
+	 * @param now
+	 * @return
+	 */
+	public synchronized boolean isOpen(long now) {
+		return (state == STATE_OPEN && now < openUntil) || (state == STATE_HALF_OPEN && probeInFlight);
+	}
+
+	/**
+	 * Gets time when circuit lets a probe request out.
+	 * 
+	 * @return time in milliseconds, or 0 if circuit is not open.
+	 */
+	public synchronized long getOpenUntil() {
+		return state == STATE_OPEN ? openUntil : 0;
+	}
+
+	/**
+	 * Called when server responded with a status which is not a temporary failure.
+	 */
+	public synchronized void onSuccess() {
+		if (state != STATE_CLOSED) {
+			CurioLogger.i(TAG, "Curio server is reachable again. Circuit is closed.");
+		}
+
+		state = STATE_CLOSED;
+		consecutiveFailures = 0;
+		consecutiveOpenings = 0;
+		probeInFlight = false;
+	}
+
+	/**
+	 * Called when server responded with a temporary failure status, or request could not be sent because of a connection failure.
+	 * 
+	 * @param retryAfter delay requested by server in milliseconds, or 0 if none.
+	 */
+	public synchronized void onFailure(long retryAfter) {
+		consecutiveFailures++;
+
+		if (state == STATE_HALF_OPEN || retryAfter > 0 || consecutiveFailures >= failureThreshold) {
+			open(retryAfter);
+		}
+	}
+
+	/**
+	 * Called when request could not be completed because of an unexpected error. It says nothing about server, except for a probe,
+	 * which should not leave circuit half open forever.
+	 */
+	public synchronized void onProbeAborted() {
+		if (state == STATE_HALF_OPEN) {
+			open(0);
+		}
+	}
+
+	/**
+	 * Called when device gets network connection back. Connection failures while device was offline say nothing about server,
+	 * so circuit is closed and requests go out again.
+	 */
+	public synchronized void onConnectivityRestored() {
+		if (state != STATE_CLOSED) {
+			CurioLogger.i(TAG, "Network connection is back. Circuit is closed.");
+		}
+
+		state = STATE_CLOSED;
+		consecutiveFailures = 0;
+		probeInFlight = false;
+	}
+
+	private void open(long retryAfter) {
+		consecutiveOpenings++;
+
+		/**
+		 * Equal jitter: half of the exponential open time is fixed, the other half is random.
+		 */
+		long exponentialTime = Math.min(maxOpenTime, baseOpenTime << Math.min(consecutiveOpenings - 1, MAX_OPEN_EXPONENT));
+		long openTime = exponentialTime / 2 + (long) (random.nextDouble() * (exponentialTime / 2));
+
+		openTime = Math.max(openTime, retryAfter);
+
+		state = STATE_OPEN;
+		openUntil = System.currentTimeMillis() + openTime;
+		probeInFlight = false;
+
+		CurioLogger.w(TAG, "Curio server is failing or throttling. Circuit is open for " + openTime + " ms.");
+	}
+}
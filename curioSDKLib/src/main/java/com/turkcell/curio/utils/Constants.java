@@ -83,8 +83,44 @@ public class Constants {
 	public static final String CONFIG_PARAM_LOGGING_ENABLED = "logging_enabled";
 
 	public static final String CONFIG_PARAM_AUTO_PUSH_REGISTRATION = "auto_push_registration";
+	public static final String CONFIG_PARAM_CONNECT_TIMEOUT = "connect_timeout";
+	public static final String CONFIG_PARAM_READ_TIMEOUT = "read_timeout";
+	public static final String CONFIG_PARAM_IDLE_CONNECTION_TIMEOUT = "idle_connection_timeout";
+	public static final String CONFIG_PARAM_MAX_CONCURRENT_REQUESTS = "max_concurrent_requests";
+	public static final String CONFIG_PARAM_ONLINE_BATCHING_ENABLED = "online_batching_enabled";
+	public static final String CONFIG_PARAM_ONLINE_BATCH_SIZE = "online_batch_size";
+	public static final String CONFIG_PARAM_ONLINE_BATCH_MAX_DELAY = "online_batch_max_delay";
+	public static final String CONFIG_PARAM_TRANSPORT = "transport";
+	public static final String CONFIG_PARAM_COMPRESSION_THRESHOLD = "compression_threshold";
+	public static final String CONFIG_PARAM_FLUSH_PAGE_SIZE = "flush_page_size";
+	public static final String CONFIG_PARAM_FLUSH_PAGE_MAX_BYTES = "flush_page_max_bytes";
+	public static final String CONFIG_PARAM_MAX_RETRIES_PER_HOUR = "max_retries_per_hour";
+	public static final String CONFIG_PARAM_ONLINE_QUEUE_CAPACITY = "online_queue_capacity";
+	public static final String CONFIG_PARAM_SECOND_PRIORITY_WEIGHT = "second_priority_weight";
+	public static final String CONFIG_PARAM_THIRD_PRIORITY_WEIGHT = "third_priority_weight";
+	public static final String CONFIG_PARAM_PRIORITY_AGING_INTERVAL = "priority_aging_interval";
+	public static final String CONFIG_PARAM_CIRCUIT_BREAKER_FAILURE_THRESHOLD = "circuit_breaker_failure_threshold";
+	public static final String CONFIG_PARAM_SESSION_START_TIMEOUT = "session_start_timeout";
 	public static final int CONFIG_PARAM_DEFAULT_VALUE_SESSION_TIMEOUT_IN_MINUTES = 30;
 	public static final int CONFIG_PARAM_DEFAULT_VALUE_DISPATCH_PERIOD_IN_MINUTES = 5;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_CONNECT_TIMEOUT_IN_SECONDS = 15;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_READ_TIMEOUT_IN_SECONDS = 30;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_IDLE_CONNECTION_TIMEOUT_IN_SECONDS = 60;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_MAX_CONCURRENT_REQUESTS = 4;
+	public static final int CONFIG_PARAM_MAX_VALUE_MAX_CONCURRENT_REQUESTS = 8;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_ONLINE_BATCH_SIZE = 20;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_ONLINE_BATCH_MAX_DELAY_IN_MS = 200;
+	public static final String TRANSPORT_URL_CONNECTION = "urlconnection";
+	public static final String TRANSPORT_OKHTTP = "okhttp";
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_COMPRESSION_THRESHOLD_IN_BYTES = 1024;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_FLUSH_PAGE_SIZE = 200;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_FLUSH_PAGE_MAX_BYTES = 64 * 1024;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_MAX_RETRIES_PER_HOUR = 60;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_SECOND_PRIORITY_WEIGHT = 3;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_THIRD_PRIORITY_WEIGHT = 1;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_PRIORITY_AGING_INTERVAL_IN_MS = 5000;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+	public static final int CONFIG_PARAM_DEFAULT_VALUE_SESSION_START_TIMEOUT_IN_MS = 30 * 1000;
 
 	public static final int CONFIG_PARAM_DEFAULT_VALUE_MAX_CACHED_ACTIVITY_COUNT = 1000;
 	public static final int CONFIG_PARAM_MAX_VALUE_MAX_CACHED_ACTIVITY_COUNT = 4000;
@@ -125,6 +161,10 @@ public class Constants {
 	public static final int IN_PROCESS = 1;
 
 	public static final String IN_PROCESS_STR = "1";
+
+	public static final int LANE_PERIODIC_DISPATCH = 0;
+	public static final int LANE_OFFLINE_CACHE = 1;
+
 	public static final String OS_NAME_STR = "Android";
 	public static final String CONNECTION_TYPE_STR_WIFI = "wifi";
 	public static final String CONNECTION_TYPE_STR_MOBILE = "mobile";
@@ -132,7 +172,16 @@ public class Constants {
 	public static final String CONNECTION_TYPE_STR_OTHER = "other";
 	public static final String THREAD_NAME_CURIO_REQ_PROC = "Curio Request Processor";
 	public static final String THREAD_NAME_DB_REQ_PROC = "DB Request Processor";
+	public static final String THREAD_NAME_CURIO_DISPATCHER = "Curio Request Dispatcher";
+	public static final String THREAD_NAME_CURIO_BACKLOG_UPLOADER = "Curio Backlog Uploader";
 	public static final int REQUEST_QUEUE_CAPACITY = 100;
+	public static final long RETRY_BASE_DELAY_IN_MS = 1000;
+	public static final long RETRY_MAX_DELAY_IN_MS = 10 * 60 * 1000;
+	public static final String HTTP_HEADER_RETRY_AFTER = "Retry-After";
+	public static final long CIRCUIT_BREAKER_BASE_OPEN_TIME_IN_MS = 30 * 1000;
+	public static final long CIRCUIT_BREAKER_MAX_OPEN_TIME_IN_MS = 30 * 60 * 1000;
+	public static final int OFFLINE_PAGE_MAX_TRY_COUNT = 5;
+	public static final int SESSION_RENEWAL_MAX_REPLAY_COUNT = 2;
 	public static final int GINGERBREAD_2_3_3_SDK_INT = 10;
 
 	public static final int HONEYCOMB_SDK_INT = 11;
@@ -39,6 +39,24 @@ public class CurioClientSettings {
 	private int maxCachedActivityCount;
 	private static boolean loggingEnabled = true;
 	private boolean autoPushRegistration;
+	private int connectTimeout;
+	private int readTimeout;
+	private int idleConnectionTimeout;
+	private int maxConcurrentRequests;
+	private boolean isOnlineBatchingEnabled;
+	private int onlineBatchSize;
+	private int onlineBatchMaxDelay;
+	private String transport;
+	private int compressionThreshold;
+	private int flushPageSize;
+	private int flushPageMaxBytes;
+	private int maxRetriesPerHour;
+	private int onlineQueueCapacity;
+	private int secondPriorityWeight;
+	private int thirdPriorityWeight;
+	private int priorityAgingInterval;
+	private int circuitBreakerFailureThreshold;
+	private int sessionStartTimeout;
 
 	/**
 	 * Private constructor.
@@ -46,8 +64,16 @@ public class CurioClientSettings {
 	 * @param context
 	 */
 	private CurioClientSettings(Context context){
-		ParameterLoader paramLoader = new ParameterLoader(context);
-		
+		this(new ParameterLoader(context));
+	}
+
+	/**
+	 * Creates settings from parameters of given loader. SDK uses the shared instance got by getInstance, this is for components
+	 * created with their own settings, like request processors of unit tests.
+	 * 
+	 * @param paramLoader
+	 */
+	public CurioClientSettings(ParameterLoader paramLoader){
 		loggingEnabled = paramLoader.getBoolean(Constants.CONFIG_PARAM_LOGGING_ENABLED, true);
 		apiKey = paramLoader.getString(Constants.CONFIG_PARAM_API_KEY, null);
 		gcmSenderId = paramLoader.getString(Constants.CONFIG_PARAM_GCM_SENDER_ID, null);
@@ -63,6 +89,9 @@ public class CurioClientSettings {
 		isPeriodicDispatchEnabled = paramLoader.getBoolean(Constants.CONFIG_PARAM_PERIODIC_DISPATCH, false);
 		dispatchPeriod = paramLoader.getInteger(Constants.CONFIG_PARAM_DISPATCH_PERIOD, Constants.CONFIG_PARAM_DEFAULT_VALUE_DISPATCH_PERIOD_IN_MINUTES);
 		maxCachedActivityCount = paramLoader.getInteger(Constants.CONFIG_PARAM_MAX_CACHED_ACTIVITY_COUNT, Constants.CONFIG_PARAM_DEFAULT_VALUE_MAX_CACHED_ACTIVITY_COUNT);
+		connectTimeout = paramLoader.getInteger(Constants.CONFIG_PARAM_CONNECT_TIMEOUT, Constants.CONFIG_PARAM_DEFAULT_VALUE_CONNECT_TIMEOUT_IN_SECONDS);
+		readTimeout = paramLoader.getInteger(Constants.CONFIG_PARAM_READ_TIMEOUT, Constants.CONFIG_PARAM_DEFAULT_VALUE_READ_TIMEOUT_IN_SECONDS);
+		idleConnectionTimeout = paramLoader.getInteger(Constants.CONFIG_PARAM_IDLE_CONNECTION_TIMEOUT, Constants.CONFIG_PARAM_DEFAULT_VALUE_IDLE_CONNECTION_TIMEOUT_IN_SECONDS);
 		
 		/**
 		 * User defined max. cached activity count cannot be greater than defined max.
@@ -71,6 +100,88 @@ public class CurioClientSettings {
 			CurioLogger.w(TAG, "Max number of cached activity cannot be greater then " + Constants.CONFIG_PARAM_MAX_VALUE_MAX_CACHED_ACTIVITY_COUNT + ". Will be set to max value.");
 			maxCachedActivityCount = Constants.CONFIG_PARAM_MAX_VALUE_MAX_CACHED_ACTIVITY_COUNT;
 		}
+
+		maxConcurrentRequests = paramLoader.getInteger(Constants.CONFIG_PARAM_MAX_CONCURRENT_REQUESTS, Constants.CONFIG_PARAM_DEFAULT_VALUE_MAX_CONCURRENT_REQUESTS);
+
+		/**
+		 * There should be at least one and at most defined max. number of concurrent requests.
+		 */
+		if (maxConcurrentRequests < 1 || maxConcurrentRequests > Constants.CONFIG_PARAM_MAX_VALUE_MAX_CONCURRENT_REQUESTS) {
+			CurioLogger.w(TAG, "Max number of concurrent requests should be between 1 and " + Constants.CONFIG_PARAM_MAX_VALUE_MAX_CONCURRENT_REQUESTS + ". Will be set to default value.");
+			maxConcurrentRequests = Constants.CONFIG_PARAM_DEFAULT_VALUE_MAX_CONCURRENT_REQUESTS;
+		}
+
+		isOnlineBatchingEnabled = paramLoader.getBoolean(Constants.CONFIG_PARAM_ONLINE_BATCHING_ENABLED, false);
+		onlineBatchSize = paramLoader.getInteger(Constants.CONFIG_PARAM_ONLINE_BATCH_SIZE, Constants.CONFIG_PARAM_DEFAULT_VALUE_ONLINE_BATCH_SIZE);
+		onlineBatchMaxDelay = paramLoader.getInteger(Constants.CONFIG_PARAM_ONLINE_BATCH_MAX_DELAY, Constants.CONFIG_PARAM_DEFAULT_VALUE_ONLINE_BATCH_MAX_DELAY_IN_MS);
+
+		/**
+		 * A batch should contain at least one request, otherwise batchable requests would wait for a batch forever.
+		 */
+		if (onlineBatchSize < 1) {
+			CurioLogger.w(TAG, "Online batch size should be at least 1. Will be set to default value.");
+			onlineBatchSize = Constants.CONFIG_PARAM_DEFAULT_VALUE_ONLINE_BATCH_SIZE;
+		}
+
+		if (onlineBatchMaxDelay < 0) {
+			CurioLogger.w(TAG, "Online batch max. delay cannot be negative. Will be set to default value.");
+			onlineBatchMaxDelay = Constants.CONFIG_PARAM_DEFAULT_VALUE_ONLINE_BATCH_MAX_DELAY_IN_MS;
+		}
+
+		transport = paramLoader.getString(Constants.CONFIG_PARAM_TRANSPORT, Constants.TRANSPORT_URL_CONNECTION);
+		compressionThreshold = paramLoader.getInteger(Constants.CONFIG_PARAM_COMPRESSION_THRESHOLD, Constants.CONFIG_PARAM_DEFAULT_VALUE_COMPRESSION_THRESHOLD_IN_BYTES);
+		flushPageSize = paramLoader.getInteger(Constants.CONFIG_PARAM_FLUSH_PAGE_SIZE, Constants.CONFIG_PARAM_DEFAULT_VALUE_FLUSH_PAGE_SIZE);
+		flushPageMaxBytes = paramLoader.getInteger(Constants.CONFIG_PARAM_FLUSH_PAGE_MAX_BYTES, Constants.CONFIG_PARAM_DEFAULT_VALUE_FLUSH_PAGE_MAX_BYTES);
+
+		maxRetriesPerHour = paramLoader.getInteger(Constants.CONFIG_PARAM_MAX_RETRIES_PER_HOUR, Constants.CONFIG_PARAM_DEFAULT_VALUE_MAX_RETRIES_PER_HOUR);
+		onlineQueueCapacity = paramLoader.getInteger(Constants.CONFIG_PARAM_ONLINE_QUEUE_CAPACITY, Constants.REQUEST_QUEUE_CAPACITY);
+
+		/**
+		 * Each online queue should be able to hold at least one request in memory.
+		 */
+		if (onlineQueueCapacity < 1) {
+			CurioLogger.w(TAG, "Online queue capacity should be at least 1. Will be set to default value.");
+			onlineQueueCapacity = Constants.REQUEST_QUEUE_CAPACITY;
+		}
+
+		secondPriorityWeight = paramLoader.getInteger(Constants.CONFIG_PARAM_SECOND_PRIORITY_WEIGHT, Constants.CONFIG_PARAM_DEFAULT_VALUE_SECOND_PRIORITY_WEIGHT);
+		thirdPriorityWeight = paramLoader.getInteger(Constants.CONFIG_PARAM_THIRD_PRIORITY_WEIGHT, Constants.CONFIG_PARAM_DEFAULT_VALUE_THIRD_PRIORITY_WEIGHT);
+		priorityAgingInterval = paramLoader.getInteger(Constants.CONFIG_PARAM_PRIORITY_AGING_INTERVAL, Constants.CONFIG_PARAM_DEFAULT_VALUE_PRIORITY_AGING_INTERVAL_IN_MS);
+
+		/**
+		 * A queue with weight 0 would never be scheduled.
+		 */
+		if (secondPriorityWeight < 1 || thirdPriorityWeight < 1) {
+			CurioLogger.w(TAG, "Priority weights should be at least 1. Will be set to default values.");
+			secondPriorityWeight = Constants.CONFIG_PARAM_DEFAULT_VALUE_SECOND_PRIORITY_WEIGHT;
+			thirdPriorityWeight = Constants.CONFIG_PARAM_DEFAULT_VALUE_THIRD_PRIORITY_WEIGHT;
+		}
+
+		if (priorityAgingInterval < 0) {
+			priorityAgingInterval = 0;
+		}
+
+		circuitBreakerFailureThreshold = paramLoader.getInteger(Constants.CONFIG_PARAM_CIRCUIT_BREAKER_FAILURE_THRESHOLD, Constants.CONFIG_PARAM_DEFAULT_VALUE_CIRCUIT_BREAKER_FAILURE_THRESHOLD);
+
+		if (circuitBreakerFailureThreshold < 1) {
+			CurioLogger.w(TAG, "Circuit breaker failure threshold should be at least 1. Will be set to default value.");
+			circuitBreakerFailureThreshold = Constants.CONFIG_PARAM_DEFAULT_VALUE_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+		}
+
+		sessionStartTimeout = paramLoader.getInteger(Constants.CONFIG_PARAM_SESSION_START_TIMEOUT, Constants.CONFIG_PARAM_DEFAULT_VALUE_SESSION_START_TIMEOUT_IN_MS);
+
+		if (sessionStartTimeout < 0) {
+			CurioLogger.w(TAG, "Session start timeout cannot be negative. Will be set to default value.");
+			sessionStartTimeout = Constants.CONFIG_PARAM_DEFAULT_VALUE_SESSION_START_TIMEOUT_IN_MS;
+		}
+
+		/**
+		 * A page should contain at least one request.
+		 */
+		if (flushPageSize < 1) {
+			CurioLogger.w(TAG, "Flush page size should be at least 1. Will be set to default value.");
+			flushPageSize = Constants.CONFIG_PARAM_DEFAULT_VALUE_FLUSH_PAGE_SIZE;
+		}
 	}
 	
 	/**
@@ -168,6 +279,169 @@ public class CurioClientSettings {
 		this.autoPushRegistration = autoPushRegistration;
 	}
 
+	/**
+	 * Gets connection timeout in seconds
+	 * 
+	 * @return
+	 */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Gets socket read timeout in seconds
+	 * 
+	 * @return
+	 */
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Gets timeout in seconds after which an idle pooled connection is closed
+	 * 
+	 * @return
+	 */
+	public int getIdleConnectionTimeout() {
+		return idleConnectionTimeout;
+	}
+
+	public void setIdleConnectionTimeout(int idleConnectionTimeout) {
+		this.idleConnectionTimeout = idleConnectionTimeout;
+	}
+
+	public int getMaxConcurrentRequests() {
+		return maxConcurrentRequests;
+	}
+
+	public boolean isOnlineBatchingEnabled() {
+		return isOnlineBatchingEnabled;
+	}
+
+	public void setOnlineBatchingEnabled(boolean isOnlineBatchingEnabled) {
+		this.isOnlineBatchingEnabled = isOnlineBatchingEnabled;
+	}
+
+	public int getOnlineBatchSize() {
+		return onlineBatchSize;
+	}
+
+	/**
+	 * Gets max. time in milliseconds that a request can wait for its online batch to fill up
+	 * 
+	 * @return
+	 */
+	public int getOnlineBatchMaxDelay() {
+		return onlineBatchMaxDelay;
+	}
+
+	/**
+	 * Gets selected HTTP transport, urlconnection or okhttp.
+	 * 
+	 * @return
+	 */
+	public String getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Gets min. size in bytes of a batch request body to be sent gzip compressed. Compression is disabled if 0.
+	 * 
+	 * @return
+	 */
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+
+	/**
+	 * Gets max. number of stored requests sent in a single offline cache or periodic dispatch request.
+	 * 
+	 * @return
+	 */
+	public int getFlushPageSize() {
+		return flushPageSize;
+	}
+
+	/**
+	 * Gets max. size in bytes of stored requests sent in a single offline cache or periodic dispatch request. A single request larger than this is still sent alone.
+	 * 
+	 * @return
+	 */
+	public int getFlushPageMaxBytes() {
+		return flushPageMaxBytes;
+	}
+
+	/**
+	 * Gets max. number of retries of failed offline cache and periodic dispatch requests in an hour.
+	 * 
+	 * @return
+	 */
+	public int getMaxRetriesPerHour() {
+		return maxRetriesPerHour;
+	}
+
+	/**
+	 * Gets max. number of requests kept in memory by each online request queue. Requests over this limit are kept in DB until there is room.
+	 * 
+	 * @return
+	 */
+	public int getOnlineQueueCapacity() {
+		return onlineQueueCapacity;
+	}
+
+	/**
+	 * Gets share of dispatch slots given to second priority queue, relative to third priority queue.
+	 * 
+	 * @return
+	 */
+	public int getSecondPriorityWeight() {
+		return secondPriorityWeight;
+	}
+
+	/**
+	 * Gets share of dispatch slots given to third priority queue, relative to second priority queue.
+	 * 
+	 * @return
+	 */
+	public int getThirdPriorityWeight() {
+		return thirdPriorityWeight;
+	}
+
+	/**
+	 * Gets wait time in milliseconds which adds one point to weight of a queue whose head request is waiting. 0 means aging is disabled.
+	 * 
+	 * @return
+	 */
+	public int getPriorityAgingInterval() {
+		return priorityAgingInterval;
+	}
+
+	/**
+	 * Gets number of consecutive server failures which stops sending requests to server for a while.
+	 * 
+	 * @return
+	 */
+	public int getCircuitBreakerFailureThreshold() {
+		return circuitBreakerFailureThreshold;
+	}
+
+	/**
+	 * Gets max. time in milliseconds that screen and event requests are held for session start of their session.
+	 * 
+	 * @return
+	 */
+	public int getSessionStartTimeout() {
+		return sessionStartTimeout;
+	}
+
 	@SuppressWarnings("static-access")
 	public void setLoggingEnabled(boolean loggingEnabled) {
 		this.loggingEnabled = loggingEnabled;
@@ -40,26 +40,74 @@ public class CurioDBContract {
 		public static final String COLUMN_NAME_DATA = "data";
 		public static final String COLUMN_NAME_IN_PROCESS = "in_process";
 		public static final String COLUMN_NAME_TIMESTAMP = "timestamp";
+		public static final String COLUMN_NAME_DIMENSION_ID = "dimension_id";
+		/**
+		 * Length of request as it is sent in a batch body, URL encoded JSON with its dimension values.
+		 */
+		public static final String COLUMN_NAME_JSON_LENGTH = "json_length";
 	}
 	
 	/**
-	 * Interface for periodic dispatch request table.
+	 * Interface for event log table. Periodic dispatch and offline cache requests are stored in this single append-only table,
+	 * lane column tells which one a row belongs to. See {@link com.turkcell.curio.utils.Constants#LANE_PERIODIC_DISPATCH}.
+	 */
+	public static abstract class CurioEventLogEntry implements BaseOfflineEntryColumns, BaseColumns{
+		public static final String TABLE_NAME = "curio_event_log";
+		public static final String INDEX_NAME_LANE_IN_PROCESS = "curio_event_log_lane_in_process";
+		public static final String INDEX_NAME_DIMENSION_ID = "curio_event_log_dimension_id";
+		public static final String COLUMN_NAME_LANE = "lane";
+		public static final String COLUMN_NAME_SESSION_CODE = "session_code";
+	}
+
+	/**
+	 * Interface for periodic dispatch request view. Read only view of periodic dispatch lane of event log table, kept for compatibility.
+	 * It was a table before DB version 6, index names are only used while upgrading from those versions.
 	 * 
 	 * @author Can Ciloglu
 	 *
 	 */
 	public static abstract class CurioPeriodicDispatchEntry implements BaseOfflineEntryColumns, BaseColumns{
 		public static final String TABLE_NAME = "curio_periodic_dispatch";
+		public static final String INDEX_NAME_IN_PROCESS_TIMESTAMP = "curio_periodic_dispatch_in_process_timestamp";
+		public static final String INDEX_NAME_DIMENSION_ID = "curio_periodic_dispatch_dimension_id";
 	}
 	
 	/**
-	 * Interface for offline cache table.
+	 * Interface for offline cache view. Read only view of offline cache lane of event log table, kept for compatibility.
+	 * It was a table before DB version 6, index names are only used while upgrading from those versions.
 	 * 
 	 * @author Can Ciloglu
 	 *
 	 */
 	public static abstract class CurioOfflineCacheEntry implements BaseOfflineEntryColumns, BaseColumns{
 		public static final String TABLE_NAME = "curio_offline_cache";
+		public static final String INDEX_NAME_IN_PROCESS_TIMESTAMP = "curio_offline_cache_in_process_timestamp";
+		public static final String INDEX_NAME_DIMENSION_ID = "curio_offline_cache_dimension_id";
 		public static final String COLUMN_NAME_SESSION_CODE = "session_code";
 	}
+
+	/**
+	 * Interface for request dimension table. Session, tracking and visitor codes which repeat in stored requests are kept once in this table,
+	 * and event log rows refer to them by id.
+	 */
+	public static abstract class CurioRequestDimensionEntry implements BaseColumns{
+		public static final String TABLE_NAME = "curio_request_dimension";
+		public static final String COLUMN_NAME_SESSION_CODE = "session_code";
+		public static final String COLUMN_NAME_TRACKING_CODE = "tracking_code";
+		public static final String COLUMN_NAME_VISITOR_CODE = "visitor_code";
+	}
+
+	/**
+	 * Interface for online request overflow table. Online requests which do not fit in memory queues are kept in this table until there is room.
+	 */
+	public static abstract class CurioOnlineOverflowEntry implements BaseColumns{
+		public static final String TABLE_NAME = "curio_online_overflow";
+		public static final String INDEX_NAME_PRIORITY_SEQUENCE = "curio_online_overflow_priority_sequence";
+		public static final String COLUMN_NAME_PRIORITY = "priority";
+		public static final String COLUMN_NAME_SEQUENCE = "sequence";
+		public static final String COLUMN_NAME_URL = "url";
+		public static final String COLUMN_NAME_DATA = "data";
+		public static final String COLUMN_NAME_SESSION_CODE = "session_code";
+		public static final String COLUMN_NAME_TIMESTAMP = "timestamp";
+	}
 }
@@ -18,25 +18,37 @@
 package com.turkcell.curio.utils;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import android.annotation.SuppressLint;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
 import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
+import android.provider.BaseColumns;
 import com.turkcell.curio.CurioClient;
 import com.turkcell.curio.model.OfflineRequest;
+import com.turkcell.curio.model.OnlineRequest;
+import com.turkcell.curio.transport.FormEncoder;
 import com.turkcell.curio.utils.CurioDBContract.BaseOfflineEntryColumns;
+import com.turkcell.curio.utils.CurioDBContract.CurioEventLogEntry;
 import com.turkcell.curio.utils.CurioDBContract.CurioOfflineCacheEntry;
+import com.turkcell.curio.utils.CurioDBContract.CurioOnlineOverflowEntry;
 import com.turkcell.curio.utils.CurioDBContract.CurioPeriodicDispatchEntry;
+import com.turkcell.curio.utils.CurioDBContract.CurioRequestDimensionEntry;
 
 /**
  * DB Helper class which manages all DB operations for Curio SDK.
@@ -50,18 +62,170 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 	private static final String TEXT_TYPE = " TEXT";
 	private static final String INTEGER_TYPE = " INTEGER";
 	private static final String COMMA_SEP = ",";
-	private static final String SQL_CREATE_TABLE_PERIODIC_DISPATCH = "CREATE TABLE " + CurioPeriodicDispatchEntry.TABLE_NAME + " (" + CurioPeriodicDispatchEntry._ID
-			+ " INTEGER PRIMARY KEY AUTOINCREMENT," + CurioPeriodicDispatchEntry.COLUMN_NAME_DATA + TEXT_TYPE + COMMA_SEP + CurioPeriodicDispatchEntry.COLUMN_NAME_IN_PROCESS + INTEGER_TYPE
-			+ COMMA_SEP + CurioPeriodicDispatchEntry.COLUMN_NAME_TIMESTAMP + INTEGER_TYPE + " )";
+	static final String SQL_CREATE_TABLE_EVENT_LOG = "CREATE TABLE " + CurioEventLogEntry.TABLE_NAME + " (" + CurioEventLogEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+			+ CurioEventLogEntry.COLUMN_NAME_LANE + INTEGER_TYPE + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_SESSION_CODE + TEXT_TYPE + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_DATA + TEXT_TYPE
+			+ COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + INTEGER_TYPE + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_TIMESTAMP + INTEGER_TYPE + COMMA_SEP
+			+ CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID + INTEGER_TYPE + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_JSON_LENGTH + INTEGER_TYPE + " )";
 
-	private static final String SQL_CREATE_TABLE_OFFLINE_CACHE = "CREATE TABLE " + CurioOfflineCacheEntry.TABLE_NAME + " (" + CurioOfflineCacheEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-			+ CurioOfflineCacheEntry.COLUMN_NAME_SESSION_CODE + TEXT_TYPE + COMMA_SEP + CurioOfflineCacheEntry.COLUMN_NAME_DATA + TEXT_TYPE + COMMA_SEP + CurioOfflineCacheEntry.COLUMN_NAME_IN_PROCESS
-			+ INTEGER_TYPE + COMMA_SEP + CurioOfflineCacheEntry.COLUMN_NAME_TIMESTAMP + INTEGER_TYPE + " )";
+	/**
+	 * Stored requests are always fetched, updated and deleted by lane and "in process" state. Row id is implicitly the last column of an index, so this index also gives PAGE_ORDER.
+	 */
+	static final String SQL_CREATE_INDEX_EVENT_LOG = "CREATE INDEX IF NOT EXISTS " + CurioEventLogEntry.INDEX_NAME_LANE_IN_PROCESS + " ON " + CurioEventLogEntry.TABLE_NAME + " ("
+			+ CurioEventLogEntry.COLUMN_NAME_LANE + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + ")";
+
+	/**
+	 * Dimension rows are deleted once no stored request refers to them, which is looked up by dimension id.
+	 */
+	static final String SQL_CREATE_INDEX_EVENT_LOG_DIMENSION_ID = createDimensionIdIndex(CurioEventLogEntry.INDEX_NAME_DIMENSION_ID, CurioEventLogEntry.TABLE_NAME);
+
+	/**
+	 * Periodic dispatch and offline cache tables are replaced by read only views of their lanes, with the same columns.
+	 */
+	private static final String SQL_CREATE_VIEW_PERIODIC_DISPATCH = "CREATE VIEW " + CurioPeriodicDispatchEntry.TABLE_NAME + " AS SELECT " + CurioEventLogEntry._ID + COMMA_SEP
+			+ CurioEventLogEntry.COLUMN_NAME_DATA + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_TIMESTAMP + COMMA_SEP
+			+ CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID + " FROM " + CurioEventLogEntry.TABLE_NAME + " WHERE " + CurioEventLogEntry.COLUMN_NAME_LANE + "=" + Constants.LANE_PERIODIC_DISPATCH;
+
+	private static final String SQL_CREATE_VIEW_OFFLINE_CACHE = "CREATE VIEW " + CurioOfflineCacheEntry.TABLE_NAME + " AS SELECT " + CurioEventLogEntry._ID + COMMA_SEP
+			+ CurioEventLogEntry.COLUMN_NAME_SESSION_CODE + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_DATA + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + COMMA_SEP
+			+ CurioEventLogEntry.COLUMN_NAME_TIMESTAMP + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID + " FROM " + CurioEventLogEntry.TABLE_NAME + " WHERE "
+			+ CurioEventLogEntry.COLUMN_NAME_LANE + "=" + Constants.LANE_OFFLINE_CACHE;
+
+	static final String SQL_CREATE_TABLE_REQUEST_DIMENSION = "CREATE TABLE " + CurioRequestDimensionEntry.TABLE_NAME + " (" + CurioRequestDimensionEntry._ID
+			+ " INTEGER PRIMARY KEY AUTOINCREMENT," + CurioRequestDimensionEntry.COLUMN_NAME_SESSION_CODE + TEXT_TYPE + COMMA_SEP + CurioRequestDimensionEntry.COLUMN_NAME_TRACKING_CODE
+			+ TEXT_TYPE + COMMA_SEP + CurioRequestDimensionEntry.COLUMN_NAME_VISITOR_CODE + TEXT_TYPE + " )";
+
+	/**
+	 * Timestamp field is mandatory (for internal use not for server) for all requests stored in DB for ordered request fetching.
+	 */
+	static final String SQL_INSERT_EVENT_LOG = "INSERT INTO " + CurioEventLogEntry.TABLE_NAME + " (" + CurioEventLogEntry.COLUMN_NAME_TIMESTAMP + COMMA_SEP
+			+ CurioEventLogEntry.COLUMN_NAME_DATA + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID + COMMA_SEP
+			+ CurioEventLogEntry.COLUMN_NAME_LANE + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_JSON_LENGTH + ") VALUES (?,?,?,?,?,?)";
+
+	/**
+	 * Finds id of a dimension row by its values.
+	 */
+	static final String SQL_SELECT_DIMENSION_ID = "SELECT " + CurioRequestDimensionEntry._ID + " FROM " + CurioRequestDimensionEntry.TABLE_NAME + " WHERE "
+			+ CurioRequestDimensionEntry.COLUMN_NAME_SESSION_CODE + " IS ? AND " + CurioRequestDimensionEntry.COLUMN_NAME_TRACKING_CODE + " IS ? AND "
+			+ CurioRequestDimensionEntry.COLUMN_NAME_VISITOR_CODE + " IS ?";
+
+	/**
+	 * Request parameters which are stored once in dimension table instead of every row, in the order of dimension table columns.
+	 */
+	public static final String[] DIMENSION_PARAM_NAMES = { Constants.HTTP_PARAM_SESSION_CODE, Constants.HTTP_PARAM_TRACKING_CODE, Constants.HTTP_PARAM_VISITOR_CODE };
+
+	/**
+	 * Stored requests are sent in insertion order. Rows keep their id when they move to another lane.
+	 */
+	static final String PAGE_ORDER = BaseColumns._ID + " ASC";
+
+	/**
+	 * Sent length of a stored request. Rows which could not be measured are counted by their stored length.
+	 */
+	static final String JSON_LENGTH = "ifnull(" + CurioEventLogEntry.COLUMN_NAME_JSON_LENGTH + COMMA_SEP + "length(" + CurioEventLogEntry.COLUMN_NAME_DATA + "))";
+
+	/**
+	 * Selection of rows of a lane by "in process" state.
+	 */
+	static final String LANE_IN_PROCESS_SELECTION = CurioEventLogEntry.COLUMN_NAME_LANE + "=? AND " + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + "=?";
+
+	/**
+	 * Counts rows of a lane.
+	 */
+	static final String SQL_COUNT_LANE = "SELECT count(*) FROM " + CurioEventLogEntry.TABLE_NAME + " WHERE " + CurioEventLogEntry.COLUMN_NAME_LANE + "=?";
+
+	/**
+	 * Counts rows of a lane in given "in process" state and sums their sent lengths.
+	 */
+	static final String SQL_QUERY_PAGE_LENGTH = "SELECT count(*), sum(" + JSON_LENGTH + ") FROM " + CurioEventLogEntry.TABLE_NAME + " WHERE " + LANE_IN_PROCESS_SELECTION;
+
+	/**
+	 * Sent lengths of the oldest given number of rows of a lane which are in given "in process" state.
+	 */
+	static final String SQL_QUERY_ROW_LENGTHS = "SELECT " + JSON_LENGTH + " FROM " + CurioEventLogEntry.TABLE_NAME + " WHERE " + LANE_IN_PROCESS_SELECTION + " ORDER BY " + PAGE_ORDER
+			+ " LIMIT ?";
+
+	/**
+	 * Sets "in process" state of the oldest given number of rows of a lane which are in given state.
+	 */
+	static final String SQL_MARK_PAGE_IN_PROCESS = "UPDATE " + CurioEventLogEntry.TABLE_NAME + " SET " + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + "=? WHERE "
+			+ CurioEventLogEntry._ID + " IN (SELECT " + CurioEventLogEntry._ID + " FROM " + CurioEventLogEntry.TABLE_NAME + " WHERE " + LANE_IN_PROCESS_SELECTION + " ORDER BY "
+			+ PAGE_ORDER + " LIMIT ?)";
+
+	/**
+	 * Data of rows of a lane in given "in process" state with their dimension values, in insertion order.
+	 */
+	static final String SQL_QUERY_REQUESTS_WITH_DIMENSIONS = "SELECT r." + CurioEventLogEntry.COLUMN_NAME_DATA + ", d." + CurioRequestDimensionEntry.COLUMN_NAME_SESSION_CODE
+			+ ", d." + CurioRequestDimensionEntry.COLUMN_NAME_TRACKING_CODE + ", d." + CurioRequestDimensionEntry.COLUMN_NAME_VISITOR_CODE + " FROM " + CurioEventLogEntry.TABLE_NAME
+			+ " r LEFT JOIN " + CurioRequestDimensionEntry.TABLE_NAME + " d ON r." + CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID + "=d." + CurioRequestDimensionEntry._ID
+			+ " WHERE r." + CurioEventLogEntry.COLUMN_NAME_LANE + "=? AND r." + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + "=? ORDER BY r." + PAGE_ORDER;
+
+	/**
+	 * Dimension ids of rows of a lane in given "in process" state. Ids are not made distinct in SQL, which would need a temporary index.
+	 */
+	static final String SQL_QUERY_DIMENSION_IDS = "SELECT " + CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID + " FROM " + CurioEventLogEntry.TABLE_NAME + " WHERE "
+			+ LANE_IN_PROCESS_SELECTION;
+
+	/**
+	 * Deletes rows of a lane in given "in process" state.
+	 */
+	static final String SQL_DELETE_PAGE = "DELETE FROM " + CurioEventLogEntry.TABLE_NAME + " WHERE " + LANE_IN_PROCESS_SELECTION;
+
+	/**
+	 * Sets "in process" state of all rows of a lane which are in given state.
+	 */
+	static final String SQL_SET_PAGE_IN_PROCESS = "UPDATE " + CurioEventLogEntry.TABLE_NAME + " SET " + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + "=? WHERE " + LANE_IN_PROCESS_SELECTION;
+
+	/**
+	 * Moves rows of a lane in given "in process" state to another lane, with given session code.
+	 */
+	static final String SQL_MOVE_TO_LANE = "UPDATE " + CurioEventLogEntry.TABLE_NAME + " SET " + CurioEventLogEntry.COLUMN_NAME_LANE + "=?" + COMMA_SEP
+			+ CurioEventLogEntry.COLUMN_NAME_SESSION_CODE + "=? WHERE " + LANE_IN_PROCESS_SELECTION;
+
+	/**
+	 * Deletes a dimension row if no stored request refers to it. Takes dimension id twice.
+	 */
+	static final String SQL_DELETE_UNUSED_DIMENSION = "DELETE FROM " + CurioRequestDimensionEntry.TABLE_NAME + " WHERE " + CurioRequestDimensionEntry._ID + "=? AND NOT EXISTS (SELECT 1 FROM "
+			+ CurioEventLogEntry.TABLE_NAME + " WHERE " + CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID + "=?)";
+
+	static final String SQL_CREATE_TABLE_ONLINE_OVERFLOW = "CREATE TABLE " + CurioOnlineOverflowEntry.TABLE_NAME + " (" + CurioOnlineOverflowEntry._ID
+			+ " INTEGER PRIMARY KEY AUTOINCREMENT," + CurioOnlineOverflowEntry.COLUMN_NAME_PRIORITY + INTEGER_TYPE + COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_SEQUENCE + INTEGER_TYPE
+			+ COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_URL + TEXT_TYPE + COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_DATA + TEXT_TYPE + COMMA_SEP
+			+ CurioOnlineOverflowEntry.COLUMN_NAME_SESSION_CODE + TEXT_TYPE + COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_TIMESTAMP + INTEGER_TYPE + " )";
+
+	/**
+	 * Overflow requests are always fetched and deleted by priority, in sequence order.
+	 */
+	static final String SQL_CREATE_INDEX_ONLINE_OVERFLOW = "CREATE INDEX IF NOT EXISTS " + CurioOnlineOverflowEntry.INDEX_NAME_PRIORITY_SEQUENCE + " ON "
+			+ CurioOnlineOverflowEntry.TABLE_NAME + " (" + CurioOnlineOverflowEntry.COLUMN_NAME_PRIORITY + COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_SEQUENCE + ")";
+
+	static final String SQL_INSERT_ONLINE_OVERFLOW = "INSERT INTO " + CurioOnlineOverflowEntry.TABLE_NAME + " (" + CurioOnlineOverflowEntry.COLUMN_NAME_PRIORITY + COMMA_SEP
+			+ CurioOnlineOverflowEntry.COLUMN_NAME_SEQUENCE + COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_URL + COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_DATA + COMMA_SEP
+			+ CurioOnlineOverflowEntry.COLUMN_NAME_SESSION_CODE + COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_TIMESTAMP + ") VALUES (?,?,?,?,?,?)";
+
+	/**
+	 * Oldest given number of overflow requests of a priority, in the order they were stored.
+	 */
+	static final String SQL_QUERY_ONLINE_OVERFLOW = "SELECT " + CurioOnlineOverflowEntry.COLUMN_NAME_SEQUENCE + COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_URL + COMMA_SEP
+			+ CurioOnlineOverflowEntry.COLUMN_NAME_DATA + COMMA_SEP + CurioOnlineOverflowEntry.COLUMN_NAME_TIMESTAMP + " FROM " + CurioOnlineOverflowEntry.TABLE_NAME + " WHERE "
+			+ CurioOnlineOverflowEntry.COLUMN_NAME_PRIORITY + "=? ORDER BY " + CurioOnlineOverflowEntry.COLUMN_NAME_SEQUENCE + " ASC LIMIT ?";
+
+	/**
+	 * Deletes overflow requests of a priority up to given sequence number.
+	 */
+	static final String SQL_DELETE_ONLINE_OVERFLOW = "DELETE FROM " + CurioOnlineOverflowEntry.TABLE_NAME + " WHERE " + CurioOnlineOverflowEntry.COLUMN_NAME_PRIORITY + "=? AND "
+			+ CurioOnlineOverflowEntry.COLUMN_NAME_SEQUENCE + "<=?";
 
 	private static final String SQL_DROP_TABLE_PERIODIC_DISPATCH = "DROP TABLE IF EXISTS " + CurioPeriodicDispatchEntry.TABLE_NAME;
 	private static final String SQL_DROP_TABLE_OFFLINE_CACHE = "DROP TABLE IF EXISTS " + CurioOfflineCacheEntry.TABLE_NAME;
 
-	private static final int DATABASE_VERSION = 1;
+	/**
+	 * Version 2: online request overflow table.
+	 * Version 3: "in process" and timestamp indexes of periodic dispatch and offline cache tables, priority and sequence index of online overflow table.
+	 * Version 4: data of periodic dispatch and offline cache tables is stored in binary form, see {@link RequestRowCodec}, with its sent length.
+	 * Version 5: request dimension table, referred to by dimension id of stored requests.
+	 * Version 6: periodic dispatch and offline cache tables are merged into event log table, indexed by lane and "in process" state.
+	 */
+	private static final int DATABASE_VERSION = 6;
 	private static final String DATABASE_NAME = "Curio.db";
 
 	private static CurioDBHelper instance;
@@ -78,9 +242,15 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 	private CurioClient clientInstance;
 
 	/**
-	 * Variable to check if any periodic dispatch request stored.
+	 * Row counts of offline cache and periodic dispatch lanes. A lane is counted once when its count is first needed,
+	 * then its count is kept up to date by inserts, deletes and lane changes, so that checks do not query DB.
 	 */
-	private boolean periodicDispatchRequestExists = true;
+	private final Map<Integer, Integer> rowCounts = new HashMap<Integer, Integer>();
+
+	/**
+	 * Ids of stored dimension rows by their values. Only read and changed inside DB transactions, so that it is always in line with dimension table.
+	 */
+	private final Map<String, Long> dimensionIds = new HashMap<String, Long>();
 
 	/**
 	 * Should be called first to create instance.
@@ -121,18 +291,173 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 
 	@Override
 	public void onCreate(SQLiteDatabase db) {
-		// Create periodic dispatch table. Requests (start/end screen, send event) are stored in this table for periodic dispatching.
-		db.execSQL(SQL_CREATE_TABLE_PERIODIC_DISPATCH);
-
-		// Create offline cache table. All requests are stored in this table for offline caching.
-		db.execSQL(SQL_CREATE_TABLE_OFFLINE_CACHE);
+		// Create event log table. Requests (start/end screen, send event) are stored in periodic dispatch lane for periodic dispatching,
+		// all requests are stored in offline cache lane for offline caching.
+		db.execSQL(SQL_CREATE_TABLE_EVENT_LOG);
+		db.execSQL(SQL_CREATE_INDEX_EVENT_LOG);
+		db.execSQL(SQL_CREATE_INDEX_EVENT_LOG_DIMENSION_ID);
+		db.execSQL(SQL_CREATE_VIEW_PERIODIC_DISPATCH);
+		db.execSQL(SQL_CREATE_VIEW_OFFLINE_CACHE);
+
+		// Create online overflow table. Online requests which do not fit in memory queues are stored in this table.
+		db.execSQL(SQL_CREATE_TABLE_ONLINE_OVERFLOW);
+		db.execSQL(SQL_CREATE_INDEX_ONLINE_OVERFLOW);
+
+		// Create request dimension table. Session, tracking and visitor codes of stored requests are stored once in this table.
+		db.execSQL(SQL_CREATE_TABLE_REQUEST_DIMENSION);
 	}
 
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+		/**
+		 * Stored requests are kept on upgrade. Changes of each version are applied in order, in the upgrade transaction opened by SQLiteOpenHelper.
+		 */
+		for (int version = oldVersion + 1; version <= newVersion; version++) {
+			CurioLogger.d(TAG, "Upgrading DB to version " + version);
+			upgradeTo(db, version);
+		}
+	}
+
+	/**
+	 * Applies schema changes of given version to a DB of previous version.
+	 * 
+	 * @param db
+	 * @param version
+	 */
+	private void upgradeTo(SQLiteDatabase db, int version) {
+		switch (version) {
+		case 2:
+			db.execSQL(SQL_CREATE_TABLE_ONLINE_OVERFLOW);
+			break;
+		case 3:
+			db.execSQL(createInProcessTimestampIndex(CurioPeriodicDispatchEntry.INDEX_NAME_IN_PROCESS_TIMESTAMP, CurioPeriodicDispatchEntry.TABLE_NAME));
+			db.execSQL(createInProcessTimestampIndex(CurioOfflineCacheEntry.INDEX_NAME_IN_PROCESS_TIMESTAMP, CurioOfflineCacheEntry.TABLE_NAME));
+			db.execSQL(SQL_CREATE_INDEX_ONLINE_OVERFLOW);
+			break;
+		case 4:
+			db.execSQL("ALTER TABLE " + CurioPeriodicDispatchEntry.TABLE_NAME + " ADD COLUMN " + CurioPeriodicDispatchEntry.COLUMN_NAME_JSON_LENGTH + INTEGER_TYPE);
+			db.execSQL("ALTER TABLE " + CurioOfflineCacheEntry.TABLE_NAME + " ADD COLUMN " + CurioOfflineCacheEntry.COLUMN_NAME_JSON_LENGTH + INTEGER_TYPE);
+			convertDataToBinary(db, CurioPeriodicDispatchEntry.TABLE_NAME);
+			convertDataToBinary(db, CurioOfflineCacheEntry.TABLE_NAME);
+			break;
+		case 5:
+			/**
+			 * Existing rows keep dimension fields in their data and have no dimension id, they are sent as they are.
+			 */
+			db.execSQL(SQL_CREATE_TABLE_REQUEST_DIMENSION);
+			db.execSQL("ALTER TABLE " + CurioPeriodicDispatchEntry.TABLE_NAME + " ADD COLUMN " + CurioPeriodicDispatchEntry.COLUMN_NAME_DIMENSION_ID + INTEGER_TYPE);
+			db.execSQL("ALTER TABLE " + CurioOfflineCacheEntry.TABLE_NAME + " ADD COLUMN " + CurioOfflineCacheEntry.COLUMN_NAME_DIMENSION_ID + INTEGER_TYPE);
+			db.execSQL(createDimensionIdIndex(CurioPeriodicDispatchEntry.INDEX_NAME_DIMENSION_ID, CurioPeriodicDispatchEntry.TABLE_NAME));
+			db.execSQL(createDimensionIdIndex(CurioOfflineCacheEntry.INDEX_NAME_DIMENSION_ID, CurioOfflineCacheEntry.TABLE_NAME));
+			break;
+		case 6:
+			moveStoredRequestsToEventLog(db);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * Creates index of given table by "in process" state and timestamp.
+	 * 
+	 * @param indexName
+	 * @param tableName
+	 * @return
+	 */
+	private static String createInProcessTimestampIndex(String indexName, String tableName) {
+		return "CREATE INDEX IF NOT EXISTS " + indexName + " ON " + tableName + " (" + BaseOfflineEntryColumns.COLUMN_NAME_IN_PROCESS + COMMA_SEP
+				+ BaseOfflineEntryColumns.COLUMN_NAME_TIMESTAMP + ")";
+	}
+
+	/**
+	 * Creates index of given table by dimension id.
+	 * 
+	 * @param indexName
+	 * @param tableName
+	 * @return
+	 */
+	private static String createDimensionIdIndex(String indexName, String tableName) {
+		return "CREATE INDEX IF NOT EXISTS " + indexName + " ON " + tableName + " (" + BaseOfflineEntryColumns.COLUMN_NAME_DIMENSION_ID + ")";
+	}
+
+	/**
+	 * Copies rows of periodic dispatch and offline cache tables into event log table, oldest first, then replaces the tables with views of their lanes.
+	 * Indexes of the tables are dropped with them.
+	 * 
+	 * @param db
+	 */
+	private void moveStoredRequestsToEventLog(SQLiteDatabase db) {
+		db.execSQL(SQL_CREATE_TABLE_EVENT_LOG);
+		db.execSQL(SQL_CREATE_INDEX_EVENT_LOG);
+		db.execSQL(SQL_CREATE_INDEX_EVENT_LOG_DIMENSION_ID);
+
+		String columns = BaseOfflineEntryColumns.COLUMN_NAME_DATA + COMMA_SEP + BaseOfflineEntryColumns.COLUMN_NAME_IN_PROCESS + COMMA_SEP + BaseOfflineEntryColumns.COLUMN_NAME_TIMESTAMP
+				+ COMMA_SEP + BaseOfflineEntryColumns.COLUMN_NAME_DIMENSION_ID + COMMA_SEP + BaseOfflineEntryColumns.COLUMN_NAME_JSON_LENGTH;
+
+		db.execSQL("INSERT INTO " + CurioEventLogEntry.TABLE_NAME + " (" + CurioEventLogEntry.COLUMN_NAME_LANE + COMMA_SEP + CurioEventLogEntry.COLUMN_NAME_SESSION_CODE + COMMA_SEP + columns
+				+ ") SELECT " + Constants.LANE_PERIODIC_DISPATCH + ", NULL, " + columns + " FROM " + CurioPeriodicDispatchEntry.TABLE_NAME + " UNION ALL SELECT " + Constants.LANE_OFFLINE_CACHE
+				+ COMMA_SEP + CurioOfflineCacheEntry.COLUMN_NAME_SESSION_CODE + COMMA_SEP + columns + " FROM " + CurioOfflineCacheEntry.TABLE_NAME + " ORDER BY "
+				+ BaseOfflineEntryColumns.COLUMN_NAME_TIMESTAMP + " ASC");
+
 		db.execSQL(SQL_DROP_TABLE_PERIODIC_DISPATCH);
 		db.execSQL(SQL_DROP_TABLE_OFFLINE_CACHE);
-		onCreate(db);
+		db.execSQL(SQL_CREATE_VIEW_PERIODIC_DISPATCH);
+		db.execSQL(SQL_CREATE_VIEW_OFFLINE_CACHE);
+	}
+
+	/**
+	 * Gets length of given encoded request as it is sent in a batch body, see {@link com.turkcell.curio.transport.StoredRequestsBody}.
+	 * 
+	 * @param row
+	 * @param dimensionValues
+	 * @param json reused builder.
+	 * @return
+	 * @throws IllegalArgumentException if row is not a valid encoded row.
+	 */
+	static int getJsonLength(byte[] row, String[] dimensionValues, StringBuilder json) {
+		json.setLength(0);
+		RequestRowCodec.appendJSON(row, DIMENSION_PARAM_NAMES, dimensionValues, json);
+		return FormEncoder.encodedLength(json);
+	}
+
+	/**
+	 * Converts JSON text data of stored requests in given table to binary form, and sets their sent length. Column type stays as TEXT, since SQLite keeps BLOB values as they are in a TEXT column.
+	 * 
+	 * @param db
+	 * @param tableName
+	 */
+	private void convertDataToBinary(SQLiteDatabase db, String tableName) {
+		RequestRowCodec codec = new RequestRowCodec();
+		SQLiteStatement statement = db.compileStatement("UPDATE " + tableName + " SET " + BaseOfflineEntryColumns.COLUMN_NAME_DATA + "=?" + COMMA_SEP
+				+ BaseOfflineEntryColumns.COLUMN_NAME_JSON_LENGTH + "=? WHERE " + BaseColumns._ID + "=?");
+		Cursor cursor = db.query(tableName, new String[] { BaseColumns._ID, BaseOfflineEntryColumns.COLUMN_NAME_DATA }, null, null, null, null, null);
+		StringBuilder json = new StringBuilder();
+
+		/**
+		 * Rows of this version keep all their parameters in data, they have no dimension values.
+		 */
+		String[] dimensionValues = new String[DIMENSION_PARAM_NAMES.length];
+
+		try {
+			while (cursor.moveToNext()) {
+				String data = cursor.getString(1);
+
+				if (data == null) {
+					continue;
+				}
+
+				byte[] row = codec.encode(parseJSONData(data));
+
+				statement.bindBlob(1, row);
+				statement.bindLong(2, getJsonLength(row, dimensionValues, json));
+				statement.bindLong(3, cursor.getLong(0));
+				statement.execute();
+			}
+		} finally {
+			cursor.close();
+			statement.close();
+		}
 	}
 
 	@SuppressLint("NewApi")
@@ -173,97 +498,251 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 	}
 
 	/**
-	 * Writes an periodic dispatch request to DB for later dispatch.
+	 * Writes periodic dispatch requests to DB for later dispatch. All requests are inserted in a single transaction with a single compiled statement.
 	 * 
-	 * @param offlineRequest
+	 * @param offlineRequests
 	 * @return true if write operation is successful.
 	 */
-	public boolean persistOfflineRequestForPeriodicDispatch(OfflineRequest offlineRequest) {
-		// To be on the safe side, set this param before inserting the actual data.
-		periodicDispatchRequestExists = true;
+	public boolean persistOfflineRequestsForPeriodicDispatch(List<OfflineRequest> offlineRequests) {
+		return insertOfflineRequests(Constants.LANE_PERIODIC_DISPATCH, offlineRequests);
+	}
 
-		SQLiteDatabase db = null;
+	/**
+	 * Writes offline requests to DB for caching. All requests are inserted in a single transaction with a single compiled statement.
+	 * 
+	 * @param offlineRequests
+	 * 
+	 * @return number of requests written, requests which do not fit in max. offline cache size are not written.
+	 */
+	public int persistOfflineRequestsForCaching(List<OfflineRequest> offlineRequests) {
+		/**
+		 * Check if max. offline cache size is reached.
+		 * If yes, do not store offline requests anymore.
+		 */
+		int freeRowCount = CurioClientSettings.getInstance(context).getMaxCachedActivityCount() - getRowCount(Constants.LANE_OFFLINE_CACHE);
 
-		try {
-			db = openDatabase();
+		if (freeRowCount <= 0) {
+			CurioLogger.i(TAG, "Cache size limit has been reached. No offline request will be stored until device goes online and sends stored analytics to server.");
+			return 0;
+		}
 
-			ContentValues values = new ContentValues();
+		if (offlineRequests.size() > freeRowCount) {
+			CurioLogger.i(TAG, "Cache size limit has been reached. " + (offlineRequests.size() - freeRowCount) + " offline requests will not be stored.");
+			offlineRequests = offlineRequests.subList(0, freeRowCount);
+		}
 
-			/**
-			 * Timestamp field is mandatory (for internal use not for server) for all requests stored in DB for ordered request fetching.
-			 */
-			values.put(CurioPeriodicDispatchEntry.COLUMN_NAME_TIMESTAMP, Long.toString((Long) offlineRequest.getParams().get(Constants.JSON_NODE_TIMESTAMP)));
+		return insertOfflineRequests(Constants.LANE_OFFLINE_CACHE, offlineRequests) ? offlineRequests.size() : 0;
+	}
 
-			/**
-			 * Generate JSON data.
-			 */
-			values.put(CurioPeriodicDispatchEntry.COLUMN_NAME_DATA, generateJSONData(offlineRequest.getParams()));
+	/**
+	 * Inserts given requests into given lane of event log table in a single transaction.
+	 * 
+	 * @param lane
+	 * @param offlineRequests
+	 * @return true if all requests are inserted.
+	 */
+	private boolean insertOfflineRequests(int lane, List<OfflineRequest> offlineRequests) {
+		SQLiteDatabase db = null;
+		SQLiteStatement statement = null;
+		SQLiteStatement dimensionQuery = null;
+		RequestRowCodec codec = new RequestRowCodec();
 
-			/**
-			 * Mark it as not in process
-			 */
-			values.put(CurioPeriodicDispatchEntry.COLUMN_NAME_IN_PROCESS, Constants.NOT_IN_PROCESS);
+		try {
+			db = openDatabase();
 
-			long i = db.insert(CurioPeriodicDispatchEntry.TABLE_NAME, null, values);
+			statement = db.compileStatement(SQL_INSERT_EVENT_LOG);
+			dimensionQuery = compileDimensionQuery(db);
+
+			db.beginTransaction();
+
+			try {
+				Map<String, Long> newDimensionIds = new HashMap<String, Long>();
+				StringBuilder json = new StringBuilder();
+
+				for (OfflineRequest offlineRequest : offlineRequests) {
+					byte[] row = codec.encode(offlineRequest.getParams(), DIMENSION_PARAM_NAMES);
+					String[] dimensionValues = getDimensionValues(offlineRequest.getParams());
+
+					statement.bindLong(1, (Long) offlineRequest.getParams().get(Constants.JSON_NODE_TIMESTAMP));
+					statement.bindBlob(2, row);
+					statement.bindLong(3, Constants.NOT_IN_PROCESS);
+					statement.bindLong(4, getDimensionId(db, dimensionQuery, dimensionValues, newDimensionIds));
+					statement.bindLong(5, lane);
+					statement.bindLong(6, getJsonLength(row, dimensionValues, json));
+					statement.executeInsert();
+				}
+
+				db.setTransactionSuccessful();
+				updateRowCount(lane, offlineRequests.size());
+				addDimensionIds(newDimensionIds);
+			} finally {
+				db.endTransaction();
+			}
 
-			CurioLogger.d(TAG, "Row ID of newly inserted periodic dispatch request is " + i);
+			CurioLogger.d(TAG, offlineRequests.size() + " requests are inserted into lane " + lane);
 			return true;
 		} catch (SQLiteException e) {
 			CurioLogger.e(TAG, e.getMessage());
 			return false;
 		} finally {
+			if (statement != null) {
+				statement.close();
+			}
+			if (dimensionQuery != null) {
+				dimensionQuery.close();
+			}
 			closeDatabase();
 		}
 	}
 
 	/**
-	 * Writes an offline request to DB for caching
+	 * Compiles query which finds id of a dimension row by its values. Should be compiled once for all lookups of a transaction.
 	 * 
-	 * @param offlineRequest
+	 * @param db
+	 * @return
+	 */
+	private SQLiteStatement compileDimensionQuery(SQLiteDatabase db) {
+		return db.compileStatement(SQL_SELECT_DIMENSION_ID);
+	}
+
+	/**
+	 * Gets values of {@link #DIMENSION_PARAM_NAMES} in given parameters.
 	 * 
-	 * @return true if write operation is successful.
+	 * @param params
+	 * @return
 	 */
-	public boolean persistOfflineRequestForCaching(OfflineRequest offlineRequest) {
-		/**
-		 * Check if max. offline cache size is reached.
-		 * If yes, do not store offline requests anymore.
-		 */
-		if (hasMaxCacheSizeReached()) {
-			CurioLogger.i(TAG, "Cache size limit has been reached. No offline request will be stored until device goes online and sends stored analytics to server.");
-			return false;
+	static String[] getDimensionValues(Map<String, Object> params) {
+		String[] values = new String[DIMENSION_PARAM_NAMES.length];
+
+		for (int i = 0; i < DIMENSION_PARAM_NAMES.length; i++) {
+			Object value = params.get(DIMENSION_PARAM_NAMES[i]);
+			values[i] = value != null ? value.toString() : null;
 		}
 
-		SQLiteDatabase db = null;
+		return values;
+	}
+
+	/**
+	 * Gets id of dimension row for given session, tracking and visitor codes, inserts it if there is not one. Should be called in a transaction.
+	 * 
+	 * @param db
+	 * @param dimensionQuery see {@link #compileDimensionQuery(SQLiteDatabase)}.
+	 * @param values see {@link #getDimensionValues(Map)}.
+	 * @param newDimensionIds ids inserted in current transaction, added to known ids only if transaction is successful.
+	 * @return
+	 */
+	private long getDimensionId(SQLiteDatabase db, SQLiteStatement dimensionQuery, String[] values, Map<String, Long> newDimensionIds) {
+		StringBuilder key = new StringBuilder();
+
+		for (int i = 0; i < values.length; i++) {
+			key.append(values[i] != null ? values[i] : "\u0000").append('\n');
+		}
+
+		Long id = newDimensionIds.get(key.toString());
+
+		if (id == null) {
+			synchronized (dimensionIds) {
+				id = dimensionIds.get(key.toString());
+			}
+		}
+
+		if (id != null) {
+			return id;
+		}
 
 		try {
-			db = openDatabase();
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					dimensionQuery.bindString(i + 1, values[i]);
+				} else {
+					dimensionQuery.bindNull(i + 1);
+				}
+			}
 
-			ContentValues values = new ContentValues();
+			id = dimensionQuery.simpleQueryForLong();
+		} catch (SQLiteDoneException e) {
+			ContentValues dimension = new ContentValues();
+			dimension.put(CurioRequestDimensionEntry.COLUMN_NAME_SESSION_CODE, values[0]);
+			dimension.put(CurioRequestDimensionEntry.COLUMN_NAME_TRACKING_CODE, values[1]);
+			dimension.put(CurioRequestDimensionEntry.COLUMN_NAME_VISITOR_CODE, values[2]);
 
-			/**
-			 * Timestamp field is mandatory (for internal use not for server) for all requests stored in DB for ordered request fetching.
-			 */
-			values.put(CurioOfflineCacheEntry.COLUMN_NAME_TIMESTAMP, Long.toString((Long) offlineRequest.getParams().get(Constants.JSON_NODE_TIMESTAMP)));
+			id = db.insertOrThrow(CurioRequestDimensionEntry.TABLE_NAME, null, dimension);
+		}
 
-			/**
-			 * Generate JSON data.
-			 */
-			values.put(CurioOfflineCacheEntry.COLUMN_NAME_DATA, generateJSONData(offlineRequest.getParams()));
+		newDimensionIds.put(key.toString(), id);
+		return id;
+	}
 
-			/**
-			 * Mark it as not in process
-			 */
-			values.put(CurioOfflineCacheEntry.COLUMN_NAME_IN_PROCESS, Constants.NOT_IN_PROCESS);
+	private void addDimensionIds(Map<String, Long> newDimensionIds) {
+		synchronized (dimensionIds) {
+			dimensionIds.putAll(newDimensionIds);
+		}
+	}
 
-			long i = db.insert(CurioOfflineCacheEntry.TABLE_NAME, null, values);
-			CurioLogger.d(TAG, "Row ID of newly inserted offline request is " + i);
-			return true;
-		} catch (SQLiteException e) {
-			CurioLogger.e(TAG, e.getMessage());
-			return false;
+	/**
+	 * Gets distinct dimension ids of rows of given lane in given "in process" state.
+	 * 
+	 * @param db
+	 * @param selectionArgs lane and "in process" state.
+	 * @return
+	 */
+	private Set<Long> queryDimensionIds(SQLiteDatabase db, String[] selectionArgs) {
+		Set<Long> ids = new HashSet<Long>();
+		Cursor cursor = db.rawQuery(SQL_QUERY_DIMENSION_IDS, selectionArgs);
+
+		try {
+			while (cursor.moveToNext()) {
+				if (!cursor.isNull(0)) {
+					ids.add(cursor.getLong(0));
+				}
+			}
 		} finally {
-			closeDatabase();
+			cursor.close();
+		}
+
+		return ids;
+	}
+
+	/**
+	 * Deletes given dimension rows which no stored request refers to any more, and forgets their ids. Only dimensions of deleted rows need to be checked,
+	 * each check is a lookup on dimension id index. Should be called in a transaction.
+	 * 
+	 * Ids are forgotten before transaction ends, which is safe since ids are only looked up in transactions and a forgotten id is just looked up again.
+	 * 
+	 * @param db
+	 * @param candidateIds dimension ids of deleted rows.
+	 */
+	private void deleteUnusedDimensions(SQLiteDatabase db, Set<Long> candidateIds) {
+		Set<Long> unusedIds = new HashSet<Long>();
+
+		for (Long id : candidateIds) {
+			db.execSQL(SQL_DELETE_UNUSED_DIMENSION, new Object[] { id, id });
+
+			if (getChangedRowCount(db) > 0) {
+				unusedIds.add(id);
+			}
+		}
+
+		if (unusedIds.isEmpty()) {
+			return;
 		}
+
+		synchronized (dimensionIds) {
+			dimensionIds.values().removeAll(unusedIds);
+		}
+
+		CurioLogger.d(TAG, unusedIds.size() + " dimension rows deleted, since no stored request refers to them.");
+	}
+
+	/**
+	 * Gets number of rows changed by the last UPDATE or DELETE statement run with {@link SQLiteDatabase#execSQL(String, Object[])}.
+	 * SQLiteStatement.executeUpdateDelete() is not available below API level 11.
+	 * 
+	 * @param db
+	 * @return
+	 */
+	private static int getChangedRowCount(SQLiteDatabase db) {
+		return (int) DatabaseUtils.longForQuery(db, "SELECT changes()", null);
 	}
 
 	/**
@@ -292,16 +771,60 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 	 * Deletes periodic dispatch data which are marked as "in process"
 	 */
 	public void deleteInProcessPeriodicRequests() {
+		deleteInProcessRequests(Constants.LANE_PERIODIC_DISPATCH);
+	}
+
+	/**
+	 * Sets "in process" periodic dispatch data as "not in process"
+	 */
+	public void setInProcessPeriodicRequestsAsNotInProcess() {
+		int i = setInProcessRequestsAsNotInProcess(Constants.LANE_PERIODIC_DISPATCH);
+		CurioLogger.d(TAG, i + " rows updated as NOT in process until next periodic dispatch check.");
+	}
+
+	/**
+	 * Deletes offline requests which are marked as "in process"
+	 */
+	public void deleteInProcessOfflineRequests() {
+		deleteInProcessRequests(Constants.LANE_OFFLINE_CACHE);
+	}
+
+	/**
+	 * Sets "in process" offline requests as "not in process"
+	 */
+	public void setInProcessOfflineRequestsAsNotInProcess() {
+		int i = setInProcessRequestsAsNotInProcess(Constants.LANE_OFFLINE_CACHE);
+		CurioLogger.d(TAG, i + " rows updated as NOT in process and will be send next time device is online");
+	}
+
+	/**
+	 * Deletes requests of given lane which are marked as "in process"
+	 * 
+	 * @param lane
+	 */
+	private void deleteInProcessRequests(int lane) {
 		SQLiteDatabase db = null;
 		try {
 			db = openDatabase();
 
-			String whereClause = CurioPeriodicDispatchEntry.COLUMN_NAME_IN_PROCESS + "=?";
-			String[] whereArgs = new String[] { Constants.IN_PROCESS_STR };
+			String[] whereArgs = new String[] { Integer.toString(lane), Constants.IN_PROCESS_STR };
+
+			db.beginTransaction();
 
-			int i = db.delete(CurioPeriodicDispatchEntry.TABLE_NAME, whereClause, whereArgs);
+			try {
+				Set<Long> dimensionIds = queryDimensionIds(db, whereArgs);
 
-			CurioLogger.d(TAG, i + " rows deleted, since their process completed.");
+				db.execSQL(SQL_DELETE_PAGE, whereArgs);
+				int i = getChangedRowCount(db);
+				deleteUnusedDimensions(db, dimensionIds);
+
+				db.setTransactionSuccessful();
+				updateRowCount(lane, -i);
+
+				CurioLogger.d(TAG, i + " rows deleted, since their process completed.");
+			} finally {
+				db.endTransaction();
+			}
 		} catch (Exception e) {
 			CurioLogger.e(TAG, e.getMessage(), e);
 		} finally {
@@ -310,43 +833,58 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 	}
 
 	/**
-	 * Sets "in process" periodic dispatch data as "not in process"
+	 * Sets "in process" requests of given lane as "not in process"
+	 * 
+	 * @param lane
+	 * @return number of updated rows.
 	 */
-	public void setInProcessPeriodicRequestsAsNotInProcess() {
+	private int setInProcessRequestsAsNotInProcess(int lane) {
 		SQLiteDatabase db = null;
+		int i = 0;
 
 		try {
 			db = openDatabase();
 
-			ContentValues values = new ContentValues();
-
-			values.put(CurioPeriodicDispatchEntry.COLUMN_NAME_IN_PROCESS, Constants.NOT_IN_PROCESS);
-
-			String whereClause = CurioPeriodicDispatchEntry.COLUMN_NAME_IN_PROCESS + "=?";
-			String[] whereArgs = new String[] { Constants.IN_PROCESS_STR };
+			/**
+			 * Statement and its changed row count are in a transaction, so that they use the same connection.
+			 */
+			db.beginTransaction();
 
-			int i = db.update(CurioPeriodicDispatchEntry.TABLE_NAME, values, whereClause, whereArgs);
+			try {
+				db.execSQL(SQL_SET_PAGE_IN_PROCESS, new Object[] { Constants.NOT_IN_PROCESS, lane, Constants.IN_PROCESS });
+				i = getChangedRowCount(db);
 
-			CurioLogger.d(TAG, i + " rows updated as NOT in process until next periodic dispatch check.");
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
 		} catch (Exception e) {
 			CurioLogger.e(TAG, e.getMessage(), e);
 		} finally {
 			closeDatabase();
 		}
-	}
 
+		return i;
+	}
 
 	/**
-	 * Fetches stored requests from given table (periodic dispatch or offline cache)
+	 * Marks next page of stored requests of given lane (periodic dispatch or offline cache) as "in process" to be sent. Pages are taken in insertion order, and
+	 * contain at most given number of rows and about given number of bytes as they are sent, URL encoded JSON. A page always contains at least one row, even if that row is larger than max. bytes.
 	 * 
-	 * @param tableName
-	 * @return
+	 * If there are already "in process" rows left from an unfinished dispatch, they are returned as the page instead.
+	 * 
+	 * Requests are not loaded here, they are streamed from DB while they are being sent. See {@link #queryInProcessRequests(int)}.
+	 * 
+	 * @param lane
+	 * @param maxRows
+	 * @param maxBytes
+	 * @return estimated size of URL encoded JSON array of page in bytes, or 0 if there is no stored request.
 	 */
-	public String fetchStoredRequestsFromTable(String tableName) {
+	public long markNextPageAsInProcess(int lane, int maxRows, long maxBytes) {
 		SQLiteDatabase db = openDatabase();
 		Cursor cursor = null;
 
-		JSONArray array = null;
+		long pageLength = 0;
 
 		try {
 			/**
@@ -354,109 +892,258 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 			 */
 			 db.beginTransaction();
 
-			/**
-			 * Fetch stored requests
-			 */
-			String selection = BaseOfflineEntryColumns.COLUMN_NAME_IN_PROCESS + "=?";
-			String[] selectionArgs = new String[] { Constants.NOT_IN_PROCESS_STR };
-			String orderBy = BaseOfflineEntryColumns.COLUMN_NAME_TIMESTAMP + " DESC";
-
-			cursor = db.query(tableName, null, selection, selectionArgs, null, null, orderBy);
-
-			if (cursor.moveToFirst()) {
-				array = new JSONArray();
-				do {
-					String data = cursor.getString(cursor.getColumnIndex(BaseOfflineEntryColumns.COLUMN_NAME_DATA));
-					try {
-						array.put(new JSONObject(data));
-					} catch (JSONException e) {
-						CurioLogger.e(TAG, e.getMessage(), e);
+			String laneStr = Integer.toString(lane);
+
+			cursor = db.rawQuery(SQL_QUERY_PAGE_LENGTH, new String[] { laneStr, Constants.IN_PROCESS_STR });
+
+			int rowCount = 0;
+
+			if (cursor.moveToFirst() && cursor.getInt(0) > 0) {
+				rowCount = cursor.getInt(0);
+				pageLength = cursor.getLong(1);
+				CurioLogger.d(TAG, rowCount + " rows are already in process, they will be sent as next page.");
+			} else {
+				cursor.close();
+
+				/**
+				 * Only lengths are read to find out how many of the oldest rows fit in a page.
+				 */
+				cursor = db.rawQuery(SQL_QUERY_ROW_LENGTHS, new String[] { laneStr, Constants.NOT_IN_PROCESS_STR, Integer.toString(maxRows) });
+
+				while (cursor.moveToNext()) {
+					long rowLength = cursor.getLong(0);
+
+					if (rowCount > 0 && pageLength + rowLength > maxBytes) {
+						break;
 					}
-				} while (cursor.moveToNext());
-			}
 
-			/**
-			 * If no request data stored, abort dispatch.
-			 */
-			if (array == null || array.length() == 0) {
-				CurioLogger.d(TAG, "No stored activity found. Will check in " + CurioClientSettings.getInstance(context).getDispatchPeriod() + " min. again.");
-				return null;
+					pageLength += rowLength;
+					rowCount++;
+				}
+
+				/**
+				 * If no request data stored, abort dispatch.
+				 */
+				if (rowCount == 0) {
+					CurioLogger.d(TAG, "No stored activity found. Will check in " + CurioClientSettings.getInstance(context).getDispatchPeriod() + " min. again.");
+				} else {
+					/**
+					 * Set rows of the page as "in process"
+					 */
+					db.execSQL(SQL_MARK_PAGE_IN_PROCESS, new Object[] { Constants.IN_PROCESS, lane, Constants.NOT_IN_PROCESS, rowCount });
+
+					CurioLogger.d(TAG, rowCount + " rows updated as in process until they sent...");
+				}
 			}
 
 			/**
-			 * Set fetched requests as "in process"
+			 * Include URL encoded JSON array brackets and separators, this also makes sure that a non empty page never has 0 length.
 			 */
-			ContentValues values = new ContentValues();
-			values.put(BaseOfflineEntryColumns.COLUMN_NAME_IN_PROCESS, Constants.IN_PROCESS);
-
-			String whereClause = BaseOfflineEntryColumns.COLUMN_NAME_IN_PROCESS + "=?";
-			String[] whereArgs = new String[] { Constants.NOT_IN_PROCESS_STR };
-
-			int i = db.update(tableName, values, whereClause, whereArgs);
-
-			CurioLogger.d(TAG, i + " rows updated as in process until they sent...");
+			if (rowCount > 0) {
+				pageLength += 3 * (rowCount + 1);
+			}
 
 			db.setTransactionSuccessful();
 		} catch (Exception e1) {
 			CurioLogger.e(TAG, e1.getMessage(), e1);
+			pageLength = 0;
 		} finally {
 			db.endTransaction();
-			
+
 			if(cursor != null){
 				cursor.close();
 			}
-			
+
 			closeDatabase();
 		}
 
-		if(array == null || array.length() == 0){
-			return null;
+		return pageLength;
+	}
+
+	/**
+	 * Queries data of "in process" requests of given lane, in insertion order. Rows are read from cursor one by one while they are written,
+	 * so whole data is never kept in memory.
+	 * 
+	 * Data is the first column, followed by values of {@link #DIMENSION_PARAM_NAMES} joined from dimension table (null if row has no dimension id).
+	 * Caller should close returned cursor and then call {@link #closeDatabase()}.
+	 * 
+	 * @param lane
+	 * @return
+	 */
+	public Cursor queryInProcessRequests(int lane) {
+		SQLiteDatabase db = openDatabase();
+
+		try {
+			return db.rawQuery(SQL_QUERY_REQUESTS_WITH_DIMENSIONS, new String[] { Integer.toString(lane), Constants.IN_PROCESS_STR });
+		} catch (RuntimeException e) {
+			closeDatabase();
+			throw e;
 		}
+	}
+
+	/**
+	 * Moves all stored periodic dispatch data which is not in process to offline cache lane, with a single UPDATE. Rows keep their place in insertion order.
+	 * Rows of a periodic dispatch page which is being sent are left to its dispatch.
+	 * 
+	 * @return number of requests moved.
+	 */
+	public int moveAllExistingPeriodicDispatchDataToOfflineTable() {
 		
-		return array.toString();
+		/**
+		 * Check if there is any stored periodic request.
+		 */
+		if (getRowCount(Constants.LANE_PERIODIC_DISPATCH) == 0) {
+			return 0;
+		}
+
+		/**
+		 * Check if offline cache is full or not. Periodic requests are already stored, so they are all moved anyway and none of them is dropped;
+		 * capacity only limits new offline requests.
+		 */
+		if (hasMaxCacheSizeReached()) {
+			CurioLogger.i(TAG, "Cache capacity limit has been reached. No offline request will be stored until device goes online and sends stored analytics to server.");
+		}
+
+		SQLiteDatabase db = openDatabase();
+		int movedCount = 0;
+
+		try {
+			/**
+			 * The whole process will be in a transaction
+			 */
+			db.beginTransaction();
+
+			/**
+			 * Also add session code to the requests while moving them to offline cache lane.
+			 */
+			db.execSQL(SQL_MOVE_TO_LANE, new Object[] { Constants.LANE_OFFLINE_CACHE, clientInstance.getSessionCode(false), Constants.LANE_PERIODIC_DISPATCH,
+					Constants.NOT_IN_PROCESS });
+			movedCount = getChangedRowCount(db);
+
+			db.setTransactionSuccessful();
+			updateRowCount(Constants.LANE_OFFLINE_CACHE, movedCount);
+			updateRowCount(Constants.LANE_PERIODIC_DISPATCH, -movedCount);
+
+			CurioLogger.d(TAG, movedCount + " periodic dispatch requests are moved to offline cache.");
+		} catch (Exception e1) {
+			CurioLogger.e(TAG, e1.getMessage(), e1);
+			movedCount = 0;
+		} finally {
+			db.endTransaction();
+			closeDatabase();
+		}
+
+		return movedCount;
 	}
 
 	/**
-	 * Deletes offline requests which are marked as "in process"
+	 * Writes online requests which do not fit in their memory queues to overflow table in a single transaction. Callbacks of requests are not stored,
+	 * they are kept in memory by request processor.
+	 * 
+	 * @param onlineRequests
+	 * @return true if write operation is successful.
 	 */
-	public void deleteInProcessOfflineRequests() {
+	public boolean persistOnlineOverflowRequests(List<OnlineRequest> onlineRequests) {
 		SQLiteDatabase db = null;
+		SQLiteStatement statement = null;
+
 		try {
 			db = openDatabase();
 
-			String whereClause = CurioOfflineCacheEntry.COLUMN_NAME_IN_PROCESS + "=?";
-			String[] whereArgs = new String[] { Constants.IN_PROCESS_STR };
+			statement = db.compileStatement(SQL_INSERT_ONLINE_OVERFLOW);
+
+			db.beginTransaction();
 
-			int i = db.delete(CurioOfflineCacheEntry.TABLE_NAME, whereClause, whereArgs);
+			try {
+				for (OnlineRequest onlineRequest : onlineRequests) {
+					Object sessionCode = onlineRequest.getParams().get(Constants.HTTP_PARAM_SESSION_CODE);
 
-			CurioLogger.d(TAG, i + " rows deleted, since their process completed.");
+					statement.bindLong(1, onlineRequest.getPriority());
+					statement.bindLong(2, onlineRequest.getSequence());
+					statement.bindString(3, onlineRequest.getUrl());
+					statement.bindString(4, generateJSONData(onlineRequest.getParams()));
+					statement.bindString(5, sessionCode != null ? sessionCode.toString() : clientInstance.getSessionCode(false));
+					statement.bindLong(6, onlineRequest.getTimestamp());
+					statement.executeInsert();
+				}
+
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
 
+			CurioLogger.d(TAG, onlineRequests.size() + " online overflow requests are inserted.");
+			return true;
+		} catch (SQLiteException e) {
+			CurioLogger.e(TAG, e.getMessage());
+			return false;
+		} finally {
+			if (statement != null) {
+				statement.close();
+			}
+			closeDatabase();
+		}
+	}
+
+	/**
+	 * Fetches oldest online overflow requests of given priority, in the order they were stored. Fetched requests are not deleted, see {@link #deleteOnlineOverflowRequests(int, long)}.
+	 * 
+	 * @param priority
+	 * @param limit
+	 * @return requests without callbacks.
+	 */
+	public List<OnlineRequest> fetchOnlineOverflowRequests(int priority, int limit) {
+		List<OnlineRequest> requests = new ArrayList<OnlineRequest>();
+		SQLiteDatabase db = openDatabase();
+		Cursor cursor = null;
+
+		try {
+			cursor = db.rawQuery(SQL_QUERY_ONLINE_OVERFLOW, new String[] { Integer.toString(priority), Integer.toString(limit) });
+
+			while (cursor.moveToNext()) {
+				OnlineRequest onlineRequest = new OnlineRequest(cursor.getString(1), parseJSONData(cursor.getString(2)), null, priority);
+				onlineRequest.setSequence(cursor.getLong(0));
+				onlineRequest.setTimestamp(cursor.getLong(3));
+				requests.add(onlineRequest);
+			}
 		} catch (Exception e) {
 			CurioLogger.e(TAG, e.getMessage(), e);
 		} finally {
+			if(cursor != null){
+				cursor.close();
+			}
+
 			closeDatabase();
 		}
+
+		return requests;
 	}
 
 	/**
-	 * Sets "in process" offline requests as "not in process"
+	 * Deletes online overflow requests of given priority up to given sequence number, after they are moved back to memory queue.
+	 * 
+	 * @param priority
+	 * @param maxSequence
 	 */
-	public void setInProcessOfflineRequestsAsNotInProcess() {
+	public void deleteOnlineOverflowRequests(int priority, long maxSequence) {
 		SQLiteDatabase db = null;
+		int i = 0;
 
 		try {
 			db = openDatabase();
 
-			ContentValues values = new ContentValues();
+			db.beginTransaction();
 
-			values.put(CurioOfflineCacheEntry.COLUMN_NAME_IN_PROCESS, Constants.NOT_IN_PROCESS);
+			try {
+				db.execSQL(SQL_DELETE_ONLINE_OVERFLOW, new Object[] { priority, maxSequence });
+				i = getChangedRowCount(db);
 
-			String whereClause = CurioOfflineCacheEntry.COLUMN_NAME_IN_PROCESS + "=?";
-			String[] whereArgs = new String[] { Constants.IN_PROCESS_STR };
-
-			int i = db.update(CurioOfflineCacheEntry.TABLE_NAME, values, whereClause, whereArgs);
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
 
-			CurioLogger.d(TAG, i + " rows updated as NOT in process and will be send next time device is online");
+			CurioLogger.d(TAG, i + " online overflow rows deleted, since they are moved back to memory queue.");
 		} catch (Exception e) {
 			CurioLogger.e(TAG, e.getMessage(), e);
 		} finally {
@@ -464,104 +1151,118 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 		}
 	}
 
-	
 	/**
-	 * Converts and inserts all stored periodic dispatch data into offline request table.
+	 * Moves online overflow requests left from a previous run of the application to offline cache lane, with the session code they were created in.
+	 * Their callbacks are lost with the previous run, so they can not go back to online queues.
+	 * 
+	 * All rows of overflow table are moved, so this should only be called before any online request of this run is spilled to it.
+	 * 
+	 * @return number of moved requests.
 	 */
-	public void moveAllExistingPeriodicDispatchDataToOfflineTable() {
-		
-		/**
-		 * Check if there is any stored periodic request.
-		 */
-		if (!periodicDispatchRequestExists) {
-			return;
-		}
-
-		/**
-		 * Check if offline cache is full or not.
-		 */
-		if (hasMaxCacheSizeReached()) {
-			CurioLogger.i(TAG, "Cache capacity limit has been reached. No offline request will be stored until device goes online and sends stored analytics to server.");
-		}
-
+	public int moveOnlineOverflowRequestsToOfflineTable() {
 		SQLiteDatabase db = openDatabase();
-
 		Cursor cursor = null;
-		
-		List<String[]> rowList = new ArrayList<String[]>();
+		int movedCount = 0;
+		SQLiteStatement dimensionQuery = null;
+		RequestRowCodec codec = new RequestRowCodec();
+		Map<String, Long> newDimensionIds = new HashMap<String, Long>();
+		StringBuilder json = new StringBuilder();
 
 		try {
 			/**
 			 * The whole process will be in a transaction
 			 */
-			 db.beginTransaction();
-
-			/**
-			 * Fetch stored requests
-			 */
-			String selection = CurioPeriodicDispatchEntry.COLUMN_NAME_IN_PROCESS + "=?";
-			String[] selectionArgs = new String[] { Constants.NOT_IN_PROCESS_STR };
-			String orderBy = CurioPeriodicDispatchEntry.COLUMN_NAME_TIMESTAMP + " DESC";
-
-			cursor = db.query(CurioPeriodicDispatchEntry.TABLE_NAME, null, selection, selectionArgs, null, null, orderBy);
-
-			if (cursor.moveToFirst()) {
-				String[] row = new String[5];
-				do {
-					row[0] = cursor.getString(cursor.getColumnIndex(CurioPeriodicDispatchEntry.COLUMN_NAME_DATA));
-					row[1] = cursor.getString(cursor.getColumnIndex(CurioPeriodicDispatchEntry.COLUMN_NAME_TIMESTAMP));
-
-					rowList.add(row);
-				} while (cursor.moveToNext());
+			db.beginTransaction();
+
+			dimensionQuery = compileDimensionQuery(db);
+
+			String[] columns = new String[] { CurioOnlineOverflowEntry.COLUMN_NAME_URL, CurioOnlineOverflowEntry.COLUMN_NAME_DATA, CurioOnlineOverflowEntry.COLUMN_NAME_SESSION_CODE,
+					CurioOnlineOverflowEntry.COLUMN_NAME_TIMESTAMP };
+
+			cursor = db.query(CurioOnlineOverflowEntry.TABLE_NAME, columns, null, null, null, null, CurioOnlineOverflowEntry.COLUMN_NAME_PRIORITY + " ASC, "
+					+ CurioOnlineOverflowEntry.COLUMN_NAME_SEQUENCE + " ASC");
+
+			while (cursor.moveToNext()) {
+				Map<String, Object> params = parseJSONData(cursor.getString(1));
+				String sessionCode = cursor.getString(2);
+				long timestamp = cursor.getLong(3);
+
+				/**
+				 * Offline cache data should contain what an online request gets while it is sent, plus timestamp and request type required at server.
+				 */
+				if (params.get(Constants.HTTP_PARAM_SESSION_CODE) == null) {
+					params.put(Constants.HTTP_PARAM_SESSION_CODE, sessionCode);
+				}
+				params.put(Constants.JSON_NODE_TIMESTAMP, timestamp);
+				params.put(Constants.JSON_NODE_TYPE, CurioUtil.getRequestType(cursor.getString(0)));
+
+				byte[] row = codec.encode(params, DIMENSION_PARAM_NAMES);
+				String[] dimensionValues = getDimensionValues(params);
+
+				ContentValues values = new ContentValues();
+				values.put(CurioEventLogEntry.COLUMN_NAME_LANE, Constants.LANE_OFFLINE_CACHE);
+				values.put(CurioEventLogEntry.COLUMN_NAME_SESSION_CODE, sessionCode);
+				values.put(CurioEventLogEntry.COLUMN_NAME_DATA, row);
+				values.put(CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID, getDimensionId(db, dimensionQuery, dimensionValues, newDimensionIds));
+				values.put(CurioEventLogEntry.COLUMN_NAME_JSON_LENGTH, getJsonLength(row, dimensionValues, json));
+				values.put(CurioEventLogEntry.COLUMN_NAME_TIMESTAMP, timestamp);
+				values.put(CurioEventLogEntry.COLUMN_NAME_IN_PROCESS, Constants.NOT_IN_PROCESS);
+
+				db.insert(CurioEventLogEntry.TABLE_NAME, null, values);
+				movedCount++;
 			}
 
-			/**
-			 * Update them as in process...
-			 */
-			ContentValues values = new ContentValues();
-			values.put(CurioPeriodicDispatchEntry.COLUMN_NAME_IN_PROCESS, Constants.IN_PROCESS);
-
-			String whereClause = CurioPeriodicDispatchEntry.COLUMN_NAME_IN_PROCESS + "=?";
-			String[] whereArgs = new String[] { Constants.NOT_IN_PROCESS_STR };
-
-			int i = db.update(CurioPeriodicDispatchEntry.TABLE_NAME, values, whereClause, whereArgs);
-
-			CurioLogger.d(TAG, i + " rows updated as in process until processing finishes...");
+			db.delete(CurioOnlineOverflowEntry.TABLE_NAME, null, null);
 
-			/**
-			 * Add fetched requests to offline table.
-			 * 
-			 * Also add session code to the requests while storing them on offline cache table.
-			 */
-			for (String[] row : rowList) {
-				values = new ContentValues();
-				values.put(CurioOfflineCacheEntry.COLUMN_NAME_SESSION_CODE, clientInstance.getSessionCode(false));
-				values.put(CurioOfflineCacheEntry.COLUMN_NAME_DATA, row[0]);
-				values.put(CurioOfflineCacheEntry.COLUMN_NAME_TIMESTAMP, row[1]);
-				values.put(CurioOfflineCacheEntry.COLUMN_NAME_IN_PROCESS, Constants.NOT_IN_PROCESS);
-
-				long rowId = db.insert(CurioOfflineCacheEntry.TABLE_NAME, null, values);
-				CurioLogger.d(TAG, "Row ID of newly added offline request is " + rowId);
+			if (movedCount > 0) {
+				CurioLogger.i(TAG, movedCount + " online overflow requests left from previous run are moved to offline cache.");
 			}
 
-			/**
-			 * Delete all from periodic dispatch table
-			 */
-			deleteInProcessPeriodicRequests();
-			periodicDispatchRequestExists = false;
-
 			db.setTransactionSuccessful();
-		} catch (Exception e1) {
-			CurioLogger.e(TAG, e1.getMessage(), e1);
+			updateRowCount(Constants.LANE_OFFLINE_CACHE, movedCount);
+			addDimensionIds(newDimensionIds);
+		} catch (Exception e) {
+			CurioLogger.e(TAG, e.getMessage(), e);
+			movedCount = 0;
 		} finally {
 			db.endTransaction();
-			
+
 			if(cursor != null){
 				cursor.close();
 			}
-			
+
+			if (dimensionQuery != null) {
+				dimensionQuery.close();
+			}
+
 			closeDatabase();
 		}
+
+		return movedCount;
+	}
+
+	/**
+	 * Parses JSON "data" node string back to parameter map.
+	 * 
+	 * @param data
+	 * @return
+	 */
+	private Map<String, Object> parseJSONData(String data) {
+		Map<String, Object> params = new HashMap<String, Object>();
+
+		try {
+			JSONObject json = new JSONObject(data);
+			Iterator<?> keys = json.keys();
+
+			while (keys.hasNext()) {
+				String key = (String) keys.next();
+				params.put(key, json.get(key));
+			}
+		} catch (JSONException e) {
+			CurioLogger.e(TAG, e.getMessage(), e);
+		}
+
+		return params;
 	}
 
 	/**
@@ -570,7 +1271,7 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 	 * @return
 	 */
 	private boolean hasMaxCacheSizeReached() {
-		int rowCount = getRowCount();
+		int rowCount = getRowCount(Constants.LANE_OFFLINE_CACHE);
 
 		if (rowCount < CurioClientSettings.getInstance(context).getMaxCachedActivityCount()) {
 			return false;
@@ -580,21 +1281,44 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 	}
 
 	/**
-	 * Efficient way of getting row count.
+	 * Gets row count of given lane. Lane is counted only the first time, see {@link #updateRowCount(int, int)}.
 	 * 
-	 * @param tableName
+	 * @param lane
 	 * @return
 	 */
-	private int getRowCount() {
+	private int getRowCount(int lane) {
+		synchronized (rowCounts) {
+			Integer count = rowCounts.get(lane);
+
+			if (count != null) {
+				return count;
+			}
+		}
+
 		int count = 0;
 		SQLiteDatabase db = openDatabase();
 		Cursor countCursor = null;
 
 		try {
-			countCursor = db.query(CurioOfflineCacheEntry.TABLE_NAME, new String[] { "count(*) AS count" }, null, null, null, null, null);
+			/**
+			 * Counted in a transaction, so that no insert or delete can be committed between counting and storing the count.
+			 */
+			db.beginTransaction();
+
+			try {
+				countCursor = db.rawQuery(SQL_COUNT_LANE, new String[] { Integer.toString(lane) });
+
+				countCursor.moveToFirst();
+				count = countCursor.getInt(0);
 
-			countCursor.moveToFirst();
-			count = countCursor.getInt(0);
+				synchronized (rowCounts) {
+					rowCounts.put(lane, count);
+				}
+
+				db.setTransactionSuccessful();
+			} finally {
+				db.endTransaction();
+			}
 		} catch (Exception e) {
 			CurioLogger.e(TAG, e.getMessage(), e);
 		} finally {
@@ -607,4 +1331,21 @@ public class CurioDBHelper extends SQLiteOpenHelper {
 
 		return count;
 	}
+
+	/**
+	 * Adds given number of inserted (or deleted if negative) rows to row count of given lane, if lane is already counted.
+	 * Should be called in the transaction which inserts, deletes or moves rows, after it is marked as successful.
+	 * 
+	 * @param lane
+	 * @param delta
+	 */
+	private void updateRowCount(int lane, int delta) {
+		synchronized (rowCounts) {
+			Integer count = rowCounts.get(lane);
+
+			if (count != null) {
+				rowCounts.put(lane, Math.max(0, count + delta));
+			}
+		}
+	}
 }
@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reads only the given top level fields of a JSON object from a stream, without building the whole tree.
+ * 
+ * Values of other fields are skipped as they are read, and reading stops as soon as all wanted fields are found.
+ * Only string, number and boolean values are extracted; a wanted field with an object or array value is skipped.
+ * (android.util.JsonReader is not used since it needs API level 11.)
+ */
+public class JsonFieldReader {
+	private static final int EOF = -1;
+	private static final int NONE = -2;
+
+	private final Reader reader;
+	private int peeked = NONE;
+
+	private JsonFieldReader(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Reads given fields from UTF-8 encoded JSON object in stream. Stream is not closed.
+	 * 
+	 * @param in
+	 * @param fieldNames
+	 * @return object which contains only found fields, or null if stream is null or empty.
+	 * @throws IOException
+	 * @throws JSONException if stream does not contain a valid JSON object.
+	 */
+	public static JSONObject readFields(InputStream in, String... fieldNames) throws IOException, JSONException {
+		if (in == null) {
+			return null;
+		}
+
+		return new JsonFieldReader(new BufferedReader(new InputStreamReader(in, Constants.UTF8_ENCODING))).readObjectFields(fieldNames);
+	}
+
+	private JSONObject readObjectFields(String[] fieldNames) throws IOException, JSONException {
+		int c = nextNonWhitespace();
+
+		if (c == EOF) {
+			return null;
+		}
+
+		expect(c, '{');
+
+		JSONObject result = new JSONObject();
+		int foundCount = 0;
+
+		if (peekNonWhitespace() == '}') {
+			return result;
+		}
+
+		while (true) {
+			expect(nextNonWhitespace(), '"');
+			String name = readString();
+			expect(nextNonWhitespace(), ':');
+
+			if (contains(fieldNames, name)) {
+				Object value = readSimpleValue();
+
+				if (value != null) {
+					result.put(name, value);
+				}
+
+				if (++foundCount == fieldNames.length) {
+					// Rest of the body is not needed.
+					return result;
+				}
+			} else {
+				skipValue();
+			}
+
+			c = nextNonWhitespace();
+
+			if (c == '}') {
+				return result;
+			}
+
+			expect(c, ',');
+		}
+	}
+
+	/**
+	 * Reads a string, number or boolean value. Skips object, array and null values.
+	 * 
+	 * @return value, or null if skipped.
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private Object readSimpleValue() throws IOException, JSONException {
+		int c = peekNonWhitespace();
+
+		if (c == '"') {
+			read();
+			return readString();
+		}
+
+		if (c == '{' || c == '[') {
+			skipValue();
+			return null;
+		}
+
+		String literal = readLiteral();
+
+		if ("null".equals(literal)) {
+			return null;
+		} else if ("true".equals(literal)) {
+			return Boolean.TRUE;
+		} else if ("false".equals(literal)) {
+			return Boolean.FALSE;
+		}
+		return literal;
+	}
+
+	/**
+	 * Skips next value, including nested objects and arrays.
+	 * 
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private void skipValue() throws IOException, JSONException {
+		int depth = 0;
+
+		do {
+			int c = nextNonWhitespace();
+
+			switch (c) {
+			case '{':
+			case '[':
+				depth++;
+				break;
+			case '}':
+			case ']':
+				depth--;
+				break;
+			case '"':
+				skipString();
+				break;
+			case ',':
+			case ':':
+				break;
+			case EOF:
+				throw new JSONException("Unexpected end of JSON.");
+			default:
+				peeked = c;
+				readLiteral();
+				break;
+			}
+		} while (depth > 0);
+	}
+
+	/**
+	 * Reads rest of a string whose opening quote is already read.
+	 * 
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private String readString() throws IOException, JSONException {
+		StringBuilder builder = new StringBuilder();
+
+		while (true) {
+			int c = read();
+
+			if (c == '"') {
+				return builder.toString();
+			}
+
+			if (c == EOF) {
+				throw new JSONException("Unterminated string.");
+			}
+
+			if (c == '\\') {
+				c = read();
+
+				switch (c) {
+				case 'b':
+					builder.append('\b');
+					break;
+				case 'f':
+					builder.append('\f');
+					break;
+				case 'n':
+					builder.append('\n');
+					break;
+				case 'r':
+					builder.append('\r');
+					break;
+				case 't':
+					builder.append('\t');
+					break;
+				case 'u':
+					char[] hex = new char[4];
+					for (int i = 0; i < hex.length; i++) {
+						hex[i] = (char) read();
+					}
+					try {
+						builder.append((char) Integer.parseInt(new String(hex), 16));
+					} catch (NumberFormatException e) {
+						throw new JSONException("Invalid escape sequence.");
+					}
+					break;
+				case EOF:
+					throw new JSONException("Unterminated string.");
+				default:
+					builder.append((char) c);
+					break;
+				}
+			} else {
+				builder.append((char) c);
+			}
+		}
+	}
+
+	private void skipString() throws IOException, JSONException {
+		while (true) {
+			int c = read();
+
+			if (c == '"') {
+				return;
+			}
+
+			if (c == '\\') {
+				c = read();
+			}
+
+			if (c == EOF) {
+				throw new JSONException("Unterminated string.");
+			}
+		}
+	}
+
+	/**
+	 * Reads a number, true, false or null literal.
+	 * 
+	 * @return
+	 * @throws IOException
+	 * @throws JSONException
+	 */
+	private String readLiteral() throws IOException, JSONException {
+		StringBuilder builder = new StringBuilder();
+
+		while (true) {
+			int c = read();
+
+			if (c == EOF || c == ',' || c == '}' || c == ']' || c == ':' || Character.isWhitespace(c)) {
+				peeked = c;
+				break;
+			}
+
+			builder.append((char) c);
+		}
+
+		if (builder.length() == 0) {
+			throw new JSONException("Expected a value.");
+		}
+
+		return builder.toString();
+	}
+
+	private void expect(int c, char expected) throws JSONException {
+		if (c != expected) {
+			throw new JSONException("Expected '" + expected + "' but found " + (c == EOF ? "end of JSON" : "'" + (char) c + "'"));
+		}
+	}
+
+	private int peekNonWhitespace() throws IOException {
+		int c = nextNonWhitespace();
+		peeked = c;
+		return c;
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		int c;
+
+		do {
+			c = read();
+		} while (c != EOF && Character.isWhitespace(c));
+
+		return c;
+	}
+
+	private int read() throws IOException {
+		if (peeked != NONE) {
+			int c = peeked;
+			peeked = NONE;
+			return c;
+		}
+		return reader.read();
+	}
+
+	private static boolean contains(String[] names, String name) {
+		for (String fieldName : names) {
+			if (fieldName.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Compact binary form of stored request data, used instead of JSON text in data column of periodic dispatch and offline cache tables.
+ * 
+ * A row is a format version byte followed by fields. Each field starts with a varint header of (field id << 2 | value type).
+ * Known parameter names have numeric field ids, other names have field id 0 and are written as a string after the header.
+ * Integral numbers are zigzag varints, UUID strings are 16 bytes, other strings are a varint byte length followed by UTF-8 bytes.
+ * 
+ * Rows are decoded straight into the JSON text sent to server, without building JSON objects. Fields kept out of the row
+ * (like session, tracking and visitor codes stored once in dimension table) are added back while decoding.
+ * Not thread safe, each thread should use its own instance.
+ */
+public class RequestRowCodec {
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int TYPE_NUMBER = 0;
+	private static final int TYPE_STRING = 1;
+	private static final int TYPE_UUID = 2;
+	private static final int TYPE_JSON = 3;
+
+	private static final int UUID_LENGTH = 36;
+	private static final char[] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+
+	/**
+	 * Field ids are stored in DB, so names here must never be removed or reordered. New names should be appended.
+	 */
+	private static final String[] FIELD_NAMES = { null, Constants.HTTP_PARAM_SESSION_CODE, Constants.HTTP_PARAM_TRACKING_CODE, Constants.HTTP_PARAM_VISITOR_CODE,
+			Constants.HTTP_PARAM_HIT_CODE, Constants.HTTP_PARAM_EVENT_CODE, Constants.JSON_NODE_TIMESTAMP, Constants.JSON_NODE_TYPE, Constants.HTTP_PARAM_PAGE_TITLE,
+			Constants.HTTP_PARAM_PATH, Constants.HTTP_PARAM_EVENT_KEY, Constants.HTTP_PARAM_EVENT_VALUE, Constants.HTTP_PARAM_EVENT_DURATION, Constants.HTTP_PARAM_SESSION_TIMEOUT,
+			Constants.HTTP_PARAM_API_KEY, Constants.HTTP_PARAM_SCREEN_WIDTH, Constants.HTTP_PARAM_SCREEN_HEIGHT, Constants.HTTP_PARAM_ACTIVITY_WIDTH,
+			Constants.HTTP_PARAM_ACTIVITY_HEIGHT, Constants.HTTP_PARAM_OS_TYPE, Constants.HTTP_PARAM_OS_VERSION, Constants.HTTP_PARAM_CURIO_SDK_VERSION,
+			Constants.HTTP_PARAM_APP_VERSION, Constants.HTTP_PARAM_BRAND, Constants.HTTP_PARAM_MODEL, Constants.HTTP_PARAM_SIM_OPERATOR, Constants.HTTP_PARAM_SIM_COUNTRY_ISO,
+			Constants.HTTP_PARAM_NETWORK_OPERATOR_NAME, Constants.HTTP_PARAM_INTERNET_CONN_TYPE, Constants.HTTP_PARAM_LANG, Constants.HTTP_PARAM_PUSH_TOKEN,
+			Constants.HTTP_PARAM_PUSH_ID, Constants.HTTP_PARAM_CUSTOM_ID, Constants.HTTP_PARAM_BT_STATE, Constants.HTTP_PARAM_AVAILABLE_STORAGE, Constants.HTTP_PARAM_BATTERY_LEVEL };
+
+	private static final Map<String, Integer> FIELD_IDS = new HashMap<String, Integer>();
+
+	static {
+		for (int i = 1; i < FIELD_NAMES.length; i++) {
+			FIELD_IDS.put(FIELD_NAMES[i], i);
+		}
+	}
+
+	private byte[] buffer = new byte[256];
+	private int count;
+
+	/**
+	 * Encodes given request parameters. Parameters with null values are skipped, as JSONObject does.
+	 * 
+	 * @param params
+	 * @param excludedNames names of parameters which are not written to row.
+	 * @return encoded row.
+	 */
+	public byte[] encode(Map<String, Object> params, String... excludedNames) {
+		count = 0;
+		writeByte(FORMAT_VERSION);
+
+		for (Map.Entry<String, Object> entry : params.entrySet()) {
+			Object value = entry.getValue();
+
+			if (value == null || isExcluded(entry.getKey(), excludedNames)) {
+				continue;
+			}
+
+			int type;
+
+			if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				type = TYPE_NUMBER;
+			} else if (value instanceof String && isUUID((String) value)) {
+				type = TYPE_UUID;
+			} else if (value instanceof Number || value instanceof Boolean || value instanceof JSONObject || value instanceof JSONArray) {
+				type = TYPE_JSON;
+			} else {
+				type = TYPE_STRING;
+			}
+
+			Integer fieldId = FIELD_IDS.get(entry.getKey());
+
+			writeVarint((fieldId != null ? fieldId : 0) << 2 | type);
+
+			if (fieldId == null) {
+				writeString(entry.getKey());
+			}
+
+			switch (type) {
+			case TYPE_NUMBER:
+				long number = ((Number) value).longValue();
+				writeVarint((number << 1) ^ (number >> 63));
+				break;
+			case TYPE_UUID:
+				writeUUID((String) value);
+				break;
+			case TYPE_JSON:
+				writeString(toJSONValue(value));
+				break;
+			default:
+				writeString(value.toString());
+				break;
+			}
+		}
+
+		byte[] row = new byte[count];
+		System.arraycopy(buffer, 0, row, 0, count);
+		return row;
+	}
+
+	/**
+	 * Appends JSON object text of given encoded row to given builder.
+	 * 
+	 * @param row
+	 * @param extraNames names of string fields which are kept out of row, may be null.
+	 * @param extraValues values of extra fields, null values are skipped.
+	 * @param out
+	 * @throws IllegalArgumentException if row is not a valid encoded row.
+	 */
+	public static void appendJSON(byte[] row, String[] extraNames, String[] extraValues, StringBuilder out) {
+		if (row == null || row.length == 0 || row[0] != FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unknown stored request format.");
+		}
+
+		int[] position = { 1 };
+		boolean first = true;
+
+		out.append('{');
+
+		if (extraNames != null) {
+			for (int i = 0; i < extraNames.length; i++) {
+				if (extraValues[i] == null) {
+					continue;
+				}
+
+				if (!first) {
+					out.append(',');
+				}
+
+				first = false;
+
+				appendQuoted(extraNames[i], out);
+				out.append(':');
+				appendQuoted(extraValues[i], out);
+			}
+		}
+
+		try {
+			while (position[0] < row.length) {
+				int header = (int) readVarint(row, position);
+				int fieldId = header >>> 2;
+				int type = header & 3;
+
+				if (!first) {
+					out.append(',');
+				}
+
+				first = false;
+
+				if (fieldId == 0) {
+					appendQuoted(readString(row, position), out);
+				} else if (fieldId < FIELD_NAMES.length) {
+					out.append('"').append(FIELD_NAMES[fieldId]).append('"');
+				} else {
+					throw new IllegalArgumentException("Unknown field id " + fieldId);
+				}
+
+				out.append(':');
+
+				switch (type) {
+				case TYPE_NUMBER:
+					long number = readVarint(row, position);
+					out.append((number >>> 1) ^ -(number & 1));
+					break;
+				case TYPE_UUID:
+					out.append('"');
+					appendUUID(row, position, out);
+					out.append('"');
+					break;
+				case TYPE_JSON:
+					out.append(readString(row, position));
+					break;
+				default:
+					appendQuoted(readString(row, position), out);
+					break;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("Stored request is truncated.");
+		}
+
+		out.append('}');
+	}
+
+	private static boolean isExcluded(String name, String[] excludedNames) {
+		for (String excludedName : excludedNames) {
+			if (excludedName.equals(name)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks for canonical lower case UUID form, which is the only form decoded back from 16 bytes.
+	 */
+	private static boolean isUUID(String s) {
+		if (s.length() != UUID_LENGTH) {
+			return false;
+		}
+
+		for (int i = 0; i < UUID_LENGTH; i++) {
+			char c = s.charAt(i);
+
+			if (i == 8 || i == 13 || i == 18 || i == 23) {
+				if (c != '-') {
+					return false;
+				}
+			} else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void writeUUID(String uuid) {
+		ensureCapacity(count + 16);
+
+		int b = 0;
+		boolean high = true;
+
+		for (int i = 0; i < UUID_LENGTH; i++) {
+			char c = uuid.charAt(i);
+
+			if (c == '-') {
+				continue;
+			}
+
+			int digit = c <= '9' ? c - '0' : c - 'a' + 10;
+
+			if (high) {
+				b = digit << 4;
+			} else {
+				buffer[count++] = (byte) (b | digit);
+			}
+
+			high = !high;
+		}
+	}
+
+	private static void appendUUID(byte[] row, int[] position, StringBuilder out) {
+		for (int i = 0; i < 16; i++) {
+			if (i == 4 || i == 6 || i == 8 || i == 10) {
+				out.append('-');
+			}
+
+			int b = row[position[0]++] & 0xFF;
+			out.append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xF]);
+		}
+	}
+
+	/**
+	 * Same escaping with JSONObject.
+	 */
+	private static void appendQuoted(String s, StringBuilder out) {
+		out.append('"');
+
+		for (int i = 0, length = s.length(); i < length; i++) {
+			char c = s.charAt(i);
+
+			switch (c) {
+			case '"':
+			case '\\':
+			case '/':
+				out.append('\\').append(c);
+				break;
+			case '\t':
+				out.append("\\t");
+				break;
+			case '\b':
+				out.append("\\b");
+				break;
+			case '\n':
+				out.append("\\n");
+				break;
+			case '\r':
+				out.append("\\r");
+				break;
+			case '\f':
+				out.append("\\f");
+				break;
+			default:
+				if (c <= 0x1F) {
+					out.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+				} else {
+					out.append(c);
+				}
+				break;
+			}
+		}
+
+		out.append('"');
+	}
+
+	private static String toJSONValue(Object value) {
+		if (value instanceof Number) {
+			try {
+				return JSONObject.numberToString((Number) value);
+			} catch (JSONException e) {
+				// NaN and infinite values are not valid JSON numbers.
+				return JSONObject.quote(value.toString());
+			}
+		}
+
+		return value.toString();
+	}
+
+	private void writeString(String s) {
+		byte[] bytes;
+
+		try {
+			bytes = s.getBytes(Constants.UTF8_ENCODING);
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported.
+			throw new IllegalStateException(e);
+		}
+
+		writeVarint(bytes.length);
+		ensureCapacity(count + bytes.length);
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	private static String readString(byte[] row, int[] position) {
+		int length = (int) readVarint(row, position);
+
+		if (length < 0 || position[0] + length > row.length) {
+			throw new IllegalArgumentException("Stored request is truncated.");
+		}
+
+		try {
+			String s = new String(row, position[0], length, Constants.UTF8_ENCODING);
+			position[0] += length;
+			return s;
+		} catch (UnsupportedEncodingException e) {
+			// UTF-8 is always supported.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void writeVarint(long value) {
+		ensureCapacity(count + 10);
+
+		while ((value & ~0x7FL) != 0) {
+			buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		buffer[count++] = (byte) value;
+	}
+
+	private static long readVarint(byte[] row, int[] position) {
+		long value = 0;
+
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = row[position[0]++];
+			value |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IllegalArgumentException("Malformed varint in stored request.");
+	}
+
+	private void writeByte(int b) {
+		ensureCapacity(count + 1);
+		buffer[count++] = (byte) b;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > buffer.length) {
+			byte[] newBuffer = new byte[Math.max(capacity, buffer.length * 2)];
+			System.arraycopy(buffer, 0, newBuffer, 0, count);
+			buffer = newBuffer;
+		}
+	}
+}
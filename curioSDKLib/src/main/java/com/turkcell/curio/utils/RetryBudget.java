@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+/**
+ * Limits total number of retries made by all request paths in an hour, so that a long outage can not keep the device busy with retries.
+ * 
+ * Thread safe, a single instance is shared by all retry schedulers.
+ */
+public class RetryBudget {
+	private static final String TAG = "RetryBudget";
+	private static final long WINDOW_IN_MS = 60 * 60 * 1000;
+
+	private final int maxRetriesPerHour;
+	private long windowStartTime = 0;
+	private int usedRetries = 0;
+
+	public RetryBudget(int maxRetriesPerHour) {
+		this.maxRetriesPerHour = maxRetriesPerHour;
+	}
+
+	/**
+	 * Takes one retry from budget if there is any left in current hour.
+	 * 
+	 * @param now
+	 * @return true if retry is allowed.
+	 */
+	public synchronized boolean tryAcquire(long now) {
+		if (hasRemaining(now)) {
+			usedRetries++;
+			return true;
+		}
+
+		CurioLogger.w(TAG, "Retry budget of " + maxRetriesPerHour + " retries per hour is used up. Retries will wait until " + getNextWindowTime() + ".");
+		return false;
+	}
+
+	/**
+	 * Checks if there is any retry left in current hour, without taking one.
+	 * 
+	 * @param now
+	 * @return
+	 */
+	public synchronized boolean hasRemaining(long now) {
+		if (now - windowStartTime >= WINDOW_IN_MS) {
+			windowStartTime = now;
+			usedRetries = 0;
+		}
+
+		return usedRetries < maxRetriesPerHour;
+	}
+
+	/**
+	 * Gives back a retry which was taken, but not made since its request was not sent.
+	 */
+	public synchronized void release() {
+		if (usedRetries > 0) {
+			usedRetries--;
+		}
+	}
+
+	/**
+	 * Gets time that budget will be renewed.
+	 * 
+	 * @return
+	 */
+	public synchronized long getNextWindowTime() {
+		return windowStartTime + WINDOW_IN_MS;
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Schedules retries of a request path (offline cache dispatch, periodic dispatch) after failures.
+ * 
+ * Delay between retries grows exponentially with each consecutive failure up to a max. delay, and is randomized (jitter) so that
+ * many devices failing at the same time do not retry at the same time. A Retry-After value sent by server is never undercut.
+ * Each retry also needs a slot from shared retry budget.
+ */
+public class RetryScheduler {
+	private static final String TAG = "RetryScheduler";
+
+	/**
+	 * HTTP status codes which are not server errors, but mean the same request can succeed later.
+	 */
+	private static final int HTTP_STATUS_REQUEST_TIMEOUT = 408;
+	private static final int HTTP_STATUS_TOO_MANY_REQUESTS = 429;
+	private static final int HTTP_STATUS_SERVER_ERROR_START = 500;
+	private static final int HTTP_STATUS_SERVER_ERROR_END = 599;
+
+	private static final int MAX_BACKOFF_EXPONENT = 20;
+	private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+	private final String name;
+	private final long baseDelay;
+	private final long maxDelay;
+	private final RetryBudget budget;
+	private final Random random = new Random();
+
+	private int failureCount = 0;
+	private long nextAttemptTime = 0;
+	private boolean holdsRetry = false;
+
+	/**
+	 * @param name of request path, for logging.
+	 * @param baseDelay delay after first failure in milliseconds.
+	 * @param maxDelay max. delay in milliseconds.
+	 * @param budget shared retry budget.
+	 */
+	public RetryScheduler(String name, long baseDelay, long maxDelay, RetryBudget budget) {
+		this.name = name;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.budget = budget;
+	}
+
+	/**
+	 * Checks if request path can make an attempt now. Retry budget is only checked here, a retry slot is taken by {@link #acquireAttempt(long)}
+	 * when a request is actually about to be sent. If budget is used up, next attempt is postponed until budget is renewed.
+	 * 
+	 * @param now
+	 * @return
+	 */
+	public synchronized boolean isReady(long now) {
+		if (failureCount == 0) {
+			return true;
+		}
+
+		if (now < nextAttemptTime) {
+			return false;
+		}
+
+		if (!budget.hasRemaining(now)) {
+			nextAttemptTime = budget.getNextWindowTime();
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Should be called right before a request of this path is sent. If last attempt failed, this is a retry and it takes a slot from retry budget.
+	 * 
+	 * @param now
+	 * @return false if retry budget is used up and request should not be sent.
+	 */
+	public synchronized boolean acquireAttempt(long now) {
+		holdsRetry = false;
+
+		if (failureCount == 0) {
+			return true;
+		}
+
+		if (!budget.tryAcquire(now)) {
+			nextAttemptTime = budget.getNextWindowTime();
+			return false;
+		}
+
+		holdsRetry = true;
+		return true;
+	}
+
+	/**
+	 * Should be called if request was not sent after {@link #acquireAttempt(long)}, e.g. circuit breaker did not let it out. Retry slot taken for it is given back.
+	 */
+	public synchronized void onAttemptNotSent() {
+		if (holdsRetry) {
+			holdsRetry = false;
+			budget.release();
+		}
+	}
+
+	/**
+	 * Gets time of next scheduled retry.
+	 * 
+	 * @return retry time, or 0 if there is no failure waiting for retry.
+	 */
+	public synchronized long getNextAttemptTime() {
+		return failureCount == 0 ? 0 : nextAttemptTime;
+	}
+
+	/**
+	 * Resets backoff after a successful attempt.
+	 */
+	public synchronized void onSuccess() {
+		holdsRetry = false;
+		failureCount = 0;
+		nextAttemptTime = 0;
+	}
+
+	/**
+	 * Schedules next retry after a failed attempt.
+	 * 
+	 * @param retryAfter delay requested by server in milliseconds, or 0 if none.
+	 * @return scheduled retry time.
+	 */
+	public synchronized long onFailure(long retryAfter) {
+		holdsRetry = false;
+		failureCount++;
+
+		/**
+		 * Equal jitter: half of the exponential delay is fixed, the other half is random.
+		 */
+		long exponentialDelay = Math.min(maxDelay, baseDelay << Math.min(failureCount - 1, MAX_BACKOFF_EXPONENT));
+		long delay = exponentialDelay / 2 + (long) (random.nextDouble() * (exponentialDelay / 2));
+
+		delay = Math.max(delay, retryAfter);
+		nextAttemptTime = System.currentTimeMillis() + delay;
+
+		CurioLogger.d(TAG, name + " failed " + failureCount + " time(s) in a row. Will retry in " + delay + " ms.");
+		return nextAttemptTime;
+	}
+
+	/**
+	 * Checks if given HTTP status code is a temporary failure (server error, timeout or throttling) which is worth retrying with the same request.
+	 * Other client errors mean the request itself is not accepted.
+	 * 
+	 * @param statusCode
+	 * @return
+	 */
+	public static boolean isRetryableStatus(int statusCode) {
+		return statusCode == HTTP_STATUS_REQUEST_TIMEOUT || statusCode == HTTP_STATUS_TOO_MANY_REQUESTS
+				|| (statusCode >= HTTP_STATUS_SERVER_ERROR_START && statusCode <= HTTP_STATUS_SERVER_ERROR_END);
+	}
+
+	/**
+	 * Parses value of Retry-After header, which is either delay in seconds or an HTTP date.
+	 * 
+	 * @param value header value, may be null.
+	 * @return delay in milliseconds, or 0 if value is missing or invalid.
+	 */
+	public static long parseRetryAfter(String value) {
+		if (value == null || value.trim().length() == 0) {
+			return 0;
+		}
+
+		value = value.trim();
+
+		try {
+			return Math.max(0, Long.parseLong(value) * 1000);
+		} catch (NumberFormatException e) {
+			// Not in seconds, try HTTP date.
+		}
+
+		SimpleDateFormat dateFormat = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+		dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+		try {
+			Date date = dateFormat.parse(value);
+			return Math.max(0, date.getTime() - System.currentTimeMillis());
+		} catch (ParseException e) {
+			CurioLogger.w(TAG, "Invalid Retry-After header: " + value);
+			return 0;
+		}
+	}
+}
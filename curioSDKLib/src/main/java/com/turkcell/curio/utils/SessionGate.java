@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+/**
+ * Tells whether requests of current session can be sent. Screen and event requests of a new session are held until server accepts its session start,
+ * but never longer than given timeout. A session start for a session code which server already accepted does not hold any request.
+ * 
+ * Thread safe.
+ */
+public class SessionGate {
+	private final long timeout;
+	private String establishedSessionCode;
+	private String pendingSessionCode;
+	private long pendingSince;
+
+	/**
+	 * @param timeout max. time in milliseconds requests are held for a session start.
+	 */
+	public SessionGate(long timeout) {
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Called when a session start request for given session code is queued.
+	 * 
+	 * @param sessionCode
+	 */
+	public synchronized void onSessionStartQueued(String sessionCode) {
+		if (sessionCode == null || sessionCode.equals(establishedSessionCode)) {
+			return;
+		}
+
+		pendingSessionCode = sessionCode;
+		pendingSince = System.currentTimeMillis();
+	}
+
+	/**
+	 * Called when a session start request is completed, whether server accepted it or not.
+	 * 
+	 * @param sessionCode
+	 * @param isSuccessful true if server accepted session start.
+	 */
+	public synchronized void onSessionStartCompleted(String sessionCode, boolean isSuccessful) {
+		if (isSuccessful) {
+			establishedSessionCode = sessionCode;
+		}
+
+		if (sessionCode == null || sessionCode.equals(pendingSessionCode)) {
+			pendingSessionCode = null;
+		}
+	}
+
+	/**
+	 * @return true if no session start is being waited for.
+	 */
+	public synchronized boolean isOpen() {
+		return pendingSessionCode == null;
+	}
+
+	/**
+	 * Opens gate if session start is waited for longer than timeout.
+	 * 
+	 * @return true if gate is opened by this call.
+	 */
+	public synchronized boolean openIfTimedOut() {
+		if (pendingSessionCode == null || System.currentTimeMillis() - pendingSince < timeout) {
+			return false;
+		}
+
+		pendingSessionCode = null;
+		return true;
+	}
+
+	/**
+	 * @return time gate will be opened at if session start does not complete, 0 if gate is open.
+	 */
+	public synchronized long getDeadline() {
+		return pendingSessionCode != null ? pendingSince + timeout : 0;
+	}
+}
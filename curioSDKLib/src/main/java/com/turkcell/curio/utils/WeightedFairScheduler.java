@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+/**
+ * Decides which online request queue sends next, so that a busy higher priority queue can not starve lower priority queues.
+ * 
+ * Smooth weighted round robin is used: each queue with a request waiting gets a share of dispatch slots in proportion to its weight.
+ * Weight of a queue grows (aging) while its head request waits, one point for each aging interval, up to the sum of all weights.
+ * Queue wait times (time between a request is created and it is handed over to a dispatcher) are collected per priority.
+ * 
+ * Scheduling methods are called only by request processor thread; metrics can be read from any thread.
+ */
+public class WeightedFairScheduler {
+	private static final String TAG = "WeightedFairScheduler";
+	private static final int METRICS_LOG_INTERVAL = 100;
+
+	private final int[] weights;
+	private final long agingInterval;
+	private final int maxWeight;
+
+	private final long[] credits;
+	private final long[] effectiveWeights;
+
+	private final long[] dispatchCounts;
+	private final long[] totalWaitTimes;
+	private final long[] maxWaitTimes;
+	private long totalDispatchCount = 0;
+
+	/**
+	 * @param weights weight of each queue, indexed by priority. Queues with weight 0 are not scheduled.
+	 * @param agingInterval wait time in milliseconds that adds one point to weight of a queue, 0 disables aging.
+	 */
+	public WeightedFairScheduler(int[] weights, long agingInterval) {
+		this.weights = weights.clone();
+		this.agingInterval = agingInterval;
+
+		int sum = 0;
+
+		for (int weight : weights) {
+			sum += weight;
+		}
+
+		this.maxWeight = sum;
+		this.credits = new long[weights.length];
+		this.effectiveWeights = new long[weights.length];
+		this.dispatchCounts = new long[weights.length];
+		this.totalWaitTimes = new long[weights.length];
+		this.maxWaitTimes = new long[weights.length];
+	}
+
+	/**
+	 * Selects the queue which should send next. Does not change scheduler state, so a selected queue which can not send now
+	 * (its head waits for an in flight request) can be excluded and selection repeated.
+	 * 
+	 * @param headTimestamps creation time of head request of each queue, indexed by priority. 0 if queue has nothing to send now.
+	 * @param now
+	 * @return selected priority, or -1 if no queue has anything to send.
+	 */
+	public int select(long[] headTimestamps, long now) {
+		int selected = -1;
+		long selectedCredit = Long.MIN_VALUE;
+
+		for (int priority = 0; priority < weights.length; priority++) {
+			if (headTimestamps[priority] <= 0 || weights[priority] <= 0) {
+				effectiveWeights[priority] = 0;
+				continue;
+			}
+
+			long effectiveWeight = weights[priority];
+
+			if (agingInterval > 0) {
+				effectiveWeight = Math.min(maxWeight, effectiveWeight + Math.max(0, now - headTimestamps[priority]) / agingInterval);
+			}
+
+			effectiveWeights[priority] = effectiveWeight;
+
+			// Ties go to higher priority (lower number).
+			if (credits[priority] + effectiveWeight > selectedCredit) {
+				selected = priority;
+				selectedCredit = credits[priority] + effectiveWeight;
+			}
+		}
+
+		return selected;
+	}
+
+	/**
+	 * Updates credits after head request of selected queue is handed over to a dispatcher, and records its queue wait time.
+	 * Must be called with the same head timestamps given to last select call.
+	 * 
+	 * @param priority selected priority.
+	 * @param headTimestamps
+	 * @param now
+	 */
+	public void onDispatched(int priority, long[] headTimestamps, long now) {
+		long totalWeight = 0;
+
+		for (int i = 0; i < weights.length; i++) {
+			if (effectiveWeights[i] > 0) {
+				credits[i] += effectiveWeights[i];
+				totalWeight += effectiveWeights[i];
+			} else {
+				/**
+				 * A queue which has nothing to send does not collect credits, otherwise it would take a burst of slots when it has requests again.
+				 */
+				credits[i] = 0;
+			}
+		}
+
+		credits[priority] -= totalWeight;
+		recordDispatch(priority, now - headTimestamps[priority]);
+	}
+
+	/**
+	 * Records queue wait time of a request which is sent without a selection (first priority requests, online batches).
+	 * 
+	 * @param priority
+	 * @param waitTime in milliseconds.
+	 */
+	public synchronized void recordDispatch(int priority, long waitTime) {
+		waitTime = Math.max(0, waitTime);
+
+		dispatchCounts[priority]++;
+		totalWaitTimes[priority] += waitTime;
+		maxWaitTimes[priority] = Math.max(maxWaitTimes[priority], waitTime);
+
+		if (++totalDispatchCount % METRICS_LOG_INTERVAL == 0) {
+			CurioLogger.d(TAG, getWaitTimeSummary());
+		}
+	}
+
+	/**
+	 * Gets number of requests of given priority handed over to dispatchers.
+	 * 
+	 * @param priority
+	 * @return
+	 */
+	public synchronized long getDispatchCount(int priority) {
+		return dispatchCounts[priority];
+	}
+
+	/**
+	 * Gets average queue wait time of given priority.
+	 * 
+	 * @param priority
+	 * @return in milliseconds.
+	 */
+	public synchronized long getAverageWaitTime(int priority) {
+		return dispatchCounts[priority] == 0 ? 0 : totalWaitTimes[priority] / dispatchCounts[priority];
+	}
+
+	/**
+	 * Gets max. queue wait time of given priority.
+	 * 
+	 * @param priority
+	 * @return in milliseconds.
+	 */
+	public synchronized long getMaxWaitTime(int priority) {
+		return maxWaitTimes[priority];
+	}
+
+	/**
+	 * Gets queue wait metrics of all priorities as text, for logging.
+	 * 
+	 * @return
+	 */
+	public synchronized String getWaitTimeSummary() {
+		StringBuilder summary = new StringBuilder("Queue wait times:");
+
+		for (int priority = 0; priority < weights.length; priority++) {
+			if (dispatchCounts[priority] > 0) {
+				summary.append(" priority ").append(priority).append(" [count: ").append(dispatchCounts[priority]).append(", avg: ")
+						.append(getAverageWaitTime(priority)).append(" ms, max: ").append(maxWaitTimes[priority]).append(" ms]");
+			}
+		}
+
+		return summary.toString();
+	}
+}
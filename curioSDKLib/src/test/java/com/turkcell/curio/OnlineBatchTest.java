@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.Test;
+
+import com.turkcell.curio.utils.Constants;
+
+/**
+ * Checks when screen and event requests are sent as online batches, and how batch response is passed to their callbacks.
+ */
+public class OnlineBatchTest extends ProcessorTestCase {
+	private static final int MAX_DELAY = 300;
+
+	private volatile String batchResponse;
+
+	@Override
+	StubTransport createTransport() {
+		return new StubTransport() {
+			@Override
+			protected String getResponseBody(SentRequest request) {
+				return batchResponse;
+			}
+		};
+	}
+
+	private void createBatchingProcessor(int batchSize) {
+		params.put(Constants.CONFIG_PARAM_ONLINE_BATCHING_ENABLED, true);
+		params.put(Constants.CONFIG_PARAM_ONLINE_BATCH_SIZE, batchSize);
+		params.put(Constants.CONFIG_PARAM_ONLINE_BATCH_MAX_DELAY, MAX_DELAY);
+		createProcessor();
+	}
+
+	@Test
+	public void fullBatchIsSentAtOnce() throws Exception {
+		createBatchingProcessor(3);
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h2", null, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SEND_EVENT, "e1", null, CurioRequestProcessor.THIRD_PRIORITY);
+
+		processor.processOnlineQueues();
+		assertTrue(transport.awaitRequests(1, 5000));
+		processFor(50);
+
+		assertEquals(1, transport.getRequestCount());
+		assertTrue(transport.getRequest(0).getUrl().endsWith(Constants.SERVER_URL_SUFFIX_PERIODIC_BATCH));
+		assertEquals(Arrays.asList("h1", "h2", "e1"), getCodes(transport.getRequest(0).getBatchItems()));
+	}
+
+	@Test
+	public void partialBatchIsSentAfterMaxDelay() throws Exception {
+		createBatchingProcessor(3);
+		long pushTime = System.currentTimeMillis();
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+
+		processFor(MAX_DELAY / 2);
+		assertEquals(0, transport.getRequestCount());
+
+		processUntilSent(1);
+		assertTrue(System.currentTimeMillis() - pushTime >= MAX_DELAY);
+		assertEquals(Arrays.asList("h1"), getCodes(transport.getRequest(0).getBatchItems()));
+	}
+
+	@Test
+	public void itemResultsArePassedToTheirCallbacks() throws Exception {
+		createBatchingProcessor(2);
+		batchResponse = "{\"data\":[{\"hitCode\":\"server-h1\"},{\"eventCode\":\"server-e1\"}]}";
+		ResultRecorder screenCallback = new ResultRecorder();
+		ResultRecorder eventCallback = new ResultRecorder();
+
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", screenCallback, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SEND_EVENT, "e1", eventCallback, CurioRequestProcessor.THIRD_PRIORITY);
+		processUntilSent(1);
+
+		screenCallback.await(1);
+		eventCallback.await(1);
+		assertEquals(Arrays.asList(200), screenCallback.statusCodes);
+		assertEquals("server-h1", screenCallback.results.get(0).getString(Constants.JSON_NODE_HIT_CODE));
+		assertEquals(Arrays.asList(200), eventCallback.statusCodes);
+		assertEquals("server-e1", eventCallback.results.get(0).getString(Constants.JSON_NODE_EVENT_CODE));
+	}
+
+	@Test
+	public void callbacksGetTheirOwnCodesIfResultsDoNotMatchBatch() throws Exception {
+		createBatchingProcessor(2);
+		batchResponse = "{\"data\":[{\"hitCode\":\"server-h1\"}]}";
+		ResultRecorder screenCallback = new ResultRecorder();
+		ResultRecorder eventCallback = new ResultRecorder();
+
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", screenCallback, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SEND_EVENT, "e1", eventCallback, CurioRequestProcessor.THIRD_PRIORITY);
+		processUntilSent(1);
+
+		screenCallback.await(1);
+		eventCallback.await(1);
+		assertEquals("h1", screenCallback.results.get(0).getString(Constants.JSON_NODE_HIT_CODE));
+		assertEquals("e1", eventCallback.results.get(0).getString(Constants.JSON_NODE_EVENT_CODE));
+	}
+
+	/**
+	 * Gets hit or event code of each request in batch.
+	 */
+	private static List<String> getCodes(JSONArray items) throws JSONException {
+		List<String> codes = new ArrayList<String>();
+
+		for (int i = 0; i < items.length(); i++) {
+			String hitCode = items.getJSONObject(i).optString(Constants.HTTP_PARAM_HIT_CODE, null);
+			codes.add(hitCode != null ? hitCode : items.getJSONObject(i).getString(Constants.HTTP_PARAM_EVENT_CODE));
+		}
+		return codes;
+	}
+}
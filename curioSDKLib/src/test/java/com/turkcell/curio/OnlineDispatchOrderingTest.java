@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.turkcell.curio.utils.Constants;
+
+/**
+ * Checks ordering rules of concurrent online dispatch. Held requests stay in flight on stub transport until released.
+ */
+public class OnlineDispatchOrderingTest extends ProcessorTestCase {
+	private static final String SESSION_START = Constants.SERVER_URL_SUFFIX_SESSION_START;
+	private static final String SESSION_END = Constants.SERVER_URL_SUFFIX_SESSION_END;
+
+	@Before
+	public void setUp() {
+		params.put(Constants.CONFIG_PARAM_MAX_CONCURRENT_REQUESTS, 4);
+		createProcessor();
+	}
+
+	@Test
+	public void sessionStartIsSentBeforeEverything() throws InterruptedException {
+		transport.hold(SESSION_START);
+		pushSessionStart();
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SEND_EVENT, "e1", null, CurioRequestProcessor.THIRD_PRIORITY);
+
+		processUntilSent(1);
+		processFor(100);
+		assertEquals(Arrays.asList(SESSION_START), transport.getKeys());
+
+		transport.release(SESSION_START);
+		processUntilSent(3);
+
+		assertEquals(SESSION_START, transport.getKeys().get(0));
+		assertEquals(new HashSet<String>(Arrays.asList("h1", "e1")), new HashSet<String>(transport.getKeys().subList(1, 3)));
+	}
+
+	@Test
+	public void screenEndWaitsForItsScreenStart() throws InterruptedException {
+		transport.hold("h1");
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_END, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SEND_EVENT, "e1", null, CurioRequestProcessor.THIRD_PRIORITY);
+
+		/**
+		 * Event of another screen is not held back by the screen end waiting for its screen start.
+		 */
+		processUntilSent(2);
+		processFor(100);
+		assertEquals(2, transport.getRequestCount());
+		assertEquals(new HashSet<String>(Arrays.asList("h1", "e1")), new HashSet<String>(transport.getKeys()));
+		assertTrue(transport.getRequest(transport.getKeys().indexOf("h1")).getUrl().endsWith(Constants.SERVER_URL_SUFFIX_SCREEN_START));
+
+		transport.release("h1");
+		processUntilSent(3);
+
+		assertEquals("h1", transport.getKeys().get(2));
+		assertTrue(transport.getRequest(2).getUrl().endsWith(Constants.SERVER_URL_SUFFIX_SCREEN_END));
+	}
+
+	@Test
+	public void sessionEndIsABarrier() throws InterruptedException {
+		transport.hold("h1");
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+		processUntilSent(1);
+
+		transport.hold(SESSION_END);
+		push(SESSION_END, null, null, CurioRequestProcessor.FIRST_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SEND_EVENT, "e1", null, CurioRequestProcessor.THIRD_PRIORITY);
+
+		/**
+		 * Session end waits for the screen start in flight, and the event waits for session end.
+		 */
+		processFor(100);
+		assertEquals(Arrays.asList("h1"), transport.getKeys());
+
+		transport.release("h1");
+		processUntilSent(2);
+		processFor(100);
+		assertEquals(Arrays.asList("h1", SESSION_END), transport.getKeys());
+
+		transport.release(SESSION_END);
+		processUntilSent(3);
+		assertEquals(Arrays.asList("h1", SESSION_END, "e1"), transport.getKeys());
+	}
+
+	@Test
+	public void inFlightRequestsAreBounded() throws InterruptedException {
+		for (int i = 1; i <= 6; i++) {
+			transport.hold("h" + i);
+			push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h" + i, null, CurioRequestProcessor.SECOND_PRIORITY);
+		}
+
+		processUntilSent(4);
+		processFor(100);
+		assertEquals(4, transport.getRequestCount());
+		assertEquals(4, transport.getInFlightCount());
+
+		transport.releaseAll();
+		processUntilSent(6);
+		assertEquals(new HashSet<String>(Arrays.asList("h1", "h2", "h3", "h4", "h5", "h6")), new HashSet<String>(transport.getKeys()));
+	}
+}
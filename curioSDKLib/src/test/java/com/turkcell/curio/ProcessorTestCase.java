@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+
+import android.content.ContextWrapper;
+
+import com.turkcell.curio.model.OfflineRequest;
+import com.turkcell.curio.model.OnlineRequest;
+import com.turkcell.curio.utils.CircuitBreaker;
+import com.turkcell.curio.utils.Constants;
+import com.turkcell.curio.utils.CurioClientSettings;
+import com.turkcell.curio.utils.ParameterLoader;
+
+/**
+ * Base of tests which run online queues of a request processor against a stub transport. Processor thread is not started,
+ * tests call processOnlineQueues themselves, while requests are sent by processor's own dispatcher threads.
+ */
+public abstract class ProcessorTestCase {
+	static final String SERVER_URL = "http://curio.test/api";
+	private static final long TIMEOUT = 5000;
+
+	StubTransport transport;
+	StubClient client;
+	StubParameters params;
+	CurioRequestProcessor processor;
+
+	@Before
+	public void setUpProcessor() {
+		CurioRequestProcessor.getFirstPriorityQueue().clear();
+		CurioRequestProcessor.getSecondPriorityQueue().clear();
+		CurioRequestProcessor.getThirdPriorityQueue().clear();
+
+		transport = createTransport();
+		client = new StubClient();
+		params = new StubParameters();
+		params.put(Constants.CONFIG_PARAM_SERVER_URL, SERVER_URL);
+		params.put(Constants.CONFIG_PARAM_LOGGING_ENABLED, false);
+		params.put(Constants.CONFIG_PARAM_COMPRESSION_THRESHOLD, 0);
+	}
+
+	@After
+	public void releaseRequests() {
+		transport.releaseAll();
+	}
+
+	/**
+	 * Creates transport of test, called before each test.
+	 */
+	StubTransport createTransport() {
+		return new StubTransport();
+	}
+
+	/**
+	 * Creates processor with parameters set so far.
+	 */
+	CurioRequestProcessor createProcessor() {
+		processor = new CurioRequestProcessor(client, new CurioClientSettings(params), transport, transport, new CircuitBreaker(Integer.MAX_VALUE, 1000, 1000));
+		return processor;
+	}
+
+	/**
+	 * Pushes a screen or event request with given hit or event code and client's current session code, as client does.
+	 */
+	OnlineRequest push(String suffix, String code, ICurioResultListener callback, int priority) {
+		Map<String, Object> requestParams = new HashMap<String, Object>();
+		requestParams.put(Constants.HTTP_PARAM_SESSION_CODE, client.getSessionCode(false));
+
+		if (code != null) {
+			boolean isEvent = suffix.equals(Constants.SERVER_URL_SUFFIX_SEND_EVENT) || suffix.equals(Constants.SERVER_URL_SUFFIX_EVENT_END);
+			requestParams.put(isEvent ? Constants.HTTP_PARAM_EVENT_CODE : Constants.HTTP_PARAM_HIT_CODE, code);
+		}
+
+		OnlineRequest onlineRequest = new OnlineRequest(SERVER_URL + suffix, requestParams, callback, priority);
+		CurioRequestProcessor.pushToOnlineQueue(onlineRequest);
+		return onlineRequest;
+	}
+
+	/**
+	 * Pushes a session start with client's session code, as client does when it starts a session.
+	 */
+	void pushSessionStart() {
+		String sessionCode = client.getSessionCode(false);
+		Map<String, Object> requestParams = new HashMap<String, Object>();
+		requestParams.put(Constants.HTTP_PARAM_SESSION_CODE, sessionCode);
+
+		processor.onSessionStartQueued(sessionCode);
+		CurioRequestProcessor.pushToOnlineQueue(new OnlineRequest(SERVER_URL + Constants.SERVER_URL_SUFFIX_SESSION_START, requestParams, null, CurioRequestProcessor.FIRST_PRIORITY));
+	}
+
+	/**
+	 * Processes online queues until given number of requests are sent in total.
+	 */
+	void processUntilSent(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+
+		while (transport.getRequestCount() < count) {
+			if (System.currentTimeMillis() > deadline) {
+				fail("Only " + transport.getRequestCount() + " of " + count + " requests are sent: " + transport.getKeys());
+			}
+
+			processor.processOnlineQueues();
+			Thread.sleep(5);
+		}
+	}
+
+	/**
+	 * Processes online queues repeatedly for given time.
+	 */
+	void processFor(long time) throws InterruptedException {
+		long end = System.currentTimeMillis() + time;
+
+		while (System.currentTimeMillis() < end) {
+			processor.processOnlineQueues();
+			Thread.sleep(5);
+		}
+	}
+
+	/**
+	 * Waits until dispatcher threads are done with all sent requests, processing queues meanwhile.
+	 */
+	void processUntilIdle() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT;
+
+		while (transport.getInFlightCount() > 0) {
+			if (System.currentTimeMillis() > deadline) {
+				fail(transport.getInFlightCount() + " requests are still in flight.");
+			}
+
+			processor.processOnlineQueues();
+			Thread.sleep(5);
+		}
+
+		processFor(20);
+	}
+
+	/**
+	 * Client which is created without Android, stores offline requests in memory and renews session by pushing a session start to online queue.
+	 */
+	class StubClient extends CurioClient {
+		final List<OfflineRequest> offlineRequests = new ArrayList<OfflineRequest>();
+		int renewCount;
+
+		StubClient() {
+			super(new ContextWrapper(null), "tracking", "visitor", 30);
+		}
+
+		@Override
+		protected synchronized void addRequestToOfflineCache(OfflineRequest offlineRequest) {
+			offlineRequests.add(offlineRequest);
+		}
+
+		synchronized List<String> getOfflineKeys() {
+			List<String> keys = new ArrayList<String>();
+
+			for (OfflineRequest offlineRequest : offlineRequests) {
+				Object code = offlineRequest.getParams().get(Constants.HTTP_PARAM_HIT_CODE);
+				keys.add(code != null ? code.toString() : String.valueOf(offlineRequest.getParams().get(Constants.HTTP_PARAM_EVENT_CODE)));
+			}
+			return keys;
+		}
+
+		@Override
+		protected boolean renewSession() {
+			synchronized (this) {
+				renewCount++;
+			}
+
+			getSessionCode(true);
+			pushSessionStart();
+			return true;
+		}
+	}
+
+	/**
+	 * Parameters set by test instead of read from resources.
+	 */
+	static class StubParameters extends ParameterLoader {
+		private final Map<String, Object> values = new HashMap<String, Object>();
+
+		StubParameters() {
+			super(new ContextWrapper(null));
+		}
+
+		void put(String key, Object value) {
+			values.put(key, value);
+		}
+
+		@Override
+		public String getString(String key, String defaultValue) {
+			return values.containsKey(key) ? (String) values.get(key) : defaultValue;
+		}
+
+		@Override
+		public boolean getBoolean(String key, boolean defaultValue) {
+			return values.containsKey(key) ? (Boolean) values.get(key) : defaultValue;
+		}
+
+		@Override
+		public int getInteger(String key, int defaultValue) {
+			return values.containsKey(key) ? (Integer) values.get(key) : defaultValue;
+		}
+	}
+
+	/**
+	 * Callback which records status codes and results it gets.
+	 */
+	static class ResultRecorder implements ICurioResultListener {
+		final List<Integer> statusCodes = new ArrayList<Integer>();
+		final List<JSONObject> results = new ArrayList<JSONObject>();
+
+		@Override
+		public synchronized void handleResult(int statusCode, JSONObject result) {
+			statusCodes.add(statusCode);
+			results.add(result);
+			notifyAll();
+		}
+
+		/**
+		 * Waits until callback is called given number of times.
+		 */
+		synchronized void await(int count) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + TIMEOUT;
+
+			while (statusCodes.size() < count) {
+				long remaining = deadline - System.currentTimeMillis();
+
+				if (remaining <= 0) {
+					fail("Callback is called " + statusCodes.size() + " times instead of " + count + ".");
+				}
+				wait(remaining);
+			}
+		}
+	}
+}
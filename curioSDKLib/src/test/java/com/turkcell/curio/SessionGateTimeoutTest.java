@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import com.turkcell.curio.model.OnlineRequest;
+import com.turkcell.curio.utils.Constants;
+
+/**
+ * Checks which requests held for a session start are stored to offline cache when session start times out, and that the others are
+ * still sent online with their callbacks.
+ */
+public class SessionGateTimeoutTest extends ProcessorTestCase {
+	private static final int SESSION_START_TIMEOUT = 200;
+	private static final String SESSION_START = Constants.SERVER_URL_SUFFIX_SESSION_START;
+
+	private void startHeldSession() throws InterruptedException {
+		params.put(Constants.CONFIG_PARAM_SESSION_START_TIMEOUT, SESSION_START_TIMEOUT);
+		createProcessor();
+
+		transport.hold(SESSION_START);
+		pushSessionStart();
+		processUntilSent(1);
+	}
+
+	@Test
+	public void onlyRequestsWithoutCallbacksAreStored() throws InterruptedException {
+		startHeldSession();
+
+		ResultRecorder eventEndCallback = new ResultRecorder();
+		ResultRecorder userTagsCallback = new ResultRecorder();
+
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_END, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SEND_EVENT, "e1", null, CurioRequestProcessor.THIRD_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_EVENT_END, "e1", eventEndCallback, CurioRequestProcessor.THIRD_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_GET_USER_TAGS, null, userTagsCallback, CurioRequestProcessor.THIRD_PRIORITY);
+
+		processFor(SESSION_START_TIMEOUT + 100);
+
+		/**
+		 * Event start stays with its event end, whose callback needs an online response.
+		 */
+		assertEquals(Arrays.asList("h1", "h1"), client.getOfflineKeys());
+		assertTrue(CurioRequestProcessor.getSecondPriorityQueue().isEmpty());
+		assertEquals(3, CurioRequestProcessor.getThirdPriorityQueue().size());
+
+		transport.release(SESSION_START);
+		processUntilSent(4);
+		eventEndCallback.await(1);
+		userTagsCallback.await(1);
+
+		/**
+		 * Event end waits for its event start, get user tags is sent independently of them.
+		 */
+		assertEquals(SESSION_START, transport.getKeys().get(0));
+		assertEquals(new HashSet<String>(Arrays.asList("e1", Constants.SERVER_URL_SUFFIX_GET_USER_TAGS)), new HashSet<String>(transport.getKeys().subList(1, 4)));
+		assertTrue(transport.getRequest(transport.getKeys().indexOf("e1")).getUrl().endsWith(Constants.SERVER_URL_SUFFIX_SEND_EVENT));
+		assertEquals(Arrays.asList(200), eventEndCallback.statusCodes);
+		assertEquals(Arrays.asList(200), userTagsCallback.statusCodes);
+		assertEquals(2, client.offlineRequests.size());
+	}
+
+	@Test
+	public void nothingIsStoredWhileQueueHasSpilledRequests() throws InterruptedException {
+		params.put(Constants.CONFIG_PARAM_ONLINE_QUEUE_CAPACITY, 1);
+		startHeldSession();
+
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+		OnlineRequest spilledRequest = push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h2", null, CurioRequestProcessor.SECOND_PRIORITY);
+
+		try {
+			/**
+			 * Queues are processed only once after timeout, since a later call would refill queue from online overflow table.
+			 */
+			Thread.sleep(SESSION_START_TIMEOUT + 50);
+			processor.processOnlineQueues();
+
+			assertTrue(client.offlineRequests.isEmpty());
+			assertEquals(1, CurioRequestProcessor.getSecondPriorityQueue().size());
+		} finally {
+			CurioRequestProcessor.onOverflowRequestLost(spilledRequest);
+		}
+	}
+}
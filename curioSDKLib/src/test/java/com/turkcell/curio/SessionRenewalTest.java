@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.turkcell.curio.utils.Constants;
+
+/**
+ * Checks that online batches rejected with 401 are replayed once in a renewed session. Stub server accepts only requests of
+ * the session it started last, and rejects batches having a request of any other session.
+ */
+public class SessionRenewalTest extends ProcessorTestCase {
+	private static final String BATCH = Constants.SERVER_URL_SUFFIX_PERIODIC_BATCH;
+	private static final String SESSION_START = Constants.SERVER_URL_SUFFIX_SESSION_START;
+
+	private volatile String acceptedSessionCode;
+	private volatile boolean renewOnFirstRejection;
+
+	@Override
+	StubTransport createTransport() {
+		return new StubTransport() {
+			@Override
+			protected int getStatusCode(SentRequest request) {
+				if (request.getUrl().endsWith(SESSION_START)) {
+					acceptedSessionCode = request.getParam(Constants.HTTP_PARAM_SESSION_CODE);
+					return 200;
+				}
+
+				try {
+					if (isAccepted(request.getBatchItems())) {
+						return 200;
+					}
+				} catch (JSONException e) {
+					throw new IllegalStateException(e);
+				}
+
+				/**
+				 * Session may also be renewed by the app, while the batch was in flight.
+				 */
+				if (renewOnFirstRejection) {
+					renewOnFirstRejection = false;
+					acceptedSessionCode = client.getSessionCode(true);
+				}
+				return 401;
+			}
+		};
+	}
+
+	@Before
+	public void setUp() {
+		params.put(Constants.CONFIG_PARAM_ONLINE_BATCHING_ENABLED, true);
+		params.put(Constants.CONFIG_PARAM_ONLINE_BATCH_SIZE, 2);
+		createProcessor();
+	}
+
+	@Test
+	public void parkedBatchIsReplayedOnceInRenewedSession() throws Exception {
+		String timedOutSessionCode = client.getSessionCode(false);
+		ResultRecorder screenCallback = new ResultRecorder();
+		ResultRecorder eventCallback = new ResultRecorder();
+
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", screenCallback, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SEND_EVENT, "e1", eventCallback, CurioRequestProcessor.THIRD_PRIORITY);
+
+		processUntilSent(3);
+		screenCallback.await(1);
+		eventCallback.await(1);
+		processUntilIdle();
+
+		assertEquals(Arrays.asList(BATCH, SESSION_START, BATCH), transport.getKeys());
+		assertFalse(timedOutSessionCode.equals(acceptedSessionCode));
+		assertEquals(acceptedSessionCode, client.getSessionCode(false));
+		assertTrue(isAccepted(transport.getRequest(2).getBatchItems()));
+		assertEquals(1, client.renewCount);
+		assertEquals(Arrays.asList(200), screenCallback.statusCodes);
+		assertEquals(Arrays.asList(200), eventCallback.statusCodes);
+		assertTrue(client.offlineRequests.isEmpty());
+	}
+
+	@Test
+	public void batchIsReplayedWithoutRenewalIfSessionIsAlreadyRenewed() throws Exception {
+		renewOnFirstRejection = true;
+		ResultRecorder screenCallback = new ResultRecorder();
+
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_START, "h1", screenCallback, CurioRequestProcessor.SECOND_PRIORITY);
+		push(Constants.SERVER_URL_SUFFIX_SCREEN_END, "h1", null, CurioRequestProcessor.SECOND_PRIORITY);
+
+		processUntilSent(2);
+		screenCallback.await(1);
+		processUntilIdle();
+
+		assertEquals(Arrays.asList(BATCH, BATCH), transport.getKeys());
+		assertTrue(isAccepted(transport.getRequest(1).getBatchItems()));
+		assertEquals(0, client.renewCount);
+		assertEquals(Arrays.asList(200), screenCallback.statusCodes);
+		assertTrue(client.offlineRequests.isEmpty());
+	}
+
+	private boolean isAccepted(JSONArray items) throws JSONException {
+		for (int i = 0; i < items.length(); i++) {
+			if (!items.getJSONObject(i).getString(Constants.HTTP_PARAM_SESSION_CODE).equals(acceptedSessionCode)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import com.turkcell.curio.transport.CurioHttpResponse;
+import com.turkcell.curio.transport.CurioRequestBody;
+import com.turkcell.curio.transport.ICurioTransport;
+import com.turkcell.curio.utils.Constants;
+
+/**
+ * Transport which records requests in the order they are sent and answers them in memory, with 200 and no body unless a test overrides
+ * answer methods. Requests can be held in flight until they are released, see SentRequest.getKey.
+ */
+class StubTransport implements ICurioTransport {
+	private final List<SentRequest> requests = new ArrayList<SentRequest>();
+	private final Set<String> heldKeys = new HashSet<String>();
+	private int inFlightCount;
+
+	@Override
+	public CurioHttpResponse post(String url, CurioRequestBody body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		body.writeTo(out);
+
+		SentRequest request = new SentRequest(url, out.toString(Constants.UTF8_ENCODING));
+
+		synchronized (this) {
+			requests.add(request);
+			inFlightCount++;
+			notifyAll();
+
+			try {
+				while (heldKeys.contains(request.getKey())) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			} finally {
+				inFlightCount--;
+				notifyAll();
+			}
+		}
+
+		final int statusCode = getStatusCode(request);
+		final String responseBody = getResponseBody(request);
+
+		return new CurioHttpResponse() {
+			@Override
+			public int getStatusCode() {
+				return statusCode;
+			}
+
+			@Override
+			public String getHeader(String name) {
+				return null;
+			}
+
+			@Override
+			public InputStream getBody() throws IOException {
+				return responseBody != null ? new ByteArrayInputStream(responseBody.getBytes(Constants.UTF8_ENCODING)) : null;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * Gets status code of response to given request.
+	 */
+	protected int getStatusCode(SentRequest request) {
+		return 200;
+	}
+
+	/**
+	 * Gets body of response to given request, null if response has no body.
+	 */
+	protected String getResponseBody(SentRequest request) {
+		return null;
+	}
+
+	@Override
+	public void evictIdleConnections() {
+	}
+
+	@Override
+	public String getName() {
+		return "Stub";
+	}
+
+	/**
+	 * Holds requests with given key in flight until key is released.
+	 */
+	synchronized void hold(String key) {
+		heldKeys.add(key);
+	}
+
+	synchronized void release(String key) {
+		heldKeys.remove(key);
+		notifyAll();
+	}
+
+	synchronized void releaseAll() {
+		heldKeys.clear();
+		notifyAll();
+	}
+
+	synchronized int getRequestCount() {
+		return requests.size();
+	}
+
+	synchronized SentRequest getRequest(int index) {
+		return requests.get(index);
+	}
+
+	/**
+	 * Gets keys of sent requests in the order they are sent.
+	 */
+	synchronized List<String> getKeys() {
+		List<String> keys = new ArrayList<String>();
+
+		for (SentRequest request : requests) {
+			keys.add(request.getKey());
+		}
+		return keys;
+	}
+
+	/**
+	 * Gets number of requests which are sent but not answered yet.
+	 */
+	synchronized int getInFlightCount() {
+		return inFlightCount;
+	}
+
+	/**
+	 * Waits until given number of requests are sent, without running processor.
+	 *
+	 * @return true if requests are sent in given time.
+	 */
+	synchronized boolean awaitRequests(int count, long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+
+		while (requests.size() < count) {
+			long remaining = deadline - System.currentTimeMillis();
+
+			if (remaining <= 0) {
+				return false;
+			}
+			wait(remaining);
+		}
+		return true;
+	}
+
+	/**
+	 * A request as transport received it, with its form parameters decoded.
+	 */
+	static class SentRequest {
+		private final String url;
+		private final Map<String, String> params = new LinkedHashMap<String, String>();
+
+		SentRequest(String url, String body) throws IOException {
+			this.url = url;
+
+			if (body.length() == 0) {
+				return;
+			}
+
+			for (String pair : body.split("&")) {
+				int separator = pair.indexOf('=');
+				String name = separator < 0 ? pair : pair.substring(0, separator);
+				String value = separator < 0 ? null : URLDecoder.decode(pair.substring(separator + 1), Constants.UTF8_ENCODING);
+				params.put(URLDecoder.decode(name, Constants.UTF8_ENCODING), value);
+			}
+		}
+
+		String getUrl() {
+			return url;
+		}
+
+		String getParam(String name) {
+			return params.get(name);
+		}
+
+		/**
+		 * Gets hit code of a screen request, event code of an event request, or URL suffix of any other request.
+		 */
+		String getKey() {
+			if (params.get(Constants.HTTP_PARAM_HIT_CODE) != null) {
+				return params.get(Constants.HTTP_PARAM_HIT_CODE);
+			} else if (params.get(Constants.HTTP_PARAM_EVENT_CODE) != null) {
+				return params.get(Constants.HTTP_PARAM_EVENT_CODE);
+			}
+			return url.substring(url.lastIndexOf('/', url.lastIndexOf('/') - 1));
+		}
+
+		/**
+		 * Gets requests of a batch request.
+		 */
+		JSONArray getBatchItems() throws JSONException {
+			return new JSONArray(params.get(Constants.HTTP_PARAM_JSON_DATA));
+		}
+	}
+}
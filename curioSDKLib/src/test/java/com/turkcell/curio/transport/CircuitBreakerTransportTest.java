@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+
+import org.junit.Test;
+
+import com.turkcell.curio.utils.CircuitBreaker;
+
+public class CircuitBreakerTransportTest {
+	private final StubTransport stub = new StubTransport();
+	private final CircuitBreaker breaker = new CircuitBreaker(2, 10000, 60000);
+	private final CircuitBreakerTransport transport = new CircuitBreakerTransport(stub, breaker);
+
+	@Test
+	public void serverErrorsOpenCircuit() throws IOException {
+		stub.statusCode = 503;
+
+		transport.post("url", body()).close();
+		transport.post("url", body()).close();
+
+		assertTrue(breaker.isOpen(System.currentTimeMillis()));
+		assertNotSent();
+	}
+
+	@Test
+	public void connectionFailuresOpenCircuit() {
+		stub.failure = new SocketTimeoutException("timeout");
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				transport.post("url", body());
+				fail();
+			} catch (IOException e) {
+				assertEquals(stub.failure, e);
+			}
+		}
+
+		assertTrue(breaker.isOpen(System.currentTimeMillis()));
+		assertNotSent();
+	}
+
+	@Test
+	public void retryAfterOpensCircuitForRequestedTime() throws IOException {
+		stub.statusCode = 429;
+		stub.retryAfter = "120";
+
+		long before = System.currentTimeMillis();
+		transport.post("url", body()).close();
+
+		assertTrue(breaker.getOpenUntil() >= before + 120000);
+	}
+
+	@Test
+	public void clientErrorsDoNotOpenCircuit() throws IOException {
+		stub.statusCode = 400;
+
+		for (int i = 0; i < 5; i++) {
+			transport.post("url", body()).close();
+		}
+
+		assertFalse(breaker.isOpen(System.currentTimeMillis()));
+		assertEquals(5, stub.requestCount);
+	}
+
+	@Test
+	public void successBetweenFailuresKeepsCircuitClosed() throws IOException {
+		stub.statusCode = 500;
+		transport.post("url", body()).close();
+		stub.statusCode = 200;
+		transport.post("url", body()).close();
+		stub.statusCode = 500;
+		transport.post("url", body()).close();
+
+		assertFalse(breaker.isOpen(System.currentTimeMillis()));
+	}
+
+	private void assertNotSent() {
+		int requestCount = stub.requestCount;
+
+		try {
+			transport.post("url", body());
+			fail();
+		} catch (CircuitOpenException e) {
+			// Expected.
+		} catch (IOException e) {
+			fail();
+		}
+
+		assertEquals(requestCount, stub.requestCount);
+	}
+
+	private static CurioRequestBody body() {
+		return new FormRequestBody().add("a", "b");
+	}
+
+	/**
+	 * Answers every request with given status, or fails with given exception.
+	 */
+	private static class StubTransport implements ICurioTransport {
+		int statusCode = 200;
+		String retryAfter;
+		IOException failure;
+		int requestCount;
+
+		@Override
+		public CurioHttpResponse post(String url, CurioRequestBody body) throws IOException {
+			requestCount++;
+
+			if (failure != null) {
+				throw failure;
+			}
+
+			return new CurioHttpResponse() {
+				@Override
+				public int getStatusCode() {
+					return statusCode;
+				}
+
+				@Override
+				public String getHeader(String name) {
+					return "Retry-After".equalsIgnoreCase(name) ? retryAfter : null;
+				}
+
+				@Override
+				public InputStream getBody() {
+					return null;
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+		}
+
+		@Override
+		public void evictIdleConnections() {
+		}
+
+		@Override
+		public String getName() {
+			return "Stub";
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import com.turkcell.curio.utils.SampleRequests;
+
+/**
+ * Measures bytes on wire and CPU cost of gzip compressed batch request bodies at different backlog sizes, against the same
+ * bodies sent uncompressed. Bodies are URL encoded JSON arrays of sample stored requests, as they are sent to batch endpoints.
+ * Form body keeps its encoded bytes, so writing plain body costs almost nothing and CPU time of gzip body is the cost of compression.
+ *
+ * This is not a unit test, run its main method on JVM with test classpath.
+ */
+public class CompressionBenchmark {
+	private static final int[] ROW_COUNTS = { 1, 10, 100, 1000, 4000 };
+	private static final long MIN_MEASURE_TIME = 500000000L;
+
+	public static void main(String[] args) throws IOException {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+		System.out.println(String.format("%6s %12s %12s %7s %14s %14s", "rows", "plain bytes", "gzip bytes", "ratio", "plain cpu (us)", "gzip cpu (us)"));
+
+		for (int rowCount : ROW_COUNTS) {
+			FormRequestBody body = new FormRequestBody().add("data", SampleRequests.createJSONArray(rowCount));
+			GzipRequestBody gzipBody = new GzipRequestBody(body);
+
+			CountingOutputStream out = new CountingOutputStream();
+			gzipBody.writeTo(out);
+			long gzipLength = out.count;
+
+			long plainCpuTime = measureCpuTime(threadBean, body);
+			long gzipCpuTime = measureCpuTime(threadBean, gzipBody);
+
+			System.out.println(String.format("%6d %12d %12d %6.1f%% %14.1f %14.1f", rowCount, body.getContentLength(), gzipLength, 100.0 * gzipLength / body.getContentLength(),
+					plainCpuTime / 1000.0, gzipCpuTime / 1000.0));
+		}
+	}
+
+	/**
+	 * Writes given body repeatedly for a while, after warming up.
+	 *
+	 * @return average CPU time in nanoseconds of writing body once.
+	 */
+	private static long measureCpuTime(ThreadMXBean threadBean, CurioRequestBody body) throws IOException {
+		OutputStream out = new CountingOutputStream();
+
+		for (int i = 0; i < 20; i++) {
+			body.writeTo(out);
+		}
+
+		long start = threadBean.getCurrentThreadCpuTime();
+		long elapsed;
+		int count = 0;
+
+		do {
+			body.writeTo(out);
+			count++;
+			elapsed = threadBean.getCurrentThreadCpuTime() - start;
+		} while (elapsed < MIN_MEASURE_TIME);
+
+		return elapsed / count;
+	}
+
+	/**
+	 * Drops written bytes, only counts them like a connection stream would.
+	 */
+	private static class CountingOutputStream extends OutputStream {
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] buffer, int offset, int length) {
+			count += length;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.turkcell.curio.utils.Constants;
+import com.turkcell.curio.utils.SampleRequests;
+
+/**
+ * Measures bytes allocated and time spent per online request body by form encoder, against the way bodies were built before it:
+ * title, path, key and value URL encoded once in client, then every value converted to string, wrapped in a name value pair and
+ * URL encoded again into a string whose bytes are the body (what UrlEncodedFormEntity does).
+ *
+ * This is not a unit test, run its main method on HotSpot JVM with test classpath. Allocations are read from com.sun.management.ThreadMXBean.
+ */
+public class FormEncoderBenchmark {
+	private static final int REQUEST_COUNT = 200000;
+	private static final String[] CLIENT_ENCODED_PARAMS = { Constants.HTTP_PARAM_PAGE_TITLE, Constants.HTTP_PARAM_PATH, Constants.HTTP_PARAM_EVENT_KEY,
+			Constants.HTTP_PARAM_EVENT_VALUE };
+
+	public static void main(String[] args) throws IOException {
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		List<Map<String, Object>> requests = new ArrayList<Map<String, Object>>();
+
+		for (int i = 0; i < 100; i++) {
+			requests.add(SampleRequests.createParams(i));
+		}
+
+		OutputStream out = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void write(byte[] buffer, int offset, int count) {
+			}
+		};
+
+		System.out.println(String.format("%-22s %16s %16s", "", "bytes/request", "ns/request"));
+
+		for (int round = 0; round < 3; round++) {
+			boolean print = round == 2;
+
+			long allocated = threadBean.getThreadAllocatedBytes(threadId);
+			long start = System.nanoTime();
+
+			for (int i = 0; i < REQUEST_COUNT; i++) {
+				out.write(encodeTwiceWithURLEncoder(requests.get(i % requests.size())));
+			}
+
+			long elapsed = System.nanoTime() - start;
+			allocated = threadBean.getThreadAllocatedBytes(threadId) - allocated;
+
+			if (print) {
+				System.out.println(String.format("%-22s %16d %16d", "URLEncoder, twice", allocated / REQUEST_COUNT, elapsed / REQUEST_COUNT));
+			}
+
+			allocated = threadBean.getThreadAllocatedBytes(threadId);
+			start = System.nanoTime();
+
+			for (int i = 0; i < REQUEST_COUNT; i++) {
+				FormRequestBody body = createBody(requests.get(i % requests.size()));
+				body.getContentLength();
+				body.writeTo(out);
+			}
+
+			elapsed = System.nanoTime() - start;
+			allocated = threadBean.getThreadAllocatedBytes(threadId) - allocated;
+
+			if (print) {
+				System.out.println(String.format("%-22s %16d %16d", "FormRequestBody", allocated / REQUEST_COUNT, elapsed / REQUEST_COUNT));
+			}
+		}
+	}
+
+	private static FormRequestBody createBody(Map<String, Object> params) {
+		FormRequestBody body = new FormRequestBody();
+
+		for (Map.Entry<String, Object> entry : params.entrySet()) {
+			body.add(entry.getKey(), entry.getValue().toString());
+		}
+
+		return body;
+	}
+
+	private static byte[] encodeTwiceWithURLEncoder(Map<String, Object> params) throws UnsupportedEncodingException {
+		List<String[]> pairs = new ArrayList<String[]>();
+
+		for (Map.Entry<String, Object> entry : params.entrySet()) {
+			String value = entry.getValue().toString();
+
+			for (String name : CLIENT_ENCODED_PARAMS) {
+				if (name.equals(entry.getKey())) {
+					value = URLEncoder.encode(value, Constants.UTF8_ENCODING);
+				}
+			}
+
+			pairs.add(new String[] { entry.getKey(), value });
+		}
+
+		StringBuilder result = new StringBuilder();
+
+		for (String[] pair : pairs) {
+			if (result.length() > 0) {
+				result.append('&');
+			}
+
+			result.append(URLEncoder.encode(pair[0], Constants.UTF8_ENCODING)).append('=').append(URLEncoder.encode(pair[1], Constants.UTF8_ENCODING));
+		}
+
+		return result.toString().getBytes(Constants.UTF8_ENCODING);
+	}
+}
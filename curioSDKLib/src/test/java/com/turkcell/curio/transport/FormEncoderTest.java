@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.turkcell.curio.utils.SampleRequests;
+
+public class FormEncoderTest {
+	private static final String[] SAMPLES = { "", "abcXYZ019", ".-*_", " ", "a b+c&d=e%f/g?h#i", "{\"type\":2,\"path\":\"com.example.Main\"}",
+			"\u00c7ok g\u00fczel \u015fi\u015f \u0130stanbul", "\u20ac \u4e2d\u6587", "\ud83d\ude00 emoji", "lone \ud83d high", "lone \ude00 low", "end \ud83d",
+			"\u0000\u001f\u007f\u0080\u07ff\u0800\uffff" };
+
+	@Test
+	public void encodesLikeURLEncoder() throws Exception {
+		for (String sample : SAMPLES) {
+			assertEncodedLikeURLEncoder(sample);
+		}
+	}
+
+	@Test
+	public void encodesRandomStringsLikeURLEncoder() throws Exception {
+		Random random = new Random(42);
+
+		for (int i = 0; i < 2000; i++) {
+			char[] chars = new char[random.nextInt(40)];
+
+			for (int j = 0; j < chars.length; j++) {
+				// Mostly ASCII, some two and three byte characters and surrogates (paired or not).
+				switch (random.nextInt(4)) {
+				case 0:
+					chars[j] = (char) random.nextInt(0x800);
+					break;
+				case 1:
+					chars[j] = (char) (0xD800 + random.nextInt(0x800));
+					break;
+				case 2:
+					chars[j] = (char) random.nextInt(0x10000);
+					break;
+				default:
+					chars[j] = (char) random.nextInt(0x80);
+					break;
+				}
+			}
+
+			assertEncodedLikeURLEncoder(new String(chars));
+		}
+	}
+
+	@Test
+	public void decodesBackToStoredRequest() throws Exception {
+		String json = SampleRequests.createJSONArray(50);
+		FormEncoder encoder = new FormEncoder();
+		encoder.appendEncoded(json);
+
+		assertEquals(json, URLDecoder.decode(new String(encoder.toByteArray(), "US-ASCII"), "UTF-8"));
+	}
+
+	@Test
+	public void joinsParams() throws Exception {
+		FormEncoder encoder = new FormEncoder(1);
+		encoder.appendParam("a", "1 2");
+		encoder.appendParam("b c", null);
+		encoder.appendParam("d", "");
+
+		assertEquals("a=1+2&b+c&d=", new String(encoder.toByteArray(), "US-ASCII"));
+	}
+
+	@Test
+	public void reusesBufferAfterReset() throws Exception {
+		FormEncoder encoder = new FormEncoder(16);
+		encoder.appendEncoded(SampleRequests.createJSON(0));
+		encoder.reset();
+
+		assertEquals(0, encoder.size());
+
+		encoder.appendParam("x", "y");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoder.writeTo(out);
+
+		assertEquals("x=y", out.toString("US-ASCII"));
+	}
+
+	@Test
+	public void formBodyJoinsPrefixAndParams() throws Exception {
+		byte[] prefix = new FormRequestBody().add("apiKey", "k y").toByteArray();
+
+		FormRequestBody body = new FormRequestBody(prefix).add("pageTitle", "\u00c7ar\u015f\u0131").add("path", null);
+		byte[] expected = "apiKey=k+y&pageTitle=%C3%87ar%C5%9F%C4%B1&path".getBytes("US-ASCII");
+
+		assertArrayEquals(expected, body.toByteArray());
+		assertEquals(expected.length, body.getContentLength());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		body.writeTo(out);
+		assertArrayEquals(expected, out.toByteArray());
+
+		assertArrayEquals("apiKey=k+y".getBytes("US-ASCII"), new FormRequestBody(prefix).toByteArray());
+	}
+
+	private static void assertEncodedLikeURLEncoder(String s) throws Exception {
+		FormEncoder encoder = new FormEncoder(1);
+		encoder.appendEncoded(s);
+
+		String expected = URLEncoder.encode(s, "UTF-8");
+
+		assertEquals("Encoded form of " + s, expected, new String(encoder.toByteArray(), "US-ASCII"));
+		assertEquals("Encoded length of " + s, expected.length(), FormEncoder.encodedLength(s));
+	}
+}
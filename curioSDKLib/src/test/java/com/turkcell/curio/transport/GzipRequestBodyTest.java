@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import com.turkcell.curio.utils.SampleRequests;
+
+public class GzipRequestBodyTest {
+
+	@Test
+	public void writesGzipOfWrappedBody() throws IOException {
+		FormRequestBody body = new FormRequestBody().add("data", SampleRequests.createJSONArray(100));
+		GzipRequestBody gzipBody = new GzipRequestBody(body);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		gzipBody.writeTo(out);
+
+		assertArrayEquals(body.toByteArray(), gunzip(out.toByteArray()));
+		assertTrue(out.size() < body.getContentLength());
+	}
+
+	@Test
+	public void keepsContentTypeAndHasUnknownLength() {
+		FormRequestBody body = new FormRequestBody().add("a", "b");
+		GzipRequestBody gzipBody = new GzipRequestBody(body);
+
+		assertEquals(body.getContentType(), gzipBody.getContentType());
+		assertEquals("gzip", gzipBody.getContentEncoding());
+		assertEquals(-1, gzipBody.getContentLength());
+	}
+
+	@Test
+	public void doesNotCloseConnectionStream() throws IOException {
+		final boolean[] closed = { false };
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream() {
+			@Override
+			public void close() throws IOException {
+				closed[0] = true;
+			}
+		};
+
+		new GzipRequestBody(new FormRequestBody().add("a", "b")).writeTo(out);
+
+		assertFalse(closed[0]);
+		assertArrayEquals("a=b".getBytes("UTF-8"), gunzip(out.toByteArray()));
+	}
+
+	static byte[] gunzip(byte[] compressed) throws IOException {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int count;
+
+		while ((count = in.read(buffer)) != -1) {
+			out.write(buffer, 0, count);
+		}
+
+		in.close();
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.turkcell.curio.utils.Constants;
+
+/**
+ * Measures requests/sec and p50/p99 latency of each transport against a local stand-in of Curio server, which answers every
+ * request like hit creation endpoint does. Requests are sent by as many threads as max. concurrent requests of default settings.
+ *
+ * This is not a unit test, run its main method on JVM with test classpath. OkHttp is skipped if it is not in the classpath.
+ * HttpURLConnection of JVM is measured, not the one of Android platform, so numbers are only comparable within a single run.
+ * Arguments (all optional): request count, thread count.
+ */
+public class TransportBenchmark {
+	private static final String RESPONSE = "{\"statusCode\":200,\"data\":{\"hitCode\":\"6c6cbda6-6ac7-4e72-8b2e-0a3c9c4b2f11\"}}";
+	private static final int WARM_UP_REQUESTS = 500;
+
+	public static void main(String[] args) throws Exception {
+		int requestCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int threadCount = args.length > 1 ? Integer.parseInt(args[1]) : Constants.CONFIG_PARAM_DEFAULT_VALUE_MAX_CONCURRENT_REQUESTS;
+
+		/**
+		 * Without this, stand-in server delays its responses by Nagle's algorithm and every request takes about 40 ms.
+		 */
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new StandInHandler());
+		server.setExecutor(Executors.newFixedThreadPool(threadCount));
+		server.start();
+
+		String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/v2/hit/create";
+
+		try {
+			List<ICurioTransport> transports = new ArrayList<ICurioTransport>();
+			transports.add(new HttpURLConnectionTransport(30000, 30000, null));
+
+			if (isOkHttpAvailable()) {
+				OkHttpClient client = new OkHttpClient();
+				client.setConnectTimeout(30000, TimeUnit.MILLISECONDS);
+				client.setReadTimeout(30000, TimeUnit.MILLISECONDS);
+				client.setConnectionPool(new ConnectionPool(threadCount + 1, 30000));
+				transports.add(new OkHttpTransport(client));
+			} else {
+				System.out.println("OkHttp is not in the classpath, only HttpURLConnection transport is measured.");
+			}
+
+			System.out.println(requestCount + " requests, " + threadCount + " threads");
+			System.out.println(String.format("%-18s %12s %10s %10s", "transport", "requests/s", "p50 (ms)", "p99 (ms)"));
+
+			for (ICurioTransport transport : transports) {
+				run(transport, url, WARM_UP_REQUESTS, threadCount);
+				long[] latencies = new long[requestCount];
+				long elapsed = run(transport, url, latencies, threadCount);
+				Arrays.sort(latencies);
+
+				System.out.println(String.format("%-18s %12.0f %10.3f %10.3f", transport.getName(), requestCount * 1e9 / elapsed, percentile(latencies, 50) / 1e6,
+						percentile(latencies, 99) / 1e6));
+			}
+		} finally {
+			server.stop(0);
+			((ExecutorService) server.getExecutor()).shutdown();
+		}
+	}
+
+	private static long run(ICurioTransport transport, String url, int requestCount, int threadCount) throws InterruptedException {
+		return run(transport, url, new long[requestCount], threadCount);
+	}
+
+	/**
+	 * Sends latencies.length requests with given number of threads and fills latencies in nanoseconds.
+	 *
+	 * @return elapsed time in nanoseconds.
+	 */
+	private static long run(final ICurioTransport transport, final String url, final long[] latencies, int threadCount) throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(threadCount);
+
+		long start = System.nanoTime();
+
+		for (int t = 0; t < threadCount; t++) {
+			new Thread() {
+				@Override
+				public void run() {
+					int i;
+
+					while ((i = next.getAndIncrement()) < latencies.length) {
+						long requestStart = System.nanoTime();
+
+						try {
+							CurioHttpResponse response = transport.post(url, createBody(i));
+
+							try {
+								if (response.getStatusCode() != 200 || response.getBodyAsString() == null) {
+									failures.incrementAndGet();
+								}
+							} finally {
+								response.close();
+							}
+						} catch (IOException e) {
+							failures.incrementAndGet();
+						}
+
+						latencies[i] = System.nanoTime() - requestStart;
+					}
+
+					done.countDown();
+				}
+			}.start();
+		}
+
+		done.await();
+		long elapsed = System.nanoTime() - start;
+
+		if (failures.get() > 0) {
+			throw new IllegalStateException(failures.get() + " requests of " + transport.getName() + " transport failed.");
+		}
+
+		return elapsed;
+	}
+
+	/**
+	 * Body of a typical hit creation request.
+	 */
+	private static CurioRequestBody createBody(int i) {
+		return new FormRequestBody().add("apiKey", "XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX").add("trackingCode", "XXXXXXXX")
+				.add("sessionCode", "0a6e7e20-0b36-4f4f-a8f6-7c2c0d4a7e51").add("visitorCode", "3e1d4bde-5c2f-4b4a-9f3b-1b1c2d3e4f50")
+				.add("pageTitle", "Screen " + (i % 20)).add("path", "com.example.app.Screen" + (i % 20)).add("timestamp", Long.toString(System.currentTimeMillis()));
+	}
+
+	private static long percentile(long[] sortedValues, int percentile) {
+		int index = (int) Math.ceil(sortedValues.length * percentile / 100.0) - 1;
+		return sortedValues[Math.max(0, index)];
+	}
+
+	private static boolean isOkHttpAvailable() {
+		try {
+			Class.forName("com.squareup.okhttp.OkHttpClient");
+			return true;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads whole request body and answers with a fixed hit creation response.
+	 */
+	private static class StandInHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			InputStream in = exchange.getRequestBody();
+			byte[] buffer = new byte[4096];
+
+			while (in.read(buffer) != -1) {
+				// Drop request body.
+			}
+
+			in.close();
+
+			byte[] response = RESPONSE.getBytes("UTF-8");
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, response.length);
+
+			OutputStream out = exchange.getResponseBody();
+			out.write(response);
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+	private static final int FAILURE_THRESHOLD = 3;
+	private static final long BASE_OPEN_TIME = 10000;
+	private static final long MAX_OPEN_TIME = 300000;
+
+	private final CircuitBreaker breaker = new CircuitBreaker(FAILURE_THRESHOLD, BASE_OPEN_TIME, MAX_OPEN_TIME);
+
+	@Test
+	public void staysClosedBelowFailureThreshold() {
+		long now = System.currentTimeMillis();
+
+		for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+			assertTrue(breaker.allowRequest(now));
+			breaker.onFailure(0);
+		}
+
+		assertFalse(breaker.isOpen(now));
+		assertEquals(0, breaker.getOpenUntil());
+		assertTrue(breaker.allowRequest(now));
+	}
+
+	@Test
+	public void successResetsFailureCount() {
+		long now = System.currentTimeMillis();
+
+		breaker.onFailure(0);
+		breaker.onFailure(0);
+		breaker.onSuccess();
+		breaker.onFailure(0);
+		breaker.onFailure(0);
+
+		assertFalse(breaker.isOpen(now));
+	}
+
+	@Test
+	public void opensAtFailureThreshold() {
+		long before = System.currentTimeMillis();
+		openByFailures();
+		long after = System.currentTimeMillis();
+
+		long openUntil = breaker.getOpenUntil();
+
+		assertTrue(openUntil >= before + BASE_OPEN_TIME / 2);
+		assertTrue(openUntil <= after + BASE_OPEN_TIME);
+		assertTrue(breaker.isOpen(after));
+		assertFalse(breaker.allowRequest(after));
+	}
+
+	@Test
+	public void opensAtOnceForRetryAfter() {
+		long before = System.currentTimeMillis();
+		breaker.onFailure(120000);
+
+		assertTrue(breaker.getOpenUntil() >= before + 120000);
+		assertFalse(breaker.allowRequest(before));
+	}
+
+	@Test
+	public void letsSingleProbeOutAfterOpenPeriod() {
+		openByFailures();
+		long probeTime = breaker.getOpenUntil();
+
+		assertFalse(breaker.isOpen(probeTime));
+		assertTrue(breaker.allowRequest(probeTime));
+
+		/**
+		 * Half open: only one probe at a time.
+		 */
+		assertTrue(breaker.isOpen(probeTime));
+		assertFalse(breaker.allowRequest(probeTime));
+		assertEquals(0, breaker.getOpenUntil());
+	}
+
+	@Test
+	public void probeSuccessClosesCircuit() {
+		openByFailures();
+		long probeTime = breaker.getOpenUntil();
+
+		assertTrue(breaker.allowRequest(probeTime));
+		breaker.onSuccess();
+
+		assertFalse(breaker.isOpen(probeTime));
+		assertTrue(breaker.allowRequest(probeTime));
+		assertTrue(breaker.allowRequest(probeTime));
+	}
+
+	@Test
+	public void probeFailureReopensForLonger() {
+		openByFailures();
+		long probeTime = breaker.getOpenUntil();
+
+		assertTrue(breaker.allowRequest(probeTime));
+
+		long before = System.currentTimeMillis();
+		breaker.onFailure(0);
+
+		/**
+		 * Second opening: between half and whole of twice the base open time.
+		 */
+		assertTrue(breaker.getOpenUntil() >= before + BASE_OPEN_TIME);
+		assertFalse(breaker.allowRequest(before));
+	}
+
+	@Test
+	public void openTimeIsCappedByMaxOpenTime() {
+		openByFailures();
+
+		for (int i = 0; i < 30; i++) {
+			assertTrue(breaker.allowRequest(breaker.getOpenUntil()));
+			breaker.onFailure(0);
+		}
+
+		assertTrue(breaker.getOpenUntil() <= System.currentTimeMillis() + MAX_OPEN_TIME);
+	}
+
+	@Test
+	public void abortedProbeReopensCircuit() {
+		openByFailures();
+		long probeTime = breaker.getOpenUntil();
+
+		assertTrue(breaker.allowRequest(probeTime));
+		breaker.onProbeAborted();
+
+		assertTrue(breaker.getOpenUntil() > 0);
+		assertFalse(breaker.allowRequest(System.currentTimeMillis()));
+	}
+
+	@Test
+	public void abortedRequestDoesNotChangeClosedCircuit() {
+		long now = System.currentTimeMillis();
+
+		breaker.onProbeAborted();
+
+		assertFalse(breaker.isOpen(now));
+		assertTrue(breaker.allowRequest(now));
+	}
+
+	@Test
+	public void connectivityRestoredClosesCircuit() {
+		openByFailures();
+		long now = System.currentTimeMillis();
+
+		breaker.onConnectivityRestored();
+
+		assertFalse(breaker.isOpen(now));
+		assertTrue(breaker.allowRequest(now));
+
+		/**
+		 * Failure count starts over.
+		 */
+		breaker.onFailure(0);
+		assertFalse(breaker.isOpen(now));
+	}
+
+	private void openByFailures() {
+		for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+			breaker.onFailure(0);
+		}
+	}
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Schema and statements of {@link CurioDBHelper} on a JDBC SQLite connection, so that they can be measured and checked on JVM
+ * without an Android device. Only SQL is shared with CurioDBHelper; Android SQLiteDatabase calls are mirrored with JDBC calls.
+ */
+public class EventLogDatabase {
+	private final Connection connection;
+	private final PreparedStatement insertStatement;
+	private final PreparedStatement dimensionQuery;
+	private final PreparedStatement dimensionInsert;
+	private final Map<String, Long> dimensionIds = new HashMap<String, Long>();
+	private final RequestRowCodec codec = new RequestRowCodec();
+	private final StringBuilder json = new StringBuilder();
+
+	/**
+	 * Opens (creates if needed) database in given file, in write ahead logging mode like CurioDBHelper does on API level 11+.
+	 *
+	 * @param file
+	 * @throws SQLException
+	 */
+	public EventLogDatabase(File file) throws SQLException {
+		connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+
+		Statement statement = connection.createStatement();
+
+		try {
+			statement.execute("PRAGMA journal_mode=WAL");
+			statement.execute(CurioDBHelper.SQL_CREATE_TABLE_EVENT_LOG);
+			statement.execute(CurioDBHelper.SQL_CREATE_INDEX_EVENT_LOG);
+			statement.execute(CurioDBHelper.SQL_CREATE_INDEX_EVENT_LOG_DIMENSION_ID);
+			statement.execute(CurioDBHelper.SQL_CREATE_TABLE_REQUEST_DIMENSION);
+		} finally {
+			statement.close();
+		}
+
+		insertStatement = connection.prepareStatement(CurioDBHelper.SQL_INSERT_EVENT_LOG);
+		dimensionQuery = connection.prepareStatement(CurioDBHelper.SQL_SELECT_DIMENSION_ID);
+		dimensionInsert = connection.prepareStatement("INSERT INTO " + CurioDBContract.CurioRequestDimensionEntry.TABLE_NAME + " ("
+				+ CurioDBContract.CurioRequestDimensionEntry.COLUMN_NAME_SESSION_CODE + "," + CurioDBContract.CurioRequestDimensionEntry.COLUMN_NAME_TRACKING_CODE + ","
+				+ CurioDBContract.CurioRequestDimensionEntry.COLUMN_NAME_VISITOR_CODE + ") VALUES (?,?,?)");
+	}
+
+	public Connection getConnection() {
+		return connection;
+	}
+
+	/**
+	 * Inserts given sample requests into given lane in a single transaction, the way CurioDBHelper.insertOfflineRequests does.
+	 *
+	 * @param lane
+	 * @param first index of first sample request, see {@link SampleRequests#createParams(int)}.
+	 * @param count
+	 * @throws SQLException
+	 */
+	public void insertInTransaction(int lane, int first, int count) throws SQLException {
+		connection.setAutoCommit(false);
+
+		try {
+			for (int i = first; i < first + count; i++) {
+				insert(lane, i);
+			}
+
+			connection.commit();
+		} finally {
+			connection.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Inserts given sample request, in its own transaction unless a transaction is already started.
+	 *
+	 * @param lane
+	 * @param i index of sample request.
+	 * @throws SQLException
+	 */
+	public void insert(int lane, int i) throws SQLException {
+		Map<String, Object> params = SampleRequests.createParams(i);
+		byte[] row = codec.encode(params, CurioDBHelper.DIMENSION_PARAM_NAMES);
+		String[] dimensionValues = CurioDBHelper.getDimensionValues(params);
+
+		insertStatement.setLong(1, (Long) params.get(Constants.JSON_NODE_TIMESTAMP));
+		insertStatement.setBytes(2, row);
+		insertStatement.setInt(3, Constants.NOT_IN_PROCESS);
+		insertStatement.setLong(4, getDimensionId(dimensionValues));
+		insertStatement.setInt(5, lane);
+		insertStatement.setInt(6, CurioDBHelper.getJsonLength(row, dimensionValues, json));
+		insertStatement.executeUpdate();
+	}
+
+	/**
+	 * Counts rows of given lane and "in process" state.
+	 *
+	 * @param lane
+	 * @param inProcess
+	 * @return
+	 * @throws SQLException
+	 */
+	public int count(int lane, int inProcess) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement("SELECT count(*) FROM " + CurioDBContract.CurioEventLogEntry.TABLE_NAME + " WHERE "
+				+ CurioDBHelper.LANE_IN_PROCESS_SELECTION);
+
+		try {
+			statement.setInt(1, lane);
+			statement.setInt(2, inProcess);
+
+			ResultSet result = statement.executeQuery();
+			result.next();
+			return result.getInt(1);
+		} finally {
+			statement.close();
+		}
+	}
+
+	public void close() throws SQLException {
+		insertStatement.close();
+		dimensionQuery.close();
+		dimensionInsert.close();
+		connection.close();
+	}
+
+	private long getDimensionId(String[] values) throws SQLException {
+		String key = values[0] + "\n" + values[1] + "\n" + values[2];
+		Long id = dimensionIds.get(key);
+
+		if (id != null) {
+			return id;
+		}
+
+		for (int i = 0; i < values.length; i++) {
+			dimensionQuery.setString(i + 1, values[i]);
+		}
+
+		ResultSet result = dimensionQuery.executeQuery();
+
+		try {
+			if (result.next()) {
+				id = result.getLong(1);
+			}
+		} finally {
+			result.close();
+		}
+
+		if (id == null) {
+			for (int i = 0; i < values.length; i++) {
+				dimensionInsert.setString(i + 1, values[i]);
+			}
+
+			dimensionInsert.executeUpdate();
+
+			ResultSet keys = dimensionInsert.getGeneratedKeys();
+
+			try {
+				keys.next();
+				id = keys.getLong(1);
+			} finally {
+				keys.close();
+			}
+		}
+
+		dimensionIds.put(key, id);
+		return id;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Measures rows/sec of persisting bursts of 10, 100 and 1000 offline requests: each burst inserted in a single transaction with compiled
+ * statements (as DB request processor does now), against each request inserted in its own transaction. Before batching, DB request processor
+ * also waited 250 ms between single inserts, which alone capped it at 4 rows/sec.
+ *
+ * This is not a unit test, run its main method on JVM with test classpath (needs sqlite-jdbc). Database is a temporary file in WAL mode.
+ */
+public class InsertBenchmark {
+	private static final int[] BURST_SIZES = { 10, 100, 1000 };
+	private static final int MIN_ROWS = 3000;
+
+	public static void main(String[] args) throws IOException, SQLException {
+		System.out.println(String.format("%6s %22s %22s", "burst", "transaction per row", "transaction per burst"));
+
+		for (int burstSize : BURST_SIZES) {
+			double singleRate = measure(burstSize, false);
+			double batchRate = measure(burstSize, true);
+
+			System.out.println(String.format("%6d %16.0f rows/s %16.0f rows/s", burstSize, singleRate, batchRate));
+		}
+	}
+
+	/**
+	 * Inserts bursts of given size into a new database until at least MIN_ROWS rows are inserted, after a warm up burst.
+	 *
+	 * @return rows/sec.
+	 */
+	private static double measure(int burstSize, boolean inTransaction) throws IOException, SQLException {
+		File file = File.createTempFile("curio-insert", ".db");
+		EventLogDatabase db = new EventLogDatabase(file);
+
+		try {
+			insertBurst(db, 0, burstSize, inTransaction);
+
+			int inserted = 0;
+			long start = System.nanoTime();
+
+			while (inserted < MIN_ROWS) {
+				insertBurst(db, burstSize + inserted, burstSize, inTransaction);
+				inserted += burstSize;
+			}
+
+			return inserted * 1e9 / (System.nanoTime() - start);
+		} finally {
+			db.close();
+			delete(file);
+		}
+	}
+
+	private static void insertBurst(EventLogDatabase db, int first, int burstSize, boolean inTransaction) throws SQLException {
+		if (inTransaction) {
+			db.insertInTransaction(Constants.LANE_OFFLINE_CACHE, first, burstSize);
+		} else {
+			for (int i = first; i < first + burstSize; i++) {
+				db.insert(Constants.LANE_OFFLINE_CACHE, i);
+			}
+		}
+	}
+
+	static void delete(File file) {
+		file.delete();
+		new File(file.getPath() + "-wal").delete();
+		new File(file.getPath() + "-shm").delete();
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class JsonFieldReaderTest {
+
+	@Test
+	public void readsOnlyWantedFields() throws Exception {
+		JSONObject result = read("{\"statusCode\":200,\"data\":{\"hitCode\":\"x\"},\"hitCode\":\"6c6cbda6\",\"message\":\"ok\"}", "hitCode", "statusCode");
+
+		assertEquals(2, result.length());
+		assertEquals("6c6cbda6", result.getString("hitCode"));
+		assertEquals("200", result.get("statusCode").toString());
+		assertFalse(result.has("message"));
+	}
+
+	@Test
+	public void skipsNestedValuesOfOtherFields() throws Exception {
+		JSONObject result = read("{ \"a\" : [1, {\"b\": \"}]\"}, [ ]], \"c\" : { \"d\" : null }, \"e\" : \"f\" }", "e");
+
+		assertEquals("f", result.getString("e"));
+	}
+
+	@Test
+	public void readsBooleanAndSkipsNullAndObjectValues() throws Exception {
+		JSONObject result = read("{\"a\":true,\"b\":false,\"c\":null,\"d\":{\"e\":1}}", "a", "b", "c", "d");
+
+		assertEquals(Boolean.TRUE, result.get("a"));
+		assertEquals(Boolean.FALSE, result.get("b"));
+		assertFalse(result.has("c"));
+		assertFalse(result.has("d"));
+	}
+
+	@Test
+	public void unescapesStrings() throws Exception {
+		JSONObject result = read("{\"a\":\"\\\"q\\\" \\\\ \\/ \\n \\u00e7\"}", "a");
+
+		assertEquals("\"q\" \\ / \n \u00e7", result.getString("a"));
+	}
+
+	@Test
+	public void readsUtf8() throws Exception {
+		JSONObject result = read("{\"a\":\"\u015fi\u015f \u20ac\"}", "a");
+
+		assertEquals("\u015fi\u015f \u20ac", result.getString("a"));
+	}
+
+	@Test
+	public void stopsReadingWhenAllFieldsAreFound() throws Exception {
+		JSONObject result = read("{\"sessionCode\":\"abc\", this is not JSON", "sessionCode");
+
+		assertEquals("abc", result.getString("sessionCode"));
+	}
+
+	@Test
+	public void returnsEmptyObjectWhenFieldsAreMissing() throws Exception {
+		assertEquals(0, read("{}", "a").length());
+		assertEquals(0, read("{\"b\":1}", "a").length());
+	}
+
+	@Test
+	public void returnsNullForEmptyOrMissingBody() throws Exception {
+		assertNull(read("", "a"));
+		assertNull(read("  ", "a"));
+		assertNull(JsonFieldReader.readFields(null, "a"));
+	}
+
+	@Test(expected = JSONException.class)
+	public void rejectsNonObject() throws Exception {
+		read("[1,2]", "a");
+	}
+
+	@Test(expected = JSONException.class)
+	public void rejectsTruncatedObject() throws Exception {
+		read("{\"a\":{\"b\":", "c");
+	}
+
+	@Test
+	public void doesNotCloseStream() throws Exception {
+		final boolean[] closed = { false };
+
+		InputStream in = new ByteArrayInputStream("{\"a\":1}".getBytes("UTF-8")) {
+			@Override
+			public void close() throws IOException {
+				closed[0] = true;
+			}
+		};
+
+		JsonFieldReader.readFields(in, "a");
+
+		assertFalse(closed[0]);
+	}
+
+	private static JSONObject read(String json, String... fieldNames) throws IOException, JSONException {
+		return JsonFieldReader.readFields(new ByteArrayInputStream(json.getBytes("UTF-8")), fieldNames);
+	}
+}
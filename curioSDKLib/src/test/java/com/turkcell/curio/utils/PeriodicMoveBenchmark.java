@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.turkcell.curio.utils.CurioDBContract.CurioEventLogEntry;
+
+/**
+ * Measures time of moving 1000 and 4000 stored periodic dispatch requests to offline cache when device goes offline: a single UPDATE of lane
+ * and session code (as CurioDBHelper.moveAllExistingPeriodicDispatchDataToOfflineTable does now), against the former copy which read all rows,
+ * marked them as in process, inserted them one by one to offline cache and deleted them from periodic dispatch. Both run in one transaction.
+ *
+ * This is not a unit test, run its main method on JVM with test classpath (needs sqlite-jdbc). Database is a temporary file in WAL mode.
+ */
+public class PeriodicMoveBenchmark {
+	private static final int[] ROW_COUNTS = { 1000, 4000 };
+	private static final int ROUNDS = 5;
+	private static final String SESSION_CODE = SampleRequests.uuid(999);
+
+	public static void main(String[] args) throws IOException, SQLException {
+		System.out.println(String.format("%6s %16s %16s", "rows", "row by row copy", "single update"));
+
+		for (int rowCount : ROW_COUNTS) {
+			double copyTime = measure(rowCount, false);
+			double updateTime = measure(rowCount, true);
+
+			System.out.println(String.format("%6d %13.1f ms %13.1f ms", rowCount, copyTime, updateTime));
+		}
+	}
+
+	/**
+	 * Moves given number of rows on a new database in each round, after a warm up round.
+	 *
+	 * @return best time of a move in milliseconds.
+	 */
+	private static double measure(int rowCount, boolean singleUpdate) throws IOException, SQLException {
+		double best = Double.MAX_VALUE;
+
+		for (int round = 0; round <= ROUNDS; round++) {
+			File file = File.createTempFile("curio-move", ".db");
+			EventLogDatabase db = new EventLogDatabase(file);
+
+			try {
+				db.insertInTransaction(Constants.LANE_PERIODIC_DISPATCH, 0, rowCount);
+
+				Connection connection = db.getConnection();
+				connection.setAutoCommit(false);
+				long start = System.nanoTime();
+
+				int movedCount = singleUpdate ? update(connection) : copy(connection);
+
+				connection.commit();
+				double time = (System.nanoTime() - start) / 1e6;
+				connection.setAutoCommit(true);
+
+				if (movedCount != rowCount || db.count(Constants.LANE_OFFLINE_CACHE, Constants.NOT_IN_PROCESS) != rowCount
+						|| db.count(Constants.LANE_PERIODIC_DISPATCH, Constants.NOT_IN_PROCESS) != 0 || db.count(Constants.LANE_PERIODIC_DISPATCH, Constants.IN_PROCESS) != 0) {
+					throw new IllegalStateException("Only " + movedCount + " of " + rowCount + " rows are moved.");
+				}
+
+				if (round > 0) {
+					best = Math.min(best, time);
+				}
+			} finally {
+				db.close();
+				InsertBenchmark.delete(file);
+			}
+		}
+
+		return best;
+	}
+
+	private static int update(Connection connection) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(CurioDBHelper.SQL_MOVE_TO_LANE);
+
+		try {
+			statement.setInt(1, Constants.LANE_OFFLINE_CACHE);
+			statement.setString(2, SESSION_CODE);
+			statement.setInt(3, Constants.LANE_PERIODIC_DISPATCH);
+			statement.setInt(4, Constants.NOT_IN_PROCESS);
+			return statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+	}
+
+	private static int copy(Connection connection) throws SQLException {
+		PreparedStatement query = connection.prepareStatement("SELECT " + CurioEventLogEntry.COLUMN_NAME_DATA + "," + CurioEventLogEntry.COLUMN_NAME_TIMESTAMP + ","
+				+ CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID + "," + CurioEventLogEntry.COLUMN_NAME_JSON_LENGTH + " FROM " + CurioEventLogEntry.TABLE_NAME + " WHERE "
+				+ CurioDBHelper.LANE_IN_PROCESS_SELECTION + " ORDER BY " + CurioDBHelper.PAGE_ORDER);
+		PreparedStatement markInProcess = connection.prepareStatement(CurioDBHelper.SQL_SET_PAGE_IN_PROCESS);
+		PreparedStatement insert = connection.prepareStatement("INSERT INTO " + CurioEventLogEntry.TABLE_NAME + " (" + CurioEventLogEntry.COLUMN_NAME_DATA + ","
+				+ CurioEventLogEntry.COLUMN_NAME_TIMESTAMP + "," + CurioEventLogEntry.COLUMN_NAME_DIMENSION_ID + "," + CurioEventLogEntry.COLUMN_NAME_JSON_LENGTH + ","
+				+ CurioEventLogEntry.COLUMN_NAME_LANE + "," + CurioEventLogEntry.COLUMN_NAME_IN_PROCESS + "," + CurioEventLogEntry.COLUMN_NAME_SESSION_CODE + ") VALUES (?,?,?,?,?,?,?)");
+		PreparedStatement delete = connection.prepareStatement(CurioDBHelper.SQL_DELETE_PAGE);
+
+		try {
+			query.setInt(1, Constants.LANE_PERIODIC_DISPATCH);
+			query.setInt(2, Constants.NOT_IN_PROCESS);
+
+			ResultSet rows = query.executeQuery();
+			int movedCount = 0;
+
+			markInProcess.setInt(1, Constants.IN_PROCESS);
+			markInProcess.setInt(2, Constants.LANE_PERIODIC_DISPATCH);
+			markInProcess.setInt(3, Constants.NOT_IN_PROCESS);
+
+			/**
+			 * Rows were read into a list before marking them, as the former copy did.
+			 */
+			List<Object[]> rowList = new ArrayList<Object[]>();
+
+			while (rows.next()) {
+				rowList.add(new Object[] { rows.getBytes(1), rows.getLong(2), rows.getLong(3), rows.getInt(4) });
+			}
+
+			rows.close();
+			markInProcess.executeUpdate();
+
+			for (Object[] row : rowList) {
+				insert.setBytes(1, (byte[]) row[0]);
+				insert.setLong(2, (Long) row[1]);
+				insert.setLong(3, (Long) row[2]);
+				insert.setInt(4, (Integer) row[3]);
+				insert.setInt(5, Constants.LANE_OFFLINE_CACHE);
+				insert.setInt(6, Constants.NOT_IN_PROCESS);
+				insert.setString(7, SESSION_CODE);
+				movedCount += insert.executeUpdate();
+			}
+
+			delete.setInt(1, Constants.LANE_PERIODIC_DISPATCH);
+			delete.setInt(2, Constants.IN_PROCESS);
+			delete.executeUpdate();
+
+			return movedCount;
+		} finally {
+			query.close();
+			markInProcess.close();
+			insert.close();
+			delete.close();
+		}
+	}
+}
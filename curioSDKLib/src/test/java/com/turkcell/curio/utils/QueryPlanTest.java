@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.turkcell.curio.utils.CurioDBContract.CurioEventLogEntry;
+import com.turkcell.curio.utils.CurioDBContract.CurioOnlineOverflowEntry;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN that every statement CurioDBHelper runs on a part of event log, dimension and overflow tables
+ * searches an index instead of scanning the table, and that pages come out in index order without a sort step.
+ */
+public class QueryPlanTest {
+	private static final String EVENT_LOG_INDEX = CurioEventLogEntry.INDEX_NAME_LANE_IN_PROCESS;
+	private static final String OVERFLOW_INDEX = CurioOnlineOverflowEntry.INDEX_NAME_PRIORITY_SEQUENCE;
+
+	private File file;
+	private EventLogDatabase db;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile("curio-plan", ".db");
+		db = new EventLogDatabase(file);
+
+		Statement statement = db.getConnection().createStatement();
+		statement.execute(CurioDBHelper.SQL_CREATE_TABLE_ONLINE_OVERFLOW);
+		statement.execute(CurioDBHelper.SQL_CREATE_INDEX_ONLINE_OVERFLOW);
+		statement.close();
+
+		db.insertInTransaction(Constants.LANE_PERIODIC_DISPATCH, 0, 500);
+		db.insertInTransaction(Constants.LANE_OFFLINE_CACHE, 500, 500);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.close();
+		InsertBenchmark.delete(file);
+	}
+
+	@Test
+	public void lanesAreCountedByIndex() throws SQLException {
+		assertSearches(explain(CurioDBHelper.SQL_COUNT_LANE, Constants.LANE_OFFLINE_CACHE), EVENT_LOG_INDEX);
+	}
+
+	@Test
+	public void pageLengthsAreReadInIndexOrder() throws SQLException {
+		String plan = explain(CurioDBHelper.SQL_QUERY_ROW_LENGTHS, Constants.LANE_OFFLINE_CACHE, Constants.NOT_IN_PROCESS, 100);
+
+		assertSearches(plan, EVENT_LOG_INDEX);
+	}
+
+	@Test
+	public void inProcessPageIsMeasuredByIndex() throws SQLException {
+		String plan = explain(CurioDBHelper.SQL_QUERY_PAGE_LENGTH, Constants.LANE_OFFLINE_CACHE, Constants.IN_PROCESS);
+
+		assertSearches(plan, EVENT_LOG_INDEX);
+	}
+
+	@Test
+	public void pageIsMarkedByIndexAndRowId() throws SQLException {
+		String plan = explain(CurioDBHelper.SQL_MARK_PAGE_IN_PROCESS, Constants.IN_PROCESS, Constants.LANE_OFFLINE_CACHE, Constants.NOT_IN_PROCESS, 100);
+
+		assertSearches(plan, EVENT_LOG_INDEX);
+		assertTrue(plan, plan.contains("INTEGER PRIMARY KEY"));
+	}
+
+	@Test
+	public void pageIsStreamedInIndexOrderWithDimensions() throws SQLException {
+		String plan = explain(CurioDBHelper.SQL_QUERY_REQUESTS_WITH_DIMENSIONS, Constants.LANE_OFFLINE_CACHE, Constants.IN_PROCESS);
+
+		assertSearches(plan, EVENT_LOG_INDEX);
+		assertTrue(plan, plan.contains("INTEGER PRIMARY KEY"));
+	}
+
+	@Test
+	public void pageIsDeletedAndResetByIndex() throws SQLException {
+		assertSearches(explain(CurioDBHelper.SQL_QUERY_DIMENSION_IDS, Constants.LANE_OFFLINE_CACHE, Constants.IN_PROCESS), EVENT_LOG_INDEX);
+		assertSearches(explain(CurioDBHelper.SQL_DELETE_PAGE, Constants.LANE_OFFLINE_CACHE, Constants.IN_PROCESS), EVENT_LOG_INDEX);
+		assertSearches(explain(CurioDBHelper.SQL_SET_PAGE_IN_PROCESS, Constants.NOT_IN_PROCESS, Constants.LANE_OFFLINE_CACHE, Constants.IN_PROCESS), EVENT_LOG_INDEX);
+	}
+
+	@Test
+	public void unusedDimensionIsFoundByIndex() throws SQLException {
+		String plan = explain(CurioDBHelper.SQL_DELETE_UNUSED_DIMENSION, 1, 1);
+
+		assertSearches(plan, CurioEventLogEntry.INDEX_NAME_DIMENSION_ID);
+		assertTrue(plan, plan.contains("INTEGER PRIMARY KEY"));
+	}
+
+	@Test
+	public void periodicRequestsAreMovedByIndex() throws SQLException {
+		String plan = explain(CurioDBHelper.SQL_MOVE_TO_LANE, Constants.LANE_OFFLINE_CACHE, "s", Constants.LANE_PERIODIC_DISPATCH, Constants.NOT_IN_PROCESS);
+
+		assertSearches(plan, EVENT_LOG_INDEX);
+	}
+
+	@Test
+	public void overflowRequestsAreFetchedAndDeletedByIndex() throws SQLException {
+		assertSearches(explain(CurioDBHelper.SQL_QUERY_ONLINE_OVERFLOW, 2, 50), OVERFLOW_INDEX);
+		assertSearches(explain(CurioDBHelper.SQL_DELETE_ONLINE_OVERFLOW, 2, 100), OVERFLOW_INDEX);
+	}
+
+	private static void assertSearches(String plan, String indexName) {
+		assertTrue(plan, plan.contains("INDEX " + indexName));
+		assertFalse(plan, plan.contains("SCAN TABLE"));
+		assertFalse(plan, plan.contains("TEMP B-TREE"));
+	}
+
+	/**
+	 * Gets query plan of given statement as lines of plan details.
+	 */
+	private String explain(String sql, Object... args) throws SQLException {
+		PreparedStatement statement = db.getConnection().prepareStatement("EXPLAIN QUERY PLAN " + sql);
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				statement.setObject(i + 1, args[i]);
+			}
+
+			ResultSet result = statement.executeQuery();
+			StringBuilder plan = new StringBuilder();
+
+			while (result.next()) {
+				plan.append(result.getString("detail")).append('\n');
+			}
+
+			return plan.toString();
+		} finally {
+			statement.close();
+		}
+	}
+}
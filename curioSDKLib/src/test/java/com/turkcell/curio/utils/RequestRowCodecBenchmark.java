@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Measures stored bytes per row and decode rate of sample requests: binary rows with session, tracking and visitor codes kept in dimension
+ * table (as stored now), against JSON text rows parsed into JSONObject and written back (as they were stored and sent before).
+ *
+ * This is not a unit test, run its main method on JVM with test classpath.
+ */
+public class RequestRowCodecBenchmark {
+	private static final int ROW_COUNT = 10000;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		RequestRowCodec codec = new RequestRowCodec();
+		String[] jsonRows = new String[ROW_COUNT];
+		byte[][] binaryRows = new byte[ROW_COUNT][];
+		String[][] dimensionValues = new String[ROW_COUNT][];
+		long jsonBytes = 0;
+		long binaryBytes = 0;
+
+		for (int i = 0; i < ROW_COUNT; i++) {
+			Map<String, Object> params = SampleRequests.createParams(i);
+
+			jsonRows[i] = SampleRequests.createJSON(i);
+			binaryRows[i] = codec.encode(params, CurioDBHelper.DIMENSION_PARAM_NAMES);
+			dimensionValues[i] = CurioDBHelper.getDimensionValues(params);
+			jsonBytes += jsonRows[i].getBytes(Constants.UTF8_ENCODING).length;
+			binaryBytes += binaryRows[i].length;
+		}
+
+		System.out.println(String.format("%-8s %10s %14s", "row", "bytes/row", "decode"));
+
+		double jsonRate = 0;
+		double binaryRate = 0;
+
+		/**
+		 * First round is warm up, best of the others is reported.
+		 */
+		for (int round = 0; round <= ROUNDS; round++) {
+			double rate = decodeJSON(jsonRows);
+			jsonRate = round > 0 ? Math.max(jsonRate, rate) : 0;
+
+			rate = decodeBinary(binaryRows, dimensionValues);
+			binaryRate = round > 0 ? Math.max(binaryRate, rate) : 0;
+		}
+
+		System.out.println(String.format("%-8s %10.1f %9.0f rows/s", "JSON", (double) jsonBytes / ROW_COUNT, jsonRate));
+		System.out.println(String.format("%-8s %10.1f %9.0f rows/s", "binary", (double) binaryBytes / ROW_COUNT, binaryRate));
+		System.out.println("Dimension rows are stored once per session (every 20 sample requests), not counted above.");
+	}
+
+	private static double decodeJSON(String[] rows) throws JSONException {
+		StringBuilder out = new StringBuilder();
+		long start = System.nanoTime();
+
+		for (String row : rows) {
+			out.setLength(0);
+			out.append(new JSONObject(row).toString());
+		}
+
+		return rows.length * 1e9 / (System.nanoTime() - start);
+	}
+
+	private static double decodeBinary(byte[][] rows, String[][] dimensionValues) {
+		StringBuilder out = new StringBuilder();
+		long start = System.nanoTime();
+
+		for (int i = 0; i < rows.length; i++) {
+			out.setLength(0);
+			RequestRowCodec.appendJSON(rows[i], CurioDBHelper.DIMENSION_PARAM_NAMES, dimensionValues[i], out);
+		}
+
+		return rows.length * 1e9 / (System.nanoTime() - start);
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.net.URLEncoder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class RequestRowCodecTest {
+	private static final String UUID = "123e4567-e89b-12d3-a456-426614174000";
+
+	private final RequestRowCodec codec = new RequestRowCodec();
+	private final Map<String, Object> params = new LinkedHashMap<String, Object>();
+
+	@Test
+	public void decodesEmptyRow() {
+		assertEquals("{}", roundTrip());
+	}
+
+	@Test
+	public void storesUUIDsAsSixteenBytes() {
+		params.put(Constants.HTTP_PARAM_SESSION_CODE, UUID);
+
+		/**
+		 * Format version, field header and 16 bytes.
+		 */
+		assertEquals(18, codec.encode(params).length);
+		assertEquals("{\"sessionCode\":\"" + UUID + "\"}", roundTrip());
+	}
+
+	@Test
+	public void keepsNonCanonicalUUIDsAsStrings() {
+		params.put(Constants.HTTP_PARAM_SESSION_CODE, UUID.toUpperCase());
+		params.put(Constants.HTTP_PARAM_VISITOR_CODE, UUID.replace('-', '_'));
+		params.put(Constants.HTTP_PARAM_HIT_CODE, UUID.substring(1));
+
+		assertEquals("{\"sessionCode\":\"" + UUID.toUpperCase() + "\",\"visitorCode\":\"" + UUID.replace('-', '_') + "\",\"hitCode\":\"" + UUID.substring(1) + "\"}", roundTrip());
+	}
+
+	@Test
+	public void roundTripsIntegralNumbers() {
+		params.put(Constants.JSON_NODE_TYPE, 2);
+		params.put(Constants.JSON_NODE_TIMESTAMP, 1433894400000L);
+		params.put(Constants.HTTP_PARAM_BATTERY_LEVEL, -1);
+		params.put("zero", (short) 0);
+		params.put("byte", (byte) -128);
+		params.put("min", Long.MIN_VALUE);
+		params.put("max", Long.MAX_VALUE);
+
+		assertEquals("{\"type\":2,\"timestamp\":1433894400000,\"batteryLevel\":-1,\"zero\":0,\"byte\":-128,\"min\":-9223372036854775808,\"max\":9223372036854775807}",
+				roundTrip());
+	}
+
+	@Test
+	public void roundTripsOtherJSONValues() throws Exception {
+		params.put(Constants.HTTP_PARAM_BT_STATE, true);
+		params.put("ratio", 1.5d);
+		params.put("notANumber", Double.NaN);
+		params.put("object", new JSONObject("{\"k\":\"v\"}"));
+		params.put("array", new JSONArray("[1,\"two\"]"));
+
+		assertEquals("{\"bluetooth\":true,\"ratio\":1.5,\"notANumber\":\"NaN\",\"object\":{\"k\":\"v\"},\"array\":[1,\"two\"]}", roundTrip());
+	}
+
+	@Test
+	public void escapesStrings() {
+		params.put(Constants.HTTP_PARAM_PAGE_TITLE, "a\"b\\c/d\te\bf\ng\rh\fi\u0001j\u001f");
+		params.put("un\"known", "x");
+
+		assertEquals("{\"pageTitle\":\"a\\\"b\\\\c\\/d\\te\\bf\\ng\\rh\\fi\\u0001j\\u001f\",\"un\\\"known\":\"x\"}", roundTrip());
+	}
+
+	@Test
+	public void roundTripsUnicode() {
+		params.put(Constants.HTTP_PARAM_PAGE_TITLE, "\u00c7ok g\u00fczel \u20ac \u4e2d\u6587 \ud83d\ude00");
+		params.put("\u015fehir", "\u0130stanbul");
+
+		assertEquals("{\"pageTitle\":\"\u00c7ok g\u00fczel \u20ac \u4e2d\u6587 \ud83d\ude00\",\"\u015fehir\":\"\u0130stanbul\"}", roundTrip());
+	}
+
+	@Test
+	public void skipsNullValues() {
+		params.put(Constants.HTTP_PARAM_PAGE_TITLE, null);
+		params.put(Constants.HTTP_PARAM_EVENT_KEY, "k");
+		params.put("unknown", null);
+
+		assertEquals("{\"eventKey\":\"k\"}", roundTrip());
+	}
+
+	@Test
+	public void addsExcludedValuesBackFirst() {
+		params.put(Constants.HTTP_PARAM_HIT_CODE, UUID);
+		params.put(Constants.HTTP_PARAM_SESSION_CODE, "s");
+		params.put(Constants.HTTP_PARAM_TRACKING_CODE, "KL45FXB3");
+		params.put(Constants.HTTP_PARAM_VISITOR_CODE, "v");
+
+		byte[] row = codec.encode(params, CurioDBHelper.DIMENSION_PARAM_NAMES);
+		StringBuilder json = new StringBuilder();
+
+		RequestRowCodec.appendJSON(row, CurioDBHelper.DIMENSION_PARAM_NAMES, new String[] { "s\"1", null, "v" }, json);
+
+		assertEquals("{\"sessionCode\":\"s\\\"1\",\"visitorCode\":\"v\",\"hitCode\":\"" + UUID + "\"}", json.toString());
+	}
+
+	@Test
+	public void appendsToGivenBuilder() {
+		params.put(Constants.JSON_NODE_TYPE, 4);
+		StringBuilder json = new StringBuilder("[");
+
+		RequestRowCodec.appendJSON(codec.encode(params), null, null, json);
+		json.append(',');
+		RequestRowCodec.appendJSON(codec.encode(params), null, null, json);
+
+		assertEquals("[{\"type\":4},{\"type\":4}", json.toString());
+	}
+
+	@Test
+	public void decodesSampleRequestsToSameValues() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			Map<String, Object> sample = SampleRequests.createParams(i);
+			JSONObject json = new JSONObject(SampleRequests.createJSON(i));
+
+			assertEquals(sample.size(), json.length());
+
+			for (Map.Entry<String, Object> entry : sample.entrySet()) {
+				assertEquals(entry.getKey(), entry.getValue().toString(), json.get(entry.getKey()).toString());
+			}
+		}
+	}
+
+	@Test
+	public void rejectsInvalidRows() {
+		params.put(Constants.HTTP_PARAM_SESSION_CODE, UUID);
+		byte[] uuidRow = codec.encode(params);
+
+		params.clear();
+		params.put(Constants.HTTP_PARAM_PAGE_TITLE, "abc");
+		byte[] stringRow = codec.encode(params);
+
+		byte[] unknownFieldId = { 1, (byte) 0x90, 0x03 };
+		byte[] malformedVarint = { 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01 };
+
+		assertRejected(null);
+		assertRejected(new byte[0]);
+		assertRejected(new byte[] { 2 });
+		assertRejected("{\"type\":2}".getBytes());
+		assertRejected(truncate(uuidRow, 10));
+		assertRejected(truncate(stringRow, stringRow.length - 1));
+		assertRejected(truncate(stringRow, 2));
+		assertRejected(unknownFieldId);
+		assertRejected(malformedVarint);
+	}
+
+	@Test
+	public void measuresURLEncodedJSONLength() throws Exception {
+		StringBuilder json = new StringBuilder();
+
+		for (int i = 0; i < 100; i++) {
+			Map<String, Object> sample = SampleRequests.createParams(i);
+
+			if (i % 10 == 0) {
+				sample.put(Constants.HTTP_PARAM_PAGE_TITLE, "\u00c7ok g\u00fczel & \"h\u0131zl\u0131\" / \ud83d\ude00 " + i);
+			}
+
+			byte[] row = codec.encode(sample, CurioDBHelper.DIMENSION_PARAM_NAMES);
+			String[] dimensionValues = CurioDBHelper.getDimensionValues(sample);
+
+			int length = CurioDBHelper.getJsonLength(row, dimensionValues, json);
+			String sent = json.toString();
+
+			assertEquals(URLEncoder.encode(sent, Constants.UTF8_ENCODING).length(), length);
+			assertSameKeys(sample, new JSONObject(sent));
+		}
+	}
+
+	private String roundTrip() {
+		StringBuilder json = new StringBuilder();
+		RequestRowCodec.appendJSON(codec.encode(params), null, null, json);
+		return json.toString();
+	}
+
+	private static void assertRejected(byte[] row) {
+		try {
+			RequestRowCodec.appendJSON(row, null, null, new StringBuilder());
+			fail("Row should be rejected.");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+
+	private static void assertSameKeys(Map<String, Object> expected, JSONObject actual) {
+		assertEquals(expected.size(), actual.length());
+
+		for (Iterator<?> keys = actual.keys(); keys.hasNext();) {
+			String key = (String) keys.next();
+			assertEquals(key, expected.get(key).toString(), actual.get(key).toString());
+		}
+	}
+
+	private static byte[] truncate(byte[] row, int length) {
+		byte[] truncated = new byte[length];
+		System.arraycopy(row, 0, truncated, 0, length);
+		return truncated;
+	}
+}
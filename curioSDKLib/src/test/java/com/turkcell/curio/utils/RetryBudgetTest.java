@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RetryBudgetTest {
+	private static final long HOUR = 60 * 60 * 1000;
+	private static final long NOW = 1000000000L;
+
+	@Test
+	public void allowsMaxRetriesInAnHour() {
+		RetryBudget budget = new RetryBudget(3);
+
+		assertTrue(budget.tryAcquire(NOW));
+		assertTrue(budget.tryAcquire(NOW + 1));
+		assertTrue(budget.tryAcquire(NOW + 2));
+		assertFalse(budget.tryAcquire(NOW + 3));
+		assertFalse(budget.hasRemaining(NOW + HOUR - 1));
+		assertEquals(NOW + HOUR, budget.getNextWindowTime());
+	}
+
+	@Test
+	public void isRenewedAfterAnHour() {
+		RetryBudget budget = new RetryBudget(1);
+
+		assertTrue(budget.tryAcquire(NOW));
+		assertFalse(budget.tryAcquire(NOW + HOUR - 1));
+		assertTrue(budget.tryAcquire(NOW + HOUR));
+		assertFalse(budget.hasRemaining(NOW + HOUR));
+	}
+
+	@Test
+	public void hasRemainingDoesNotTakeRetry() {
+		RetryBudget budget = new RetryBudget(1);
+
+		assertTrue(budget.hasRemaining(NOW));
+		assertTrue(budget.hasRemaining(NOW));
+		assertTrue(budget.tryAcquire(NOW));
+		assertFalse(budget.hasRemaining(NOW));
+	}
+
+	@Test
+	public void releaseGivesRetryBack() {
+		RetryBudget budget = new RetryBudget(1);
+
+		budget.release();
+		assertTrue(budget.tryAcquire(NOW));
+		budget.release();
+		assertTrue(budget.tryAcquire(NOW));
+		assertFalse(budget.tryAcquire(NOW));
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class RetrySchedulerTest {
+	private static final long BASE_DELAY = 1000;
+	private static final long MAX_DELAY = 60000;
+
+	@Test
+	public void isReadyWithoutFailure() {
+		RetryScheduler scheduler = new RetryScheduler("test", BASE_DELAY, MAX_DELAY, new RetryBudget(0));
+
+		assertTrue(scheduler.isReady(System.currentTimeMillis()));
+		assertTrue(scheduler.acquireAttempt(System.currentTimeMillis()));
+		assertEquals(0, scheduler.getNextAttemptTime());
+	}
+
+	@Test
+	public void backsOffExponentiallyWithJitter() {
+		RetryScheduler scheduler = new RetryScheduler("test", BASE_DELAY, MAX_DELAY, new RetryBudget(100));
+
+		for (int failure = 1; failure <= 10; failure++) {
+			long before = System.currentTimeMillis();
+			long retryTime = scheduler.onFailure(0);
+			long after = System.currentTimeMillis();
+
+			long exponentialDelay = Math.min(MAX_DELAY, BASE_DELAY << (failure - 1));
+
+			assertTrue("Failure " + failure + " retried too early", retryTime >= before + exponentialDelay / 2);
+			assertTrue("Failure " + failure + " retried too late", retryTime <= after + exponentialDelay);
+			assertFalse(scheduler.isReady(before));
+			assertTrue(scheduler.isReady(retryTime));
+		}
+	}
+
+	@Test
+	public void neverRetriesBeforeRetryAfter() {
+		RetryScheduler scheduler = new RetryScheduler("test", BASE_DELAY, MAX_DELAY, new RetryBudget(100));
+
+		long before = System.currentTimeMillis();
+		long retryTime = scheduler.onFailure(120000);
+
+		assertTrue(retryTime >= before + 120000);
+	}
+
+	@Test
+	public void successResetsBackoff() {
+		RetryScheduler scheduler = new RetryScheduler("test", BASE_DELAY, MAX_DELAY, new RetryBudget(100));
+
+		scheduler.onFailure(0);
+		scheduler.onSuccess();
+
+		assertEquals(0, scheduler.getNextAttemptTime());
+		assertTrue(scheduler.isReady(System.currentTimeMillis()));
+	}
+
+	@Test
+	public void retryTakesBudgetOnlyWhenAcquired() {
+		RetryBudget budget = new RetryBudget(1);
+		RetryScheduler scheduler = new RetryScheduler("test", BASE_DELAY, MAX_DELAY, budget);
+
+		long retryTime = scheduler.onFailure(0);
+
+		assertTrue(scheduler.isReady(retryTime));
+		assertTrue(scheduler.isReady(retryTime));
+		assertTrue(budget.hasRemaining(retryTime));
+
+		assertTrue(scheduler.acquireAttempt(retryTime));
+		assertFalse(budget.hasRemaining(retryTime));
+	}
+
+	@Test
+	public void retryNotSentGivesBudgetBack() {
+		RetryBudget budget = new RetryBudget(1);
+		RetryScheduler scheduler = new RetryScheduler("test", BASE_DELAY, MAX_DELAY, budget);
+
+		long retryTime = scheduler.onFailure(0);
+
+		assertTrue(scheduler.acquireAttempt(retryTime));
+		scheduler.onAttemptNotSent();
+		assertTrue(budget.hasRemaining(retryTime));
+
+		/**
+		 * Only the slot taken by last acquire is given back.
+		 */
+		scheduler.onAttemptNotSent();
+		assertTrue(scheduler.acquireAttempt(retryTime));
+		assertFalse(budget.hasRemaining(retryTime));
+	}
+
+	@Test
+	public void waitsForBudgetRenewalWhenBudgetIsUsedUp() {
+		RetryBudget budget = new RetryBudget(1);
+		RetryScheduler scheduler = new RetryScheduler("test", BASE_DELAY, MAX_DELAY, budget);
+
+		long retryTime = scheduler.onFailure(0);
+		assertTrue(scheduler.acquireAttempt(retryTime));
+
+		retryTime = scheduler.onFailure(0);
+
+		assertFalse(scheduler.isReady(retryTime));
+		assertEquals(budget.getNextWindowTime(), scheduler.getNextAttemptTime());
+		assertFalse(scheduler.acquireAttempt(retryTime));
+		assertTrue(scheduler.isReady(budget.getNextWindowTime()));
+	}
+
+	@Test
+	public void retryableStatusCodes() {
+		assertTrue(RetryScheduler.isRetryableStatus(408));
+		assertTrue(RetryScheduler.isRetryableStatus(429));
+		assertTrue(RetryScheduler.isRetryableStatus(500));
+		assertTrue(RetryScheduler.isRetryableStatus(503));
+		assertTrue(RetryScheduler.isRetryableStatus(599));
+
+		assertFalse(RetryScheduler.isRetryableStatus(200));
+		assertFalse(RetryScheduler.isRetryableStatus(400));
+		assertFalse(RetryScheduler.isRetryableStatus(401));
+		assertFalse(RetryScheduler.isRetryableStatus(404));
+	}
+
+	@Test
+	public void parsesRetryAfterSeconds() {
+		assertEquals(120000, RetryScheduler.parseRetryAfter("120"));
+		assertEquals(5000, RetryScheduler.parseRetryAfter(" 5 "));
+		assertEquals(0, RetryScheduler.parseRetryAfter("0"));
+		assertEquals(0, RetryScheduler.parseRetryAfter("-10"));
+	}
+
+	@Test
+	public void parsesRetryAfterHttpDate() {
+		SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+		dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+		long delay = RetryScheduler.parseRetryAfter(dateFormat.format(new Date(System.currentTimeMillis() + 90000)));
+
+		assertTrue(delay > 80000 && delay <= 90000);
+		assertEquals(0, RetryScheduler.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+	}
+
+	@Test
+	public void ignoresMissingOrInvalidRetryAfter() {
+		assertEquals(0, RetryScheduler.parseRetryAfter(null));
+		assertEquals(0, RetryScheduler.parseRetryAfter(""));
+		assertEquals(0, RetryScheduler.parseRetryAfter("soon"));
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stored request parameters like the ones client creates for screens and events, shared by tests and benchmarks.
+ * Every 20 requests belong to a session, and every other request is an event.
+ */
+public class SampleRequests {
+	private static final long BASE_TIMESTAMP = 1433894400000L;
+
+	/**
+	 * Creates parameters of i'th sample request. Same index always gives same parameters.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public static Map<String, Object> createParams(int i) {
+		Map<String, Object> params = new LinkedHashMap<String, Object>();
+		params.put(Constants.HTTP_PARAM_TRACKING_CODE, "KL45FXB3");
+		params.put(Constants.HTTP_PARAM_VISITOR_CODE, uuid(0));
+		params.put(Constants.HTTP_PARAM_SESSION_CODE, uuid(1 + i / 20));
+		params.put(Constants.HTTP_PARAM_HIT_CODE, uuid(100000 + i / 2));
+
+		if (i % 2 == 0) {
+			params.put(Constants.HTTP_PARAM_PAGE_TITLE, "Product Detail " + i % 7);
+			params.put(Constants.HTTP_PARAM_PATH, "com.example.shop.ProductDetailActivity");
+			params.put(Constants.JSON_NODE_TYPE, 2);
+		} else {
+			params.put(Constants.HTTP_PARAM_EVENT_KEY, "add_to_cart");
+			params.put(Constants.HTTP_PARAM_EVENT_VALUE, "sku-" + (10000 + i % 97));
+			params.put(Constants.JSON_NODE_TYPE, 4);
+		}
+
+		params.put(Constants.JSON_NODE_TIMESTAMP, BASE_TIMESTAMP + i * 1500L);
+		return params;
+	}
+
+	/**
+	 * Creates JSON text of i'th sample request, as it is sent to server.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public static String createJSON(int i) {
+		StringBuilder json = new StringBuilder();
+		RequestRowCodec.appendJSON(new RequestRowCodec().encode(createParams(i)), null, null, json);
+		return json.toString();
+	}
+
+	/**
+	 * Creates JSON array text of given number of sample requests, as a stored request page is sent to server.
+	 *
+	 * @param count
+	 * @return
+	 */
+	public static String createJSONArray(int count) {
+		StringBuilder json = new StringBuilder("[");
+		RequestRowCodec codec = new RequestRowCodec();
+
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				json.append(',');
+			}
+
+			RequestRowCodec.appendJSON(codec.encode(createParams(i)), null, null, json);
+		}
+
+		return json.append(']').toString();
+	}
+
+	/**
+	 * Creates a lower case UUID string from given number.
+	 *
+	 * @param n
+	 * @return
+	 */
+	public static String uuid(long n) {
+		return new UUID(0x5a3c1e0f4b2d4c6eL ^ (n * 0x9e3779b97f4a7c15L), 0x8f1e2d3c4b5a6978L + n).toString();
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SessionGateTest {
+	private static final long TIMEOUT = 60000;
+
+	private final SessionGate gate = new SessionGate(TIMEOUT);
+
+	@Test
+	public void isOpenWithoutSessionStart() {
+		assertTrue(gate.isOpen());
+		assertEquals(0, gate.getDeadline());
+		assertFalse(gate.openIfTimedOut());
+	}
+
+	@Test
+	public void holdsRequestsUntilSessionStartIsAccepted() {
+		long before = System.currentTimeMillis();
+		gate.onSessionStartQueued("s1");
+		long after = System.currentTimeMillis();
+
+		assertFalse(gate.isOpen());
+		assertTrue(gate.getDeadline() >= before + TIMEOUT && gate.getDeadline() <= after + TIMEOUT);
+
+		gate.onSessionStartCompleted("s1", true);
+
+		assertTrue(gate.isOpen());
+		assertEquals(0, gate.getDeadline());
+	}
+
+	@Test
+	public void opensWhenSessionStartFails() {
+		gate.onSessionStartQueued("s1");
+		gate.onSessionStartCompleted("s1", false);
+
+		assertTrue(gate.isOpen());
+
+		/**
+		 * Session was not accepted, so its next start holds requests again.
+		 */
+		gate.onSessionStartQueued("s1");
+		assertFalse(gate.isOpen());
+	}
+
+	@Test
+	public void doesNotHoldForAcceptedSession() {
+		gate.onSessionStartQueued("s1");
+		gate.onSessionStartCompleted("s1", true);
+		gate.onSessionStartQueued("s1");
+
+		assertTrue(gate.isOpen());
+	}
+
+	@Test
+	public void ignoresCompletionOfOlderSessionStart() {
+		gate.onSessionStartQueued("s1");
+		gate.onSessionStartQueued("s2");
+		gate.onSessionStartCompleted("s1", true);
+
+		assertFalse(gate.isOpen());
+
+		gate.onSessionStartCompleted("s2", true);
+		assertTrue(gate.isOpen());
+	}
+
+	@Test
+	public void ignoresNullSessionCode() {
+		gate.onSessionStartQueued(null);
+
+		assertTrue(gate.isOpen());
+	}
+
+	@Test
+	public void opensAfterTimeout() throws InterruptedException {
+		SessionGate shortGate = new SessionGate(500);
+		shortGate.onSessionStartQueued("s1");
+
+		assertFalse(shortGate.openIfTimedOut());
+
+		Thread.sleep(600);
+
+		assertTrue(shortGate.openIfTimedOut());
+		assertTrue(shortGate.isOpen());
+		assertFalse(shortGate.openIfTimedOut());
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2014 Turkcell
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.turkcell.curio.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WeightedFairSchedulerTest {
+	private static final long NOW = 1000000000L;
+
+	@Test
+	public void sharesSlotsInProportionToWeights() {
+		WeightedFairScheduler scheduler = new WeightedFairScheduler(new int[] { 4, 2, 1 }, 0);
+		long[] heads = { NOW, NOW, NOW };
+		int[] counts = new int[3];
+
+		for (int i = 0; i < 700; i++) {
+			int priority = scheduler.select(heads, NOW);
+			scheduler.onDispatched(priority, heads, NOW);
+			counts[priority]++;
+		}
+
+		assertEquals(400, counts[0]);
+		assertEquals(200, counts[1]);
+		assertEquals(100, counts[2]);
+	}
+
+	@Test
+	public void lowerPriorityIsNotStarved() {
+		WeightedFairScheduler scheduler = new WeightedFairScheduler(new int[] { 8, 1 }, 0);
+		long[] heads = { NOW, NOW };
+
+		int lastLowPriorityDispatch = -1;
+
+		for (int i = 0; i < 90; i++) {
+			int priority = scheduler.select(heads, NOW);
+			scheduler.onDispatched(priority, heads, NOW);
+
+			if (priority == 1) {
+				assertTrue(i - lastLowPriorityDispatch <= 9);
+				lastLowPriorityDispatch = i;
+			}
+		}
+
+		assertEquals(10, scheduler.getDispatchCount(1));
+	}
+
+	@Test
+	public void skipsQueuesWithNothingToSend() {
+		WeightedFairScheduler scheduler = new WeightedFairScheduler(new int[] { 4, 2, 0 }, 0);
+
+		assertEquals(-1, scheduler.select(new long[] { 0, 0, 0 }, NOW));
+		assertEquals(1, scheduler.select(new long[] { 0, NOW, 0 }, NOW));
+		assertEquals(-1, scheduler.select(new long[] { 0, 0, NOW }, NOW));
+	}
+
+	@Test
+	public void idleQueueDoesNotCollectCredits() {
+		WeightedFairScheduler scheduler = new WeightedFairScheduler(new int[] { 1, 1 }, 0);
+		long[] onlySecond = { 0, NOW };
+
+		for (int i = 0; i < 10; i++) {
+			scheduler.onDispatched(scheduler.select(onlySecond, NOW), onlySecond, NOW);
+		}
+
+		/**
+		 * Once first queue has requests again, queues take turns instead of first queue taking a burst of slots.
+		 */
+		long[] heads = { NOW, NOW };
+		int[] counts = new int[2];
+
+		for (int i = 0; i < 4; i++) {
+			int priority = scheduler.select(heads, NOW);
+			scheduler.onDispatched(priority, heads, NOW);
+			counts[priority]++;
+		}
+
+		assertEquals(2, counts[0]);
+		assertEquals(2, counts[1]);
+	}
+
+	@Test
+	public void agingRaisesWeightOfWaitingQueue() {
+		WeightedFairScheduler scheduler = new WeightedFairScheduler(new int[] { 10, 1 }, 100);
+
+		/**
+		 * Head of second queue waited long enough to reach max. weight (sum of weights), so it wins over first queue's fresh head.
+		 */
+		assertEquals(1, scheduler.select(new long[] { NOW, NOW - 10000 }, NOW));
+		assertEquals(0, scheduler.select(new long[] { NOW, NOW - 500 }, NOW));
+	}
+
+	@Test
+	public void collectsWaitTimes() {
+		WeightedFairScheduler scheduler = new WeightedFairScheduler(new int[] { 1, 1 }, 0);
+
+		scheduler.recordDispatch(1, 100);
+		scheduler.recordDispatch(1, 300);
+		scheduler.recordDispatch(1, -5);
+		scheduler.onDispatched(scheduler.select(new long[] { NOW - 50, 0 }, NOW), new long[] { NOW - 50, 0 }, NOW);
+
+		assertEquals(3, scheduler.getDispatchCount(1));
+		assertEquals(133, scheduler.getAverageWaitTime(1));
+		assertEquals(300, scheduler.getMaxWaitTime(1));
+		assertEquals(1, scheduler.getDispatchCount(0));
+		assertEquals(50, scheduler.getAverageWaitTime(0));
+	}
+}